@@ -0,0 +1,84 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmarks;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nfalco79.junit4osgi.benchmarks.fixture.SampleHelperTest;
+import com.github.nfalco79.junit4osgi.benchmarks.fixture.SampleJUnit4Test;
+import com.github.nfalco79.junit4osgi.benchmarks.fixture.SampleTestCase;
+import com.github.nfalco79.junit4osgi.registry.internal.asm.ASMUtils;
+import com.github.nfalco79.junit4osgi.registry.internal.asm.BundleTestClassVisitor;
+
+/**
+ * Measures the byte code analysis of a class by
+ * {@link ASMUtils#analyseByteCode(URL, org.objectweb.asm.ClassVisitor)} and
+ * {@link BundleTestClassVisitor}.
+ *
+ * @author Nikolas Falco
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteCodeBenchmark {
+
+	@Param({ "junit3", "junit4", "plain" })
+	public String type;
+
+	private BundleTestClassVisitor visitor;
+	private URL entry;
+
+	@Setup
+	public void setup() throws IOException {
+		Class<?> fixture;
+		if ("junit3".equals(type)) {
+			fixture = SampleTestCase.class;
+		} else if ("junit4".equals(type)) {
+			fixture = SampleJUnit4Test.class;
+		} else {
+			fixture = SampleHelperTest.class;
+		}
+		entry = SyntheticBundles.toURL("/" + fixture.getName().replace('.', '/') + ".class", SyntheticBundles.byteCode(fixture));
+
+		visitor = new BundleTestClassVisitor(SyntheticBundles.create("bench", 0, false));
+		visitor.setLog(SyntheticBundles.NULL_LOG);
+	}
+
+	@Benchmark
+	public boolean analyseByteCode() {
+		visitor.reset();
+		ASMUtils.analyseByteCode(entry, visitor);
+		return visitor.isTestClass();
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+
+import com.github.nfalco79.junit4osgi.registry.internal.AutoDiscoveryRegistry;
+
+/**
+ * Measures the discovery of the tests of a bundle by
+ * {@link AutoDiscoveryRegistry#registerTests(Bundle)}.
+ *
+ * @author Nikolas Falco
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscoveryBenchmark {
+
+	@Param({ "100", "1000" })
+	public int classes;
+
+	/**
+	 * ACTIVE bundles load each candidate class, lazy RESOLVED ones are only
+	 * analysed by byte code.
+	 */
+	@Param({ "true", "false" })
+	public boolean active;
+
+	private AutoDiscoveryRegistry registry;
+	private Bundle bundle;
+
+	@Setup
+	public void setup() throws IOException {
+		bundle = SyntheticBundles.create("bench", classes, active);
+		registry = new AutoDiscoveryRegistry();
+		registry.setLog(SyntheticBundles.NULL_LOG);
+	}
+
+	@Benchmark
+	public int registerTests() {
+		registry.registerTests(bundle);
+		int tests = registry.getTestsByBundle("bench").size();
+		// also forgets what was learnt about the bundle classes
+		registry.removeTests(bundle);
+		return tests;
+	}
+
+	@TearDown
+	public void tearDown() {
+		registry.dispose();
+	}
+
+}
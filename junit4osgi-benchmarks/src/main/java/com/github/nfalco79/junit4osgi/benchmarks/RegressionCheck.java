@@ -0,0 +1,164 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and compares their scores with a baseline, the process
+ * exits with status 1 if any benchmark is slower than its baseline score by
+ * more than a threshold, so it can be used as a CI gate.
+ * <p>
+ * The arguments are regular expressions of the benchmarks to run, all by
+ * default. The baseline is written when it does not exist or when
+ * {@value #UPDATE} is {@code true}. Scores are the average time of an
+ * operation in microseconds.
+ *
+ * @author Nikolas Falco
+ */
+public final class RegressionCheck {
+
+	/**
+	 * The system property with the path of the baseline properties file.
+	 */
+	public static final String BASELINE = "junit4osgi.benchmarks.baseline";
+	/**
+	 * The system property with the tolerated slow down, 0.25 (25%) by
+	 * default.
+	 */
+	public static final String THRESHOLD = "junit4osgi.benchmarks.threshold";
+	/**
+	 * The system property that rewrites the baseline with the current scores.
+	 */
+	public static final String UPDATE = "junit4osgi.benchmarks.update";
+
+	private RegressionCheck() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		File baselineFile = new File(System.getProperty(BASELINE, "benchmarks-baseline.properties"));
+		double threshold = Double.parseDouble(System.getProperty(THRESHOLD, "0.25"));
+
+		ChainedOptionsBuilder options = new OptionsBuilder() //
+				.mode(Mode.AverageTime) //
+				.timeUnit(TimeUnit.MICROSECONDS) //
+				.shouldFailOnError(true);
+		if (args.length == 0) {
+			options.include(RegressionCheck.class.getPackage().getName() + ".*Benchmark");
+		}
+		for (String include : args) {
+			options.include(include);
+		}
+
+		Collection<RunResult> results = new Runner(options.build()).run();
+		Properties scores = new Properties();
+		for (RunResult result : results) {
+			scores.setProperty(toKey(result.getParams()), String.valueOf(result.getPrimaryResult().getScore()));
+		}
+
+		if (Boolean.getBoolean(UPDATE) || !baselineFile.isFile()) {
+			store(scores, baselineFile);
+			System.out.println("Baseline written to " + baselineFile);
+			return;
+		}
+
+		List<String> regressions = compare(load(baselineFile), scores, threshold);
+		if (regressions.isEmpty()) {
+			System.out.println("No benchmark is slower than the baseline by more than " + (threshold * 100) + "%");
+		} else {
+			for (String regression : regressions) {
+				System.err.println("REGRESSION " + regression);
+			}
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Compares the given scores with the baseline ones. Benchmarks without a
+	 * baseline score are ignored.
+	 *
+	 * @param baseline
+	 *            the baseline average times per benchmark
+	 * @param scores
+	 *            the current average times per benchmark
+	 * @param threshold
+	 *            the tolerated slow down, as fraction of the baseline
+	 * @return a description of each benchmark slower than tolerated
+	 */
+	public static List<String> compare(Properties baseline, Properties scores, double threshold) {
+		List<String> regressions = new ArrayList<String>();
+		for (String benchmark : new TreeSet<String>(scores.stringPropertyNames())) {
+			String baselineScore = baseline.getProperty(benchmark);
+			if (baselineScore == null) {
+				continue;
+			}
+			double expected = Double.parseDouble(baselineScore);
+			double actual = Double.parseDouble(scores.getProperty(benchmark));
+			if (actual > expected * (1 + threshold)) {
+				regressions.add(String.format("%s: %.3f us/op, baseline %.3f us/op (+%.1f%%)", benchmark, actual, expected,
+						(actual / expected - 1) * 100));
+			}
+		}
+		return regressions;
+	}
+
+	private static String toKey(BenchmarkParams params) {
+		StringBuilder key = new StringBuilder(params.getBenchmark());
+		for (String param : params.getParamsKeys()) {
+			key.append(':').append(param).append('=').append(params.getParam(param));
+		}
+		return key.toString();
+	}
+
+	private static Properties load(File file) throws IOException {
+		Properties properties = new Properties();
+		InputStream is = new FileInputStream(file);
+		try {
+			properties.load(is);
+		} finally {
+			is.close();
+		}
+		return properties;
+	}
+
+	private static void store(Properties properties, File file) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		try {
+			properties.store(os, "junit4osgi benchmarks baseline, average time in microseconds");
+		} finally {
+			os.close();
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nfalco79.junit4osgi.runner.internal.Report;
+import com.github.nfalco79.junit4osgi.runner.internal.ReportListener;
+
+/**
+ * Measures how many JUnit events {@link ReportListener} handles, included the
+ * build of the report tree.
+ *
+ * @author Nikolas Falco
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportListenerBenchmark {
+
+	@Param({ "100", "1000" })
+	public int tests;
+
+	private SyntheticRun run;
+
+	@Setup
+	public void setup() {
+		run = new SyntheticRun(tests);
+	}
+
+	@Benchmark
+	public Report collectEvents() throws Exception {
+		ReportListener listener = new ReportListener();
+		try {
+			run.replay(listener);
+			return listener.getReport();
+		} finally {
+			listener.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.log.LogService;
+
+import com.github.nfalco79.junit4osgi.benchmarks.fixture.SampleHelperTest;
+import com.github.nfalco79.junit4osgi.benchmarks.fixture.SampleJUnit4Test;
+import com.github.nfalco79.junit4osgi.benchmarks.fixture.SampleTestCase;
+
+/**
+ * Builds bundles that contain many classes without an OSGi framework.
+ * <p>
+ * Each class of a synthetic bundle has a distinct name that follows the test
+ * naming convention, its byte code is the one of a JUnit 3 test, a JUnit 4
+ * test or a class that is not a test, in turn.
+ *
+ * @author Nikolas Falco
+ */
+public final class SyntheticBundles {
+
+	/**
+	 * A log service that discards all messages.
+	 */
+	public static final LogService NULL_LOG = new LogService() {
+		@Override
+		public void log(int level, String message) {
+		}
+
+		@Override
+		public void log(int level, String message, Throwable exception) {
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public void log(ServiceReference sr, int level, String message) {
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public void log(ServiceReference sr, int level, String message, Throwable exception) {
+		}
+	};
+
+	private static final Class<?>[] FIXTURES = { SampleTestCase.class, SampleJUnit4Test.class, SampleHelperTest.class };
+	private static final AtomicLong bundleIds = new AtomicLong();
+
+	private SyntheticBundles() {
+	}
+
+	/**
+	 * Returns the byte code of the given class.
+	 *
+	 * @param type
+	 *            the class to read
+	 * @return the content of the class file
+	 * @throws IOException
+	 *             if the class file can not be read
+	 */
+	public static byte[] byteCode(Class<?> type) throws IOException {
+		InputStream is = type.getResourceAsStream('/' + type.getName().replace('.', '/') + ".class");
+		if (is == null) {
+			throw new IOException("Class file of " + type.getName() + " not found");
+		}
+		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream(4096);
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				os.write(buffer, 0, read);
+			}
+			return os.toByteArray();
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Returns an URL whose content is the given bytes.
+	 *
+	 * @param path
+	 *            the path of the URL
+	 * @param content
+	 *            the content returned by the URL stream
+	 * @return an in memory URL
+	 * @throws IOException
+	 *             if the URL can not be created
+	 */
+	public static URL toURL(String path, final byte[] content) throws IOException {
+		return new URL("synthetic", null, 0, path, new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(URL url) {
+				return new URLConnection(url) {
+					@Override
+					public void connect() {
+					}
+
+					@Override
+					public InputStream getInputStream() {
+						return new ByteArrayInputStream(content);
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * Creates a bundle with the given number of classes.
+	 *
+	 * @param symbolicName
+	 *            the bundle symbolic name
+	 * @param classes
+	 *            how many classes the bundle contains
+	 * @param active
+	 *            if {@code true} the bundle is ACTIVE so its classes are
+	 *            loaded to verify them, otherwise it is RESOLVED with a lazy
+	 *            activation policy and only the byte code is analysed
+	 * @return a bundle
+	 * @throws IOException
+	 *             if the fixture classes can not be read
+	 */
+	public static Bundle create(final String symbolicName, int classes, final boolean active) throws IOException {
+		Map<Class<?>, byte[]> byteCodes = new HashMap<Class<?>, byte[]>();
+		for (Class<?> fixture : FIXTURES) {
+			byteCodes.put(fixture, byteCode(fixture));
+		}
+
+		final Map<String, URL> entries = new LinkedHashMap<String, URL>();
+		final Map<String, Class<?>> types = new HashMap<String, Class<?>>();
+		for (int i = 0; i < classes; i++) {
+			Class<?> fixture = FIXTURES[i % FIXTURES.length];
+			String className = "bench.p" + (i / 50) + ".T" + i + fixture.getSimpleName();
+			String path = '/' + className.replace('.', '/') + ".class";
+			entries.put(path, toURL(path, byteCodes.get(fixture)));
+			types.put(className, fixture);
+		}
+
+		final Hashtable<String, String> headers = new Hashtable<String, String>();
+		headers.put("Bundle-SymbolicName", symbolicName);
+		if (!active) {
+			headers.put("Bundle-ActivationPolicy", "lazy");
+		}
+		final long bundleId = bundleIds.incrementAndGet();
+
+		return (Bundle) Proxy.newProxyInstance(SyntheticBundles.class.getClassLoader(), new Class<?>[] { Bundle.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if ("getSymbolicName".equals(name) || "toString".equals(name)) {
+							return symbolicName;
+						} else if ("getState".equals(name)) {
+							return active ? Bundle.ACTIVE : Bundle.RESOLVED;
+						} else if ("getHeaders".equals(name)) {
+							return headers;
+						} else if ("getEntry".equals(name)) {
+							return entries.get(args[0]);
+						} else if ("findEntries".equals(name)) {
+							return Collections.enumeration(entries.values());
+						} else if ("getEntryPaths".equals(name) || "adapt".equals(name)) {
+							return null;
+						} else if ("loadClass".equals(name)) {
+							Class<?> type = types.get(args[0]);
+							if (type == null) {
+								throw new ClassNotFoundException((String) args[0]);
+							}
+							return type;
+						} else if ("getBundleId".equals(name)) {
+							return bundleId;
+						} else if ("getLastModified".equals(name)) {
+							return 0l;
+						} else if ("getLocation".equals(name)) {
+							return "synthetic:" + symbolicName;
+						} else if ("hashCode".equals(name)) {
+							return System.identityHashCode(proxy);
+						} else if ("equals".equals(name)) {
+							return proxy == args[0];
+						}
+						throw new UnsupportedOperationException(name);
+					}
+				});
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmarks;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import com.github.nfalco79.junit4osgi.benchmarks.fixture.SampleJUnit4Test;
+import com.github.nfalco79.junit4osgi.runner.internal.ReportListener;
+
+/**
+ * Replays the JUnit events of a synthetic test class with many test methods,
+ * one out of ten fails.
+ *
+ * @author Nikolas Falco
+ */
+public final class SyntheticRun {
+
+	private final Description run;
+	private final Description[] tests;
+	private final Failure[] failures;
+
+	public SyntheticRun(int size) {
+		Description testClass = Description.createSuiteDescription(SampleJUnit4Test.class);
+		tests = new Description[size];
+		failures = new Failure[size];
+		for (int i = 0; i < size; i++) {
+			tests[i] = Description.createTestDescription(SampleJUnit4Test.class, "test_" + i);
+			testClass.addChild(tests[i]);
+			if (i % 10 == 9) {
+				failures[i] = new Failure(tests[i], new AssertionError("expected:<" + i + "> but was:<0>"));
+			}
+		}
+		run = Description.createSuiteDescription("run");
+		run.addChild(testClass);
+	}
+
+	/**
+	 * Notifies all the events of this run to the given listener.
+	 *
+	 * @param listener
+	 *            the listener to notify
+	 * @throws Exception
+	 *             if the listener fails
+	 */
+	public void replay(ReportListener listener) throws Exception {
+		Result result = new Result();
+		RunListener counter = result.createListener();
+
+		listener.testRunStarted(run);
+		counter.testRunStarted(run);
+		for (int i = 0; i < tests.length; i++) {
+			listener.testStarted(tests[i]);
+			counter.testStarted(tests[i]);
+			if (failures[i] != null) {
+				listener.testFailure(failures[i]);
+				counter.testFailure(failures[i]);
+			}
+			listener.testFinished(tests[i]);
+			counter.testFinished(tests[i]);
+		}
+		counter.testRunFinished(result);
+		listener.testRunFinished(result);
+	}
+
+}
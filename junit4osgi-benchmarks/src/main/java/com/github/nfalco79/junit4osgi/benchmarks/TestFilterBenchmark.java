@@ -0,0 +1,97 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nfalco79.junit4osgi.runner.internal.TestFilter;
+
+/**
+ * Measures {@link TestFilter#accept(String)} with many include and exclude
+ * patterns of the common forms.
+ *
+ * @author Nikolas Falco
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestFilterBenchmark {
+
+	private static final int NAMES = 1000;
+
+	@Param({ "10", "100", "1000" })
+	public int patterns;
+
+	private TestFilter filter;
+	private String[] names;
+
+	@Setup
+	public void setup() {
+		StringBuilder includes = new StringBuilder();
+		StringBuilder excludes = new StringBuilder();
+		for (int i = 0; i < patterns; i++) {
+			switch (i % 4) {
+			case 0:
+				includes.append("com.acme.p").append(i).append(".*,");
+				break;
+			case 1:
+				includes.append("*Service").append(i).append("IT,");
+				break;
+			case 2:
+				includes.append("com.acme.p").append(i).append(".Exact").append(i).append("Test,");
+				break;
+			default:
+				includes.append("com.*.p").append(i).append(".?y*Test,");
+				excludes.append("*Slow").append(i).append("Test,");
+				break;
+			}
+		}
+		filter = new TestFilter(includes.toString(), excludes.toString());
+
+		names = new String[NAMES];
+		for (int i = 0; i < NAMES; i++) {
+			int p = i % Math.max(patterns, 1);
+			names[i] = "com.acme.p" + p + (i % 3 == 0 ? ".MyService" : ".Slow") + i + "Test";
+		}
+	}
+
+	@Benchmark
+	public int accept() {
+		int accepted = 0;
+		for (String name : names) {
+			if (filter.accept(name)) {
+				accepted++;
+			}
+		}
+		return accepted;
+	}
+
+}
@@ -31,7 +31,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
-import javax.swing.DefaultListModel;
 import javax.swing.GroupLayout;
 import javax.swing.GroupLayout.Alignment;
 import javax.swing.JFrame;
@@ -42,6 +41,7 @@ import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.table.TableColumn;
 
 import org.junit.Ignore;
@@ -52,9 +52,11 @@ import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
 import org.osgi.service.log.LogService;
 
+import com.github.nfalco79.junit4osgi.registry.spi.BatchTestRegistryChangeListener;
+import com.github.nfalco79.junit4osgi.registry.spi.RegistrySnapshot;
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestBeanFilter;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistry;
-import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryChangeListener;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
 
 /**
@@ -88,10 +90,13 @@ public class SwingRunner extends JFrame {
 	private javax.swing.JList lstSuite;
 	private javax.swing.JTextField txtSearchTest;
 	private JPopupMenu popmnuTestSelected;
-	private DefaultListModel/*<TestModel>*/ lstModel = new DefaultListModel/*<TestModel>*/();
+	private TestListModel lstModel = new TestListModel();
 
 	private transient SwingTestRegistryChangeListener registryListener = new SwingTestRegistryChangeListener();
 	private transient TestRegistry registry;
+	// registry version and search text of the last list refresh
+	private long suitesVersion = -1;
+	private String suitesSearch;
 	private transient LogService logService;
 
 	public SwingRunner() {
@@ -141,27 +146,42 @@ public class SwingRunner extends JFrame {
 	 * Refresh the list of available test suites.
 	 */
 	private void refreshSuites() {
+		String searchText = txtSearchTest.getText();
+		final SearchPattern searchPattern = new SearchPattern(searchText);
+		// in lazy mode only the tests that could be listed are verified
+		RegistrySnapshot snapshot = registry.snapshot(new TestBeanFilter() {
+			@Override
+			public boolean accept(TestBean test) {
+				return searchPattern.matches(test.getName().toLowerCase());
+			}
+		});
+		if (snapshot.getVersion() == suitesVersion && searchText.equals(suitesSearch)) {
+			// the registry listener has already kept the list up to date
+			return;
+		}
+		suitesVersion = snapshot.getVersion();
+		suitesSearch = searchText;
+
 		List<Object> selection = Arrays.asList(lstSuite.getSelectedValues());
 		List<Integer> selectionIndexes = new ArrayList<Integer>(selection.size());
 
-		SearchPattern searchPattern = new SearchPattern(txtSearchTest.getText());
-		Set<TestBean> tests = registry.getTests();
-
-		lstModel.clear();
+		Set<TestBean> tests = snapshot.getTests();
 
-		int index = 0;
+		List<TestModel> testModels = new ArrayList<TestModel>(tests.size());
 		for (TestBean test : tests) {
 			String text = test.getName().toLowerCase();
 			if (searchPattern.matches(text)) {
 				TestModel testModel = new TestModel(test);
-				lstModel.addElement(testModel);
 				if (selection.contains(testModel)) {
-					selectionIndexes.add(index);
+					selectionIndexes.add(testModels.size());
 				}
-				index++;
+				testModels.add(testModel);
 			}
 		}
 
+		lstModel.clear();
+		lstModel.addAll(testModels);
+
 		for (Integer idx : selectionIndexes) {
 			lstSuite.addSelectionInterval(idx, idx);
 		}
@@ -750,25 +770,47 @@ public class SwingRunner extends JFrame {
 		}
 	}
 
-	private class SwingTestRegistryChangeListener implements TestRegistryChangeListener {
+	private class SwingTestRegistryChangeListener implements BatchTestRegistryChangeListener {
 		@Override
 		public void registryChanged(TestRegistryEvent event) {
-			TestModel testModel = new TestModel(event.getTest());
+			registryBatchChanged(event);
+		}
+
+		@Override
+		public void registryBatchChanged(TestRegistryEvent event) {
+			List<TestModel> testModels = new ArrayList<TestModel>(event.getTests().size());
 
 			switch (event.getType()) {
 			case ADD:
 				SearchPattern searchPattern = new SearchPattern(txtSearchTest.getText());
-				String testName = testModel.toString().toLowerCase();
-				if (searchPattern.matches(testName)) {
-					lstModel.addElement(testModel);
+				for (TestBean test : event.getTests()) {
+					TestModel testModel = new TestModel(test);
+					String testName = testModel.toString().toLowerCase();
+					if (searchPattern.matches(testName)) {
+						testModels.add(testModel);
+					}
 				}
+				lstModel.addAll(testModels);
 				break;
 			case REMOVE:
-				lstModel.removeElement(testModel);
+				for (TestBean test : event.getTests()) {
+					testModels.add(new TestModel(test));
+				}
+				lstModel.removeAll(testModels);
+				break;
+			case RESYNC:
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						// some events are lost, the list must be read again
+						suitesVersion = -1;
+						refreshSuites();
+					}
+				});
 				break;
 			default:
 				break;
 			}
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.gui;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * List model of the available tests. Adds many tests with a single
+ * notification to the list and removes them with a notification for each
+ * range of contiguous tests.
+ */
+public class TestListModel extends AbstractListModel {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<TestModel> tests = new ArrayList<TestModel>();
+
+	@Override
+	public int getSize() {
+		return tests.size();
+	}
+
+	@Override
+	public Object getElementAt(int index) {
+		return tests.get(index);
+	}
+
+	/**
+	 * Appends the given tests at the end of the list.
+	 *
+	 * @param newTests
+	 *            the tests to add
+	 */
+	public void addAll(Collection<TestModel> newTests) {
+		if (newTests.isEmpty()) {
+			return;
+		}
+		int index = tests.size();
+		tests.addAll(newTests);
+		fireIntervalAdded(this, index, tests.size() - 1);
+	}
+
+	/**
+	 * Removes the given tests from the list.
+	 *
+	 * @param oldTests
+	 *            the tests to remove
+	 */
+	public void removeAll(Collection<TestModel> oldTests) {
+		Set<TestModel> toRemove = new HashSet<TestModel>(oldTests);
+		// from the end so the indexes of the ranges still to remove are valid
+		int index = tests.size() - 1;
+		while (index >= 0) {
+			if (!toRemove.contains(tests.get(index))) {
+				index--;
+				continue;
+			}
+			int end = index;
+			while (index > 0 && toRemove.contains(tests.get(index - 1))) {
+				index--;
+			}
+			tests.subList(index, end + 1).clear();
+			fireIntervalRemoved(this, index, end);
+			index--;
+		}
+	}
+
+	/**
+	 * Removes all tests from the list.
+	 */
+	public void clear() {
+		int size = tests.size();
+		if (size > 0) {
+			tests.clear();
+			fireIntervalRemoved(this, 0, size - 1);
+		}
+	}
+
+}
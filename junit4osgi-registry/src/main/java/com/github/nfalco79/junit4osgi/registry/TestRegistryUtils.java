@@ -23,6 +23,7 @@ import java.lang.reflect.Modifier;
  * @author Nikolas Falco
  */
 import org.junit.Test;
+import org.junit.runner.RunWith;
 import org.junit.runners.Suite.SuiteClasses;
 import org.junit.runners.model.TestClass;
 
@@ -51,7 +52,8 @@ public final class TestRegistryUtils {
 	}
 
 	private static boolean isJUnit4(Class<?> testClass) {
-		return !new TestClass(testClass).getAnnotatedMethods(Test.class).isEmpty() || testClass.getAnnotation(SuiteClasses.class) != null;
+		return !new TestClass(testClass).getAnnotatedMethods(Test.class).isEmpty() || testClass.getAnnotation(SuiteClasses.class) != null
+				|| testClass.getAnnotation(RunWith.class) != null;
 	}
 
 	private static boolean isJUnit3(Class<?> testClass) {
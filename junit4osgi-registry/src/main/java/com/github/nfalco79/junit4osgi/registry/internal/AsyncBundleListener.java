@@ -0,0 +1,199 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.service.log.LogService;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestRegistry;
+
+/**
+ * A bundle listener that registers and removes tests in a dedicated thread,
+ * so the framework does not wait for bundles to be scanned.
+ * <p>
+ * Events are received synchronously to keep their order and then coalesced
+ * per bundle: a bundle RESOLVED and then STARTED is scanned only once, a
+ * bundle STOPPED before it was scanned is not scanned at all.
+ *
+ * @author Nikolas Falco
+ */
+public class AsyncBundleListener extends JUnit4BundleListener implements SynchronousBundleListener {
+
+	private static final int REMOVE = 1;
+	private static final int REGISTER = 2;
+
+	private final LogService log;
+	private final Object lock = new Object();
+	// the pending actions per bundle in the order of the first event
+	private final Map<Bundle, Integer> pending = new LinkedHashMap<Bundle, Integer>();
+	private Thread worker;
+	private boolean processing;
+	private boolean disposed;
+
+	public AsyncBundleListener(TestRegistry registry, LogService log) {
+		super(registry);
+		this.log = log;
+	}
+
+	@Override
+	protected void registerTestCase(Bundle bundle) {
+		synchronized (lock) {
+			Integer actions = pending.get(bundle);
+			enqueue(bundle, (actions != null ? actions : 0) | REGISTER);
+		}
+	}
+
+	@Override
+	protected void unregisterTestCase(Bundle bundle) {
+		synchronized (lock) {
+			// a register not yet done is useless
+			enqueue(bundle, REMOVE);
+		}
+	}
+
+	private void enqueue(Bundle bundle, int actions) {
+		if (disposed) {
+			return;
+		}
+		pending.put(bundle, actions);
+		if (worker == null) {
+			startWorker();
+		}
+		lock.notifyAll();
+	}
+
+	/*
+	 * Must be called holding lock.
+	 */
+	private void startWorker() {
+		worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				process();
+			}
+		}, "JUnitRegistry-bundle-events");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	private void process() {
+		try {
+			processEvents();
+		} finally {
+			synchronized (lock) {
+				processing = false;
+				if (worker == Thread.currentThread()) {
+					worker = null;
+					if (!disposed && !pending.isEmpty()) {
+						// events received while this worker was exiting
+						startWorker();
+					}
+				}
+				lock.notifyAll();
+			}
+		}
+	}
+
+	private void processEvents() {
+		while (true) {
+			Bundle bundle;
+			int actions;
+			synchronized (lock) {
+				processing = false;
+				lock.notifyAll();
+				while (pending.isEmpty() && !disposed) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (disposed) {
+					return;
+				}
+				Iterator<Entry<Bundle, Integer>> it = pending.entrySet().iterator();
+				Entry<Bundle, Integer> next = it.next();
+				it.remove();
+				bundle = next.getKey();
+				actions = next.getValue();
+				processing = true;
+			}
+
+			try {
+				if ((actions & REMOVE) != 0) {
+					super.unregisterTestCase(bundle);
+				}
+				if ((actions & REGISTER) != 0) {
+					super.registerTestCase(bundle);
+				}
+			} catch (Throwable e) {
+				// the worker must survive, otherwise flush would wait forever
+				if (log != null) {
+					log.log(LogService.LOG_ERROR, "Could not update tests of the bundle " + bundle.getSymbolicName(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until all received events have been handled.
+	 *
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted while waiting
+	 */
+	public void flush() throws InterruptedException {
+		synchronized (lock) {
+			while (!disposed && (processing || !pending.isEmpty())) {
+				lock.wait();
+			}
+		}
+	}
+
+	/**
+	 * Discards pending events and waits the bundle currently handled, if any.
+	 */
+	@Override
+	public void dispose() {
+		Thread thread;
+		synchronized (lock) {
+			disposed = true;
+			pending.clear();
+			lock.notifyAll();
+			thread = worker;
+			worker = null;
+		}
+		if (thread != null && thread != Thread.currentThread()) {
+			boolean interrupted = false;
+			while (thread.isAlive()) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+}
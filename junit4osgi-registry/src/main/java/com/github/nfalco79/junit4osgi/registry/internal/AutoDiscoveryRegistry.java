@@ -15,17 +15,24 @@
  */
 package com.github.nfalco79.junit4osgi.registry.internal;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.osgi.framework.Bundle;
+import org.osgi.service.log.LogService;
 
-import com.github.nfalco79.junit4osgi.registry.internal.asm.BundleTestClassVisitor;
 import com.github.nfalco79.junit4osgi.registry.spi.AbstractTestRegistry;
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
-import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
-import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent.TestRegistryEventType;
 import com.j256.simplejmx.common.JmxAttributeMethod;
 import com.j256.simplejmx.common.JmxOperation;
 import com.j256.simplejmx.common.JmxResource;
@@ -47,47 +54,76 @@ public final class AutoDiscoveryRegistry extends AbstractTestRegistry {
 	}
 
 	@JmxAttributeMethod(description = "Returns a list of all tests id in the registry")
+	@Override
 	public String[] getTestIds() {
-		Set<String> allTests = new LinkedHashSet<String>();
-		for (Set<TestBean> bundleTests : tests.values()) {
-			for (TestBean test : bundleTests) {
-				allTests.add(test.getId());
-			}
-		}
-		return allTests.toArray(new String[allTests.size()]);
+		return super.getTestIds();
+	}
+
+	@JmxAttributeMethod(description = "Returns the delivered, dropped and pending events of each listener notified asynchronously")
+	@Override
+	public String[] getListenerStats() {
+		return super.getListenerStats();
+	}
+
+	@JmxAttributeMethod(description = "Returns how long it took to discover the tests of each bundle, the slowest first")
+	@Override
+	public String[] getDiscoveryTimes() {
+		return super.getDiscoveryTimes();
 	}
 
 	/*
 	 * (non-Javadoc)
-	 *
-	 * @see
-	 * com.github.nfalco79.junit4osgi.registry.spi.TestRegistry#registerTests(
-	 * org.osgi.framework.Bundle)
+	 * @see com.github.nfalco79.junit4osgi.registry.spi.AbstractTestRegistry#scanTests(org.osgi.framework.Bundle)
 	 */
 	@Override
-	public void registerTests(final Bundle bundle) {
-		if (tests.containsKey(bundle)) {
-			return;
-		}
+	protected Collection<TestBean> scanTests(Bundle bundle) {
+		return scan(bundle, true);
+	}
 
-		final Set<TestBean> bundleTest = new LinkedHashSet<TestBean>();
-		tests.put(bundle, bundleTest);
+	/*
+	 * (non-Javadoc)
+	 * @see com.github.nfalco79.junit4osgi.registry.spi.AbstractTestRegistry#scanCandidates(org.osgi.framework.Bundle)
+	 */
+	@Override
+	protected Collection<TestBean> scanCandidates(Bundle bundle) {
+		return scan(bundle, false);
+	}
 
-		navigate(bundle, "/", new EntryPathsVisitor() {
+	/*
+	 * (non-Javadoc)
+	 * @see com.github.nfalco79.junit4osgi.registry.spi.AbstractTestRegistry#verifyCandidate(com.github.nfalco79.junit4osgi.registry.spi.TestBean)
+	 */
+	@Override
+	protected boolean verifyCandidate(TestBean candidate) {
+		Bundle bundle = candidate.getBundle();
+		return isTestClass(bundle, candidate, createVisitor(bundle));
+	}
+
+	/*
+	 * Collects the classes of the bundle that follow the test naming
+	 * convention and, if required, are tests.
+	 */
+	private Collection<TestBean> scan(final Bundle bundle, final boolean verify) {
+		final Collection<TestBean> bundleTests = new ArrayList<TestBean>();
+		// the jar is useful only to read the byte code of the classes
+		final ZipFile bundleJar = verify ? openBundleJar(bundle) : null;
+
+		EntryPathsVisitor entryVisitor = new EntryPathsVisitor() {
 			@Override
 			public void visit(String entryPath) {
 				String className = toClassName(entryPath);
 				String simpleClassName = toClassSimpleName(className);
 				if (isTestCase(simpleClassName) || isIntegrationTest(simpleClassName)) {
-					TestBean bean = new TestBean(bundle, className);
-
-					BundleTestClassVisitor visitor = new BundleTestClassVisitor(bundle);
-					visitor.setLog(getLog());
-
-					if (isTestClass(bundle, bean, visitor)) {
-						bundleTest.add(bean);
+					TestBean bean;
+					try {
+						bean = new TestBean(bundle, className);
+					} catch (IllegalArgumentException e) {
+						// entry of an attached fragment
+						return;
+					}
 
-						fireEvent(new TestRegistryEvent(TestRegistryEventType.ADD, bean));
+					if (!verify || isTestClass(bundle, bean, createVisitor(bundle), bundleJar)) {
+						bundleTests.add(bean);
 					}
 				}
 			}
@@ -96,7 +132,95 @@ public final class AutoDiscoveryRegistry extends AbstractTestRegistry {
 			public boolean accept(String entryPath) {
 				return entryPath.endsWith(".class");
 			}
-		});
+		};
+
+		try {
+			if (bundleJar != null) {
+				navigate(bundleJar, entryVisitor);
+			} else if (!find(bundle, entryVisitor)) {
+				navigate(bundle, "/", entryVisitor);
+			}
+		} finally {
+			closeSilently(bundleJar);
+		}
+		return bundleTests;
+	}
+
+	/*
+	 * Returns the jar of the bundle when it is installed from a local jar
+	 * file that has not been modified since then.
+	 */
+	private ZipFile openBundleJar(Bundle bundle) {
+		String location = bundle.getLocation();
+		int idx = location != null ? location.indexOf("file:") : -1;
+		if (idx == -1) {
+			return null;
+		}
+
+		File file;
+		try {
+			file = new File(new URI(location.substring(idx)));
+		} catch (URISyntaxException e) {
+			file = new File(location.substring(idx + "file:".length()));
+		} catch (IllegalArgumentException e) {
+			// relative or not encoded path
+			file = new File(location.substring(idx + "file:".length()));
+		}
+		if (!file.isFile() || !file.getName().endsWith(".jar") || file.lastModified() > bundle.getLastModified()) {
+			return null;
+		}
+
+		JarFile jar = null;
+		try {
+			jar = new JarFile(file);
+			// ensure the jar is really the bundle one
+			Manifest manifest = jar.getManifest();
+			String symbolicName = manifest != null ? manifest.getMainAttributes().getValue("Bundle-SymbolicName") : null;
+			if (symbolicName != null && symbolicName.split(";")[0].trim().equals(bundle.getSymbolicName())) {
+				ZipFile bundleJar = jar;
+				jar = null;
+				return bundleJar;
+			}
+		} catch (IOException e) {
+			getLog().log(LogService.LOG_DEBUG, "Could not open the jar " + file + ", scan bundle entries", e);
+		} finally {
+			closeSilently(jar);
+		}
+		return null;
+	}
+
+	private void closeSilently(ZipFile jar) {
+		if (jar != null) {
+			try {
+				jar.close();
+			} catch (IOException e) {
+				// close jar silently
+			}
+		}
+	}
+
+	private void navigate(ZipFile bundleJar, EntryPathsVisitor visitor) {
+		Enumeration<? extends ZipEntry> entries = bundleJar.entries();
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+			if (!entry.isDirectory() && visitor.accept(entry.getName())) {
+				visitor.visit(entry.getName());
+			}
+		}
+	}
+
+	private boolean find(Bundle bundle, EntryPathsVisitor visitor) {
+		Enumeration<URL> entries = bundle.findEntries("/", "*.class", true);
+		if (entries == null) {
+			return false;
+		}
+		while (entries.hasMoreElements()) {
+			String entry = entries.nextElement().getPath();
+			if (visitor.accept(entry)) {
+				visitor.visit(entry);
+			}
+		}
+		return true;
 	}
 
 	private void navigate(Bundle bundle, String path, EntryPathsVisitor visitor) {
@@ -139,21 +263,4 @@ public final class AutoDiscoveryRegistry extends AbstractTestRegistry {
 				|| className.endsWith("TestCase");
 	}
 
-	/*
-	 * (non-Javadoc)
-	 *
-	 * @see
-	 * com.github.nfalco79.junit4osgi.registry.spi.TestRegistry#removeTests(org.
-	 * osgi.framework.Bundle)
-	 */
-	@Override
-	public void removeTests(Bundle contributor) {
-		Set<TestBean> bundleTests = tests.remove(contributor);
-		if (bundleTests != null) {
-			for (TestBean test : bundleTests) {
-				fireEvent(new TestRegistryEvent(TestRegistryEventType.REMOVE, test));
-			}
-		}
-	}
-
 }
\ No newline at end of file
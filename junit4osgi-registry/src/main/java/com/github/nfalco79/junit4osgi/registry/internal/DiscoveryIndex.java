@@ -0,0 +1,202 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.StringTokenizer;
+
+import org.osgi.framework.Bundle;
+import org.osgi.service.log.LogService;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+/**
+ * A persistent index of the test classes found in each bundle, used to
+ * restore the tests of unchanged bundles without scanning them again.
+ * <p>
+ * Each bundle symbolic name is associated to the bundle version and last
+ * modified time at the scan time and to the list of its test classes. An
+ * entry is valid only while the bundle has the same version and last modified
+ * time.
+ * <p>
+ * The index records also the format of its entries and the rules used to
+ * detect tests, such as the registry version and its detection mode. When
+ * they are different from the current ones, the whole index is discarded.
+ *
+ * @author Nikolas Falco
+ */
+public class DiscoveryIndex {
+
+	private static final char SEPARATOR = ';';
+	// the version of the format of entries, change it when the format changes
+	private static final String FORMAT = "2";
+	// not a valid symbolic name, so it never clashes with a bundle entry
+	static final String HEADER = "@format";
+
+	private final File file;
+	private final String header;
+	private final LogService log;
+	private final Properties entries = new Properties();
+	private boolean dirty;
+
+	/**
+	 * Creates an index persisted in the given file, loading its content if
+	 * any.
+	 *
+	 * @param file
+	 *            where the index is stored
+	 * @param rules
+	 *            describes the rules used to detect tests, the entries
+	 *            stored with different rules are discarded
+	 * @param log
+	 *            where log I/O failures
+	 */
+	public DiscoveryIndex(File file, String rules, LogService log) {
+		this.file = file;
+		this.header = FORMAT + SEPARATOR + rules;
+		this.log = log;
+		load();
+		if (!header.equals(entries.getProperty(HEADER))) {
+			// entries could have been detected in a different way
+			dirty = !entries.isEmpty();
+			entries.clear();
+			entries.setProperty(HEADER, header);
+		}
+	}
+
+	private void load() {
+		if (!file.isFile()) {
+			return;
+		}
+		InputStream is = null;
+		try {
+			is = new BufferedInputStream(new FileInputStream(file));
+			entries.load(is);
+		} catch (IOException e) {
+			entries.clear();
+			log(LogService.LOG_WARNING, "Could not read the test discovery index " + file, e);
+		} finally {
+			closeSilently(is);
+		}
+	}
+
+	/**
+	 * Returns the tests of the given bundle recorded at the last scan.
+	 *
+	 * @param bundle
+	 *            the bundle to lookup
+	 * @return the tests of the bundle, {@code null} if the bundle was not
+	 *         indexed or has changed since then
+	 */
+	public synchronized Collection<TestBean> restore(Bundle bundle) {
+		String value = entries.getProperty(String.valueOf(bundle.getSymbolicName()));
+		String stamp = stamp(bundle);
+		if (value == null || !value.startsWith(stamp)) {
+			return null;
+		}
+
+		List<TestBean> tests = new ArrayList<TestBean>();
+		StringTokenizer st = new StringTokenizer(value.substring(stamp.length()), ",");
+		while (st.hasMoreTokens()) {
+			try {
+				tests.add(new TestBean(bundle, st.nextToken()));
+			} catch (IllegalArgumentException e) {
+				// the index does not match the bundle content
+				return null;
+			}
+		}
+		return tests;
+	}
+
+	/**
+	 * Records the tests found in the given bundle.
+	 *
+	 * @param bundle
+	 *            the scanned bundle
+	 * @param tests
+	 *            the tests found in the bundle
+	 */
+	public synchronized void store(Bundle bundle, Collection<TestBean> tests) {
+		StringBuilder value = new StringBuilder(stamp(bundle));
+		for (TestBean test : tests) {
+			if (value.charAt(value.length() - 1) != SEPARATOR) {
+				value.append(',');
+			}
+			value.append(test.getName());
+		}
+		Object old = entries.setProperty(String.valueOf(bundle.getSymbolicName()), value.toString());
+		dirty |= !value.toString().equals(old);
+	}
+
+	/**
+	 * Writes the index on disk if it has changed since it was loaded.
+	 */
+	public synchronized void save() {
+		if (!dirty) {
+			return;
+		}
+
+		File tmpFile = new File(file.getPath() + ".tmp");
+		OutputStream os = null;
+		try {
+			os = new BufferedOutputStream(new FileOutputStream(tmpFile));
+			entries.store(os, "junit4osgi test discovery index");
+			os.close();
+			os = null;
+			if ((file.exists() && !file.delete()) || !tmpFile.renameTo(file)) {
+				throw new IOException("Could not replace " + file);
+			}
+			dirty = false;
+		} catch (IOException e) {
+			log(LogService.LOG_WARNING, "Could not write the test discovery index " + file, e);
+		} finally {
+			closeSilently(os);
+		}
+	}
+
+	private static String stamp(Bundle bundle) {
+		return String.valueOf(bundle.getVersion()) + SEPARATOR + bundle.getLastModified() + SEPARATOR;
+	}
+
+	private void log(int level, String message, Exception e) {
+		if (log != null) {
+			log.log(level, message, e);
+		}
+	}
+
+	private static void closeSilently(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// close stream silently
+			}
+		}
+	}
+
+}
@@ -59,14 +59,21 @@ public class JUnit4BundleListener implements BundleListener {
 		}
 	}
 
-	private void unregisterTestCase(Bundle bundle) {
+	protected void unregisterTestCase(Bundle bundle) {
 		getRegistry().removeTests(bundle);
 	}
 
-	private void registerTestCase(Bundle bundle) {
+	protected void registerTestCase(Bundle bundle) {
 		getRegistry().registerTests(bundle);
 	}
 
+	/**
+	 * Releases any resource held by this listener, after that no more event
+	 * is handled.
+	 */
+	public void dispose() {
+	}
+
 	/* package */TestRegistry getRegistry() {
 		return registry;
 	}
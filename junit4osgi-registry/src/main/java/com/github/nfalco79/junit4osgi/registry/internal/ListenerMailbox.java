@@ -0,0 +1,263 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.internal;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryChangeListener;
+import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
+import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent.TestRegistryEventType;
+
+/**
+ * Delivers the registry events to a listener in a dedicated thread, in the
+ * same order they are posted.
+ * <p>
+ * At most {@code capacity} events wait to be delivered, so the registry never
+ * waits for a slow listener. When the mailbox is full all waiting events are
+ * dropped and replaced by a single {@link TestRegistryEventType#RESYNC}
+ * event, the events posted until it is delivered are dropped too because the
+ * listener reads them from the registry snapshot.
+ * <p>
+ * Whatever the listener throws, the delivery goes on with the next event.
+ *
+ * @author Nikolas Falco
+ */
+public abstract class ListenerMailbox {
+
+	private final TestRegistryChangeListener listener;
+	private final int capacity;
+	private final Object lock = new Object();
+	private final Queue<TestRegistryEvent> events;
+	private Thread worker;
+	private boolean delivering;
+	private boolean closed;
+	// a resync event waits in the mailbox
+	private boolean resync;
+
+	// statistics
+	private long delivered;
+	private long dropped;
+	private int maxPending;
+
+	public ListenerMailbox(TestRegistryChangeListener listener, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be greater than zero");
+		}
+		this.listener = listener;
+		this.capacity = capacity;
+		this.events = new ArrayDeque<TestRegistryEvent>(Math.min(capacity, 64));
+	}
+
+	/**
+	 * Delivers the given event to the listener.
+	 *
+	 * @param event
+	 *            the event to deliver
+	 */
+	protected abstract void deliver(TestRegistryEvent event);
+
+	/**
+	 * Called in the delivery thread when {@link #deliver(TestRegistryEvent)}
+	 * throws an exception or an error.
+	 * <p>
+	 * The default implementation does nothing.
+	 *
+	 * @param event
+	 *            the event that was delivering
+	 * @param t
+	 *            the exception thrown
+	 */
+	protected void failed(TestRegistryEvent event, Throwable t) {
+	}
+
+	/**
+	 * Enqueues the given event to be delivered.
+	 *
+	 * @param event
+	 *            the event to deliver
+	 * @return {@code true} if the event was enqueued, {@code false} if it was
+	 *         dropped because the mailbox is full or closed
+	 */
+	public boolean post(TestRegistryEvent event) {
+		synchronized (lock) {
+			if (closed || resync) {
+				dropped++;
+				return false;
+			}
+			if (events.size() >= capacity) {
+				// the worker is running because the mailbox is not empty
+				dropped += events.size() + 1;
+				events.clear();
+				events.add(new TestRegistryEvent(TestRegistryEventType.RESYNC, (TestBean) null));
+				resync = true;
+				lock.notifyAll();
+				return false;
+			}
+			events.add(event);
+			maxPending = Math.max(maxPending, events.size());
+			if (worker == null) {
+				startWorker();
+			}
+			lock.notifyAll();
+			return true;
+		}
+	}
+
+	/*
+	 * Must be called holding lock.
+	 */
+	private void startWorker() {
+		worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				process();
+			}
+		}, "JUnitRegistry-listener-" + listener.getClass().getSimpleName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	private void process() {
+		try {
+			processEvents();
+		} finally {
+			synchronized (lock) {
+				delivering = false;
+				if (worker == Thread.currentThread()) {
+					worker = null;
+					if (!closed && !events.isEmpty()) {
+						// events posted while this worker was exiting
+						startWorker();
+					}
+				}
+				lock.notifyAll();
+			}
+		}
+	}
+
+	private void processEvents() {
+		while (true) {
+			TestRegistryEvent event;
+			synchronized (lock) {
+				delivering = false;
+				lock.notifyAll();
+				while (events.isEmpty() && !closed) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (closed) {
+					return;
+				}
+				event = events.poll();
+				if (event.getType() == TestRegistryEventType.RESYNC) {
+					resync = false;
+				}
+				delivering = true;
+			}
+
+			try {
+				deliver(event);
+			} catch (Throwable t) {
+				// the worker must survive, otherwise flush would wait forever
+				failed(event, t);
+			} finally {
+				synchronized (lock) {
+					delivered++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until all posted events have been delivered.
+	 *
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted while waiting
+	 */
+	public void flush() throws InterruptedException {
+		synchronized (lock) {
+			while (!closed && (delivering || !events.isEmpty())) {
+				lock.wait();
+			}
+		}
+	}
+
+	/**
+	 * Discards the events not yet delivered and stops the delivery thread.
+	 */
+	public void close() {
+		synchronized (lock) {
+			closed = true;
+			events.clear();
+			lock.notifyAll();
+			worker = null;
+		}
+	}
+
+	public TestRegistryChangeListener getListener() {
+		return listener;
+	}
+
+	public long getDelivered() {
+		synchronized (lock) {
+			return delivered;
+		}
+	}
+
+	public long getDropped() {
+		synchronized (lock) {
+			return dropped;
+		}
+	}
+
+	/**
+	 * Returns how many events are waiting to be delivered, a listener that
+	 * has always many pending events is lagging.
+	 *
+	 * @return the number of events in the mailbox
+	 */
+	public int getPending() {
+		synchronized (lock) {
+			return events.size();
+		}
+	}
+
+	/**
+	 * Returns the highest number of events that have waited together to be
+	 * delivered.
+	 *
+	 * @return the high watermark of the mailbox
+	 */
+	public int getMaxPending() {
+		synchronized (lock) {
+			return maxPending;
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized (lock) {
+			return listener.getClass().getName() + " delivered=" + delivered + " dropped=" + dropped //
+					+ " pending=" + events.size() + " maxPending=" + maxPending + " capacity=" + capacity;
+		}
+	}
+
+}
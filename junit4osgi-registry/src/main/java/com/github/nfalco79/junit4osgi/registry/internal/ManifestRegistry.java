@@ -19,8 +19,8 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.StringTokenizer;
 import java.util.jar.Manifest;
 
@@ -30,8 +30,6 @@ import org.osgi.service.log.LogService;
 import com.github.nfalco79.junit4osgi.registry.internal.asm.BundleTestClassVisitor;
 import com.github.nfalco79.junit4osgi.registry.spi.AbstractTestRegistry;
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
-import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
-import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent.TestRegistryEventType;
 import com.j256.simplejmx.common.JmxAttributeMethod;
 import com.j256.simplejmx.common.JmxOperation;
 import com.j256.simplejmx.common.JmxResource;
@@ -47,31 +45,35 @@ public final class ManifestRegistry extends AbstractTestRegistry {
 	}
 
 	@JmxAttributeMethod(description = "Returns a list of all tests id in the registry")
+	@Override
 	public String[] getTestIds() {
-		Set<String> allTests = new LinkedHashSet<String>();
-		for (Set<TestBean> bundleTests : tests.values()) {
-			for (TestBean test : bundleTests) {
-				allTests.add(test.getId());
-			}
-		}
-		return allTests.toArray(new String[allTests.size()]);
+		return super.getTestIds();
+	}
+
+	@JmxAttributeMethod(description = "Returns the delivered, dropped and pending events of each listener notified asynchronously")
+	@Override
+	public String[] getListenerStats() {
+		return super.getListenerStats();
+	}
+
+	@JmxAttributeMethod(description = "Returns how long it took to discover the tests of each bundle, the slowest first")
+	@Override
+	public String[] getDiscoveryTimes() {
+		return super.getDiscoveryTimes();
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * @see com.github.nfalco79.junit4osgi.registry.spi.TestRegistry#registerTests(org.osgi.framework.Bundle)
+	 * @see com.github.nfalco79.junit4osgi.registry.spi.AbstractTestRegistry#scanTests(org.osgi.framework.Bundle)
 	 */
 	@Override
-	public void registerTests(Bundle contributor) {
-		if (tests.containsKey(contributor)) {
-			return;
-		}
-		parseManifest(contributor);
+	protected Collection<TestBean> scanTests(Bundle contributor) {
+		Collection<TestBean> bundleTests = new ArrayList<TestBean>();
+		parseManifest(contributor, bundleTests);
+		return bundleTests;
 	}
 
-	private void parseManifest(Bundle bundle) {
-		Set<TestBean> bundleTest = new LinkedHashSet<TestBean>();
-		tests.put(bundle, bundleTest);
+	private void parseManifest(Bundle bundle, Collection<TestBean> bundleTests) {
 
 		final String symbolicName = bundle.getSymbolicName();
 
@@ -90,8 +92,7 @@ public final class ManifestRegistry extends AbstractTestRegistry {
 			// should fragments be manage differently??
 			final String value = mf.getMainAttributes().getValue(TEST_ENTRY);
 			if (value != null && !"".equals(value)) {
-				BundleTestClassVisitor visitor = new BundleTestClassVisitor(bundle);
-				visitor.setLog(getLog());
+				BundleTestClassVisitor visitor = createVisitor(bundle);
 
 				StringTokenizer st = new StringTokenizer(value, ",");
 				while (st.hasMoreTokens()) {
@@ -107,9 +108,7 @@ public final class ManifestRegistry extends AbstractTestRegistry {
 					}
 
 					if (isTestClass(bundle, bean, visitor)) {
-						bundleTest.add(bean);
-
-						fireEvent(new TestRegistryEvent(TestRegistryEventType.ADD, bean));
+						bundleTests.add(bean);
 					}
 				}
 			}
@@ -18,6 +18,8 @@ package com.github.nfalco79.junit4osgi.registry.internal.asm;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
@@ -32,10 +34,29 @@ public final class ASMUtils {
 		InputStream is = null;
 		try {
 			is = entry.openStream();
-			if (is != null) {
-				ClassReader reader = new ClassReader(is);
-				reader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-			}
+			analyseByteCode(is, visitor);
+		} catch (IOException e) {
+			// skip class
+		} finally {
+			closeSilently(is);
+		}
+	}
+
+	/**
+	 * Analyses the byte code of a class read from the given jar.
+	 *
+	 * @param jar
+	 *            the jar that contains the class
+	 * @param entry
+	 *            the class entry in the jar
+	 * @param visitor
+	 *            the visitor of the class
+	 */
+	public static void analyseByteCode(ZipFile jar, ZipEntry entry, ClassVisitor visitor) {
+		InputStream is = null;
+		try {
+			is = jar.getInputStream(entry);
+			analyseByteCode(is, visitor);
 		} catch (IOException e) {
 			// skip class
 		} finally {
@@ -43,6 +64,13 @@ public final class ASMUtils {
 		}
 	}
 
+	private static void analyseByteCode(InputStream is, ClassVisitor visitor) throws IOException {
+		if (is != null) {
+			ClassReader reader = new ClassReader(is);
+			reader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		}
+	}
+
 	private static void closeSilently(InputStream is) {
 		if (is != null) {
 			try {
@@ -16,6 +16,7 @@
 package com.github.nfalco79.junit4osgi.registry.internal.asm;
 
 import java.net.URL;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -36,26 +37,45 @@ public class BundleTestClassVisitor extends ClassVisitor {
 
 	public static final String BUNDLE_ACTIVATION_POLICY = "Bundle-ActivationPolicy";
 
-	private Set<String> cache;
+	private static final Set<String> JUNIT_TYPES = new HashSet<String>(Arrays.asList( //
+			"junit/framework/TestCase", //
+			"junit/framework/TestSuite", //
+			"junit/framework/Test"));
+
+	private final HierarchyCache cache;
 	private boolean testClass;
 	private boolean concreteClass;
+	private boolean byteCodeOnly;
+	// if the last visited class is in a JUnit hierarchy
+	private boolean inHierarchy;
 	private Bundle bundle;
+	// the bundle that provides the class in visit
+	private Bundle provider;
 	private LogService log;
 
 	public BundleTestClassVisitor(Bundle bundle) {
+		this(bundle, new HierarchyCache());
+	}
+
+	/**
+	 * Creates a visitor that shares the verdicts about super classes with
+	 * other visitors.
+	 *
+	 * @param bundle
+	 *            the bundle of the classes to visit
+	 * @param cache
+	 *            the verdicts cache
+	 */
+	public BundleTestClassVisitor(Bundle bundle, HierarchyCache cache) {
 		super(Opcodes.ASM6);
 		this.bundle = bundle;
-
-		// cache is for bundle, if bundle is stopped and started, byte code could be changed
-		cache = new HashSet<String>();
-		cache.add("junit/framework/TestCase");
-		cache.add("junit/framework/TestSuite");
-		cache.add("junit/framework/Test");
+		this.provider = bundle;
+		this.cache = cache;
 	}
 
 	@Override
 	public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-		if (visible && desc.contains("org/junit/runners/Suite$SuiteClasses")) {
+		if (visible && (desc.contains("org/junit/runners/Suite$SuiteClasses") || desc.contains("org/junit/runner/RunWith"))) {
 			testClass = true;
 		}
 		return super.visitAnnotation(desc, visible);
@@ -76,52 +96,71 @@ public class BundleTestClassVisitor extends ClassVisitor {
 
 	@Override
 	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-		if (cache.contains(superName) /*|| cache contains interfaces*/) {
-			if (isAbstract(access)) {
-				// add to the hierarchy, but not mark it as test class because it is abstract
-				cache.add(name);
-			} else {
-				testClass = !isInterface(access);
-			}
+		boolean superInHierarchy = false;
+		if (JUNIT_TYPES.contains(superName)) {
+			superInHierarchy = true;
 		} else if (superName != null && !superName.startsWith("java/") && !superName.startsWith("junit/")) {
 			// look up the superclass in the same bundle of test class
 			URL entry = bundle.getEntry("/" + superName + ".class");
-			if (entry == null) {
-				// look up the superclass in a wired bundle
-//				entry = findInWiredBundle(superName);
-				Bundle wiredBundle = findInWiredBundle(superName);
-
-				boolean isLazy = "lazy".equals(wiredBundle.getHeaders().get(BUNDLE_ACTIVATION_POLICY));
-				if ((wiredBundle.getState() == Bundle.RESOLVED && !isLazy) || wiredBundle.getState() == Bundle.ACTIVE) {
-					// use classloader to introspect class
-					try {
-						Class<?> clazz = wiredBundle.loadClass(superName.replace('/', '.'));
-						if (TestRegistryUtils.hasTests(clazz)) {
-							cache.add(superName);
-							testClass = true;
-						}
-					} catch (ClassNotFoundException e) {
-						throw new RuntimeException("Can not load class " + superName + " using bundle classloader", e);
-					}
-				} else {
-					entry = wiredBundle.getEntry("/" + superName + ".class");
-				}
-			}
-			if (entry != null) {
-				// analyse the superclass and add it to the cache only if super class has TestCase in the hierarchy
-				ASMUtils.analyseByteCode(entry, this);
-				// marks all subclasses of this as JUnit3 test case
-				if (cache.contains(superName)) {
-					cache.add(name);
-					testClass = true;
-				}
+			// otherwise look up the superclass in a wired bundle
+			Bundle superProvider = entry != null ? bundle : findInWiredBundle(superName);
+			if (superProvider != null) {
+				Boolean verdict = cache.get(superProvider, superName);
+				superInHierarchy = verdict != null ? verdict : analyseSuperClass(superProvider, superName, entry);
 			}
 		}
 
+		if (superInHierarchy) {
+			// marks all subclasses of this as JUnit3 test case, abstract one
+			// are not test but are part of the hierarchy
+			cache.put(provider, name, true);
+			testClass = !isInterface(access);
+		}
+		inHierarchy = superInHierarchy;
+
 		// do this at the end of class visit to avoid value is overwritten during a super class visit
 		concreteClass = isConcreteClass(access);
 	}
 
+	private boolean analyseSuperClass(Bundle superProvider, String superName, URL entry) {
+		if (superProvider != bundle && !byteCodeOnly) {
+			boolean isLazy = "lazy".equals(superProvider.getHeaders().get(BUNDLE_ACTIVATION_POLICY));
+			if ((superProvider.getState() == Bundle.RESOLVED && !isLazy) || superProvider.getState() == Bundle.ACTIVE) {
+				// use classloader to introspect class
+				try {
+					Class<?> clazz = superProvider.loadClass(superName.replace('/', '.'));
+					boolean hasTests = TestRegistryUtils.hasTests(clazz);
+					cache.put(superProvider, superName, hasTests);
+					return hasTests;
+				} catch (ClassNotFoundException e) {
+					throw new RuntimeException("Can not load class " + superName + " using bundle classloader", e);
+				}
+			}
+		}
+		if (entry == null) {
+			entry = superProvider.getEntry("/" + superName + ".class");
+		}
+		if (entry == null) {
+			return false;
+		}
+
+		// analyse the superclass, its visit tells if it has TestCase in the hierarchy
+		Bundle subProvider = provider;
+		provider = superProvider;
+		inHierarchy = false;
+		try {
+			ASMUtils.analyseByteCode(entry, this);
+		} finally {
+			provider = subProvider;
+		}
+
+		if (!inHierarchy && !testClass) {
+			// the analysis had no effect, the next subclass could skip it
+			cache.put(superProvider, superName, false);
+		}
+		return inHierarchy;
+	}
+
 	private boolean isInterface(int access) {
 		return (access & Opcodes.ACC_INTERFACE) == Opcodes.ACC_INTERFACE;
 	}
@@ -131,7 +170,9 @@ public class BundleTestClassVisitor extends ClassVisitor {
 	}
 
 	private boolean isConcreteClass(int access) {
-		return !isInterface(access) && !isAbstract(access);
+		// as TestRegistryUtils#isValid
+		return !isInterface(access) && !isAbstract(access) && (access & Opcodes.ACC_PUBLIC) != 0
+				&& (access & Opcodes.ACC_ENUM) == 0;
 	}
 
 	private Bundle findInWiredBundle(final String superName) {
@@ -167,6 +208,20 @@ public class BundleTestClassVisitor extends ClassVisitor {
 	public void reset() {
 		testClass = false;
 		concreteClass = false;
+		inHierarchy = false;
+		provider = bundle;
+	}
+
+	/**
+	 * Sets if super classes in other bundles must be always analysed by byte
+	 * code instead of be loaded by the bundle classloader when the bundle is
+	 * already resolved.
+	 *
+	 * @param byteCodeOnly
+	 *            {@code true} to never load classes
+	 */
+	public void setByteCodeOnly(boolean byteCodeOnly) {
+		this.byteCodeOnly = byteCodeOnly;
 	}
 
 	public void setLog(LogService log) {
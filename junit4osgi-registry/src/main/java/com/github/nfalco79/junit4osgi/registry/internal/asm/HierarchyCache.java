@@ -0,0 +1,115 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.internal.asm;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * A thread safe cache of the verdicts "the type is in a JUnit hierarchy",
+ * shared by all visitors of a registry.
+ * <p>
+ * Verdicts are grouped by the bundle that provides the type and are dropped
+ * when the bundle is evicted or its last modified time changes, that is when
+ * the bundle has been updated and its byte code could be changed.
+ *
+ * @author Nikolas Falco
+ */
+public class HierarchyCache {
+
+	private static final class Revision {
+		private final long lastModified;
+		private final ConcurrentMap<String, Boolean> verdicts = new ConcurrentHashMap<String, Boolean>();
+
+		public Revision(long lastModified) {
+			this.lastModified = lastModified;
+		}
+	}
+
+	private final ConcurrentMap<Bundle, Revision> revisions = new ConcurrentHashMap<Bundle, Revision>();
+
+	/**
+	 * Returns the verdict for the given type.
+	 *
+	 * @param provider
+	 *            the bundle that contains the type
+	 * @param type
+	 *            the internal name of the type
+	 * @return {@link Boolean#TRUE} if the type is in a JUnit hierarchy,
+	 *         {@link Boolean#FALSE} if not, {@code null} if unknown
+	 */
+	public Boolean get(Bundle provider, String type) {
+		Revision revision = revisions.get(provider);
+		if (revision == null || revision.lastModified != provider.getLastModified()) {
+			return null;
+		}
+		return revision.verdicts.get(type);
+	}
+
+	/**
+	 * Records the verdict for the given type.
+	 *
+	 * @param provider
+	 *            the bundle that contains the type
+	 * @param type
+	 *            the internal name of the type
+	 * @param inHierarchy
+	 *            if the type is in a JUnit hierarchy
+	 */
+	public void put(Bundle provider, String type, boolean inHierarchy) {
+		long lastModified = provider.getLastModified();
+		Revision revision = revisions.get(provider);
+		if (revision == null || revision.lastModified != lastModified) {
+			// a concurrent put could be lost, it will be computed again
+			revision = new Revision(lastModified);
+			revisions.put(provider, revision);
+		}
+		revision.verdicts.put(type, inHierarchy);
+	}
+
+	/**
+	 * Drops all verdicts of the types provided by the given bundle.
+	 *
+	 * @param provider
+	 *            the bundle refreshed, updated or uninstalled
+	 */
+	public void evict(Bundle provider) {
+		revisions.remove(provider);
+	}
+
+	/**
+	 * Drops all verdicts.
+	 */
+	public void clear() {
+		revisions.clear();
+	}
+
+	/**
+	 * Returns the number of types with a verdict.
+	 *
+	 * @return the cache size
+	 */
+	public int size() {
+		int size = 0;
+		for (Revision revision : revisions.values()) {
+			size += revision.verdicts.size();
+		}
+		return size;
+	}
+
+}
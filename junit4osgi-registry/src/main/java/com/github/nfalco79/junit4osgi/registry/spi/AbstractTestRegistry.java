@@ -15,22 +15,48 @@
  */
 package com.github.nfalco79.junit4osgi.registry.spi;
 
+import java.io.File;
 import java.net.URL;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.log.LogService;
 
 import com.github.nfalco79.junit4osgi.registry.TestRegistryUtils;
+import com.github.nfalco79.junit4osgi.registry.internal.AsyncBundleListener;
+import com.github.nfalco79.junit4osgi.registry.internal.DiscoveryIndex;
 import com.github.nfalco79.junit4osgi.registry.internal.JUnit4BundleListener;
+import com.github.nfalco79.junit4osgi.registry.internal.ListenerMailbox;
 import com.github.nfalco79.junit4osgi.registry.internal.asm.ASMUtils;
 import com.github.nfalco79.junit4osgi.registry.internal.asm.BundleTestClassVisitor;
+import com.github.nfalco79.junit4osgi.registry.internal.asm.HierarchyCache;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent.TestRegistryEventType;
 
 /**
@@ -39,18 +65,127 @@ import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent.TestRegistr
  * <p>
  * This abstract class handle in a secure and ThreadSafe way the listeners
  * mechanism and the storage for the {@link TestBean}. The implementation must
- * just provides how to gather tests when a new contributor is
- * registered/unregistered.
+ * just provides how to gather tests of a contributor in
+ * {@link #scanTests(Bundle)}, the registry indexes them by id, class name and
+ * bundle symbolic name.
+ * <p>
+ * At activation the bundles already installed are scanned in parallel by
+ * {@value #SCAN_THREADS} threads (the number of available processors by
+ * default) and then their tests are published in the bundles order, so
+ * listeners receive the same sequence of events of a serial scan.
+ * <p>
+ * The tests found in each bundle are recorded in an index in the bundle data
+ * area, so at the next start the bundles not changed meanwhile are not
+ * scanned again.
+ * <p>
+ * In {@value #LAZY} mode only the candidate classes of a bundle are gathered
+ * when it is registered, they are verified, and notified to listeners, the
+ * first time a client asks for the tests of that bundle or class, for all
+ * tests or for a snapshot of the tests accepted by a {@link TestBeanFilter}.
+ * The candidates of a bundle registered while there are listeners are
+ * verified immediately, except those that no listener accepts when all
+ * listeners are a {@link TestBeanFilter}. {@link #snapshot()},
+ * {@link #getTestIds()} and {@link #getTestsView()} never verify candidates.
+ * <p>
+ * Listeners are never notified while the registry holds a lock, so they can
+ * query the registry.
+ * <p>
+ * With {@value #LISTENER_QUEUE} each listener is notified in its own thread
+ * through a bounded mailbox, in the order of the changes, so a slow listener
+ * does not slow down the discovery of tests.
  *
  * @author nikolasfalco
  */
 public abstract class AbstractTestRegistry implements TestRegistry {
 
+	/**
+	 * The system property that sets how many threads scan bundles at
+	 * activation, a value lower than 2 makes the scan serial.
+	 */
+	public static final String SCAN_THREADS = "org.osgi.junit.registry.scan.threads";
+	/**
+	 * The system property that enables the handling of bundle events in a
+	 * dedicated thread instead of the framework one.
+	 */
+	public static final String ASYNC_EVENTS = "org.osgi.junit.registry.async";
+	/**
+	 * The system property that disables the persistent index of the tests
+	 * found in each bundle when set to {@code false}.
+	 */
+	public static final String DISCOVERY_INDEX = "org.osgi.junit.registry.index";
+	/**
+	 * The system property that enables the detection of test classes only
+	 * by their byte code, so classes are never loaded until tests run.
+	 */
+	public static final String BYTECODE_ONLY = "org.osgi.junit.registry.bytecode";
+	/**
+	 * The system property that enables the lazy verification of candidate
+	 * test classes.
+	 */
+	public static final String LAZY = "org.osgi.junit.registry.lazy";
+	/**
+	 * The system property that sets how many events can wait to be delivered
+	 * to each listener. When greater than 0 listeners are notified in a
+	 * dedicated thread each, otherwise in the thread that changes the
+	 * registry.
+	 * <p>
+	 * Events are dropped when a listener lags behind by more than this
+	 * number and the listener receives a
+	 * {@link TestRegistryEventType#RESYNC} event instead, so it must read
+	 * again all tests from {@link #snapshot()}.
+	 */
+	public static final String LISTENER_QUEUE = "org.osgi.junit.registry.listeners.queue";
+
 	private LogService log;
 	private JUnit4BundleListener bundleListener;
+	private volatile DiscoveryIndex discoveryIndex;
+	// verdicts about super classes shared by all visitors
+	private final HierarchyCache hierarchyCache = new HierarchyCache();
+	private final boolean byteCodeOnly = Boolean.getBoolean(BYTECODE_ONLY);
+	private final boolean lazy = Boolean.getBoolean(LAZY);
+	// candidates not yet verified per bundle, in lazy mode, changed under verifyLock
+	private final ConcurrentMap<Bundle, Map<String, TestBean>> candidates = new ConcurrentHashMap<Bundle, Map<String, TestBean>>();
+	// serialises the verification of candidates, taken before publishLock
+	private final Object verifyLock = new Object();
+	// how long it took to discover tests of each bundle
+	private final ConcurrentMap<String, DiscoveryTime> discoveryTimes = new ConcurrentHashMap<String, DiscoveryTime>();
 
 	protected final Set<TestRegistryChangeListener> listeners = new CopyOnWriteArraySet<TestRegistryChangeListener>();
+	private final int listenerQueue = Integer.getInteger(LISTENER_QUEUE, 0);
+	private final ConcurrentMap<TestRegistryChangeListener, ListenerMailbox> mailboxes = new ConcurrentHashMap<TestRegistryChangeListener, ListenerMailbox>();
 	protected final Map<Bundle, Set<TestBean>> tests = new ConcurrentHashMap<Bundle, Set<TestBean>>();
+	// serialises changes of tests per bundle
+	private final Object publishLock = new Object();
+
+	// secondary indexes, updated under indexLock and read without locks
+	private final Object indexLock = new Object();
+	// all tests with their registration sequence, and in registration order
+	private final ConcurrentMap<TestBean, Long> allTests = new ConcurrentHashMap<TestBean, Long>();
+	private final ConcurrentNavigableMap<Long, TestBean> registrationOrder = new ConcurrentSkipListMap<Long, TestBean>();
+	private long registrations;
+	private final Collection<TestBean> testsView = new AbstractCollection<TestBean>() {
+		@Override
+		public Iterator<TestBean> iterator() {
+			return Collections.unmodifiableCollection(registrationOrder.values()).iterator();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return allTests.containsKey(o);
+		}
+
+		@Override
+		public int size() {
+			return allTests.size();
+		}
+	};
+	private final ConcurrentMap<String, Set<TestBean>> testsById = new ConcurrentHashMap<String, Set<TestBean>>();
+	private final ConcurrentMap<String, Set<TestBean>> testsByClassName = new ConcurrentHashMap<String, Set<TestBean>>();
+	private final ConcurrentMap<String, Set<TestBean>> testsByBundle = new ConcurrentHashMap<String, Set<TestBean>>();
+
+	// increased under indexLock on each change, the snapshot is rebuilt lazily
+	private volatile long version;
+	private volatile RegistrySnapshot snapshot = RegistrySnapshot.EMPTY;
 
 	public LogService getLog() {
 		return log;
@@ -61,40 +196,582 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 	}
 
 	protected void activate(BundleContext bundleContext) {
-		bundleListener = new JUnit4BundleListener(this);
+		if (!"false".equalsIgnoreCase(System.getProperty(DISCOVERY_INDEX))) {
+			File indexFile = bundleContext.getDataFile(getClass().getSimpleName() + "-index.properties");
+			if (indexFile != null) {
+				discoveryIndex = new DiscoveryIndex(indexFile, getDetectionRules(bundleContext), getLog());
+			}
+		}
+
+		if (Boolean.getBoolean(ASYNC_EVENTS)) {
+			bundleListener = new AsyncBundleListener(this, getLog());
+		} else {
+			bundleListener = new JUnit4BundleListener(this);
+		}
 		bundleContext.addBundleListener(bundleListener);
 		// parse current bundles
-		for (Bundle bundle : bundleContext.getBundles()) {
-			bundleListener.addBundle(bundle);
+		Bundle[] bundles = bundleContext.getBundles();
+		int threads = Math.min(bundles.length, Integer.getInteger(SCAN_THREADS, Runtime.getRuntime().availableProcessors()));
+		if (threads < 2) {
+			for (Bundle bundle : bundles) {
+				bundleListener.addBundle(bundle);
+			}
+		} else {
+			scanInParallel(bundles, threads);
+		}
+
+		DiscoveryIndex index = discoveryIndex;
+		if (index != null) {
+			index.save();
+		}
+	}
+
+	/*
+	 * Describes how tests are detected, the index is discarded when it
+	 * changes.
+	 */
+	private String getDetectionRules(BundleContext bundleContext) {
+		Bundle registryBundle = bundleContext.getBundle();
+		return getClass().getName() //
+				+ ";version=" + (registryBundle != null ? registryBundle.getVersion() : null) //
+				+ ";bytecode=" + byteCodeOnly //
+				+ ";lazy=" + lazy;
+	}
+
+	private void scanInParallel(Bundle[] bundles, int threads) {
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "JUnitRegistry-scanner-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			@SuppressWarnings("unchecked")
+			Future<Discovery>[] scans = new Future[bundles.length];
+			for (int i = 0; i < bundles.length; i++) {
+				final Bundle bundle = bundles[i];
+				int state = bundle.getState();
+				if ((state == Bundle.RESOLVED || state == Bundle.ACTIVE) && !tests.containsKey(bundle)) {
+					scans[i] = executor.submit(new Callable<Discovery>() {
+						@Override
+						public Discovery call() throws Exception {
+							return discover(bundle);
+						}
+					});
+				}
+			}
+
+			// publish in the bundles order to keep events deterministic
+			for (int i = 0; i < bundles.length; i++) {
+				Bundle bundle = bundles[i];
+				if (scans[i] == null) {
+					bundleListener.addBundle(bundle);
+					continue;
+				}
+				try {
+					publish(bundle, getUninterruptibly(scans[i]));
+				} catch (ExecutionException e) {
+					getLog().log(LogService.LOG_ERROR, "Could not scan tests of the bundle " + bundle.getSymbolicName(),
+							e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static <T> T getUninterruptibly(Future<T> future) throws ExecutionException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Gathers the tests contained in the given contributor bundle.
+	 * <p>
+	 * This method could be called concurrently for different bundles, it must
+	 * not change the registry state.
+	 *
+	 * @param contributor
+	 *            the bundle into lookup
+	 * @return the tests found in the bundle
+	 */
+	protected abstract Collection<TestBean> scanTests(Bundle contributor);
+
+	/**
+	 * Gathers the classes of the given contributor bundle that could be
+	 * tests, without verify them.
+	 * <p>
+	 * Used in {@value #LAZY} mode, the default implementation returns the
+	 * tests of {@link #scanTests(Bundle)}.
+	 *
+	 * @param contributor
+	 *            the bundle into lookup
+	 * @return the candidate tests found in the bundle
+	 * @see #verifyCandidate(TestBean)
+	 */
+	protected Collection<TestBean> scanCandidates(Bundle contributor) {
+		return scanTests(contributor);
+	}
+
+	/**
+	 * Verifies if a candidate returned by {@link #scanCandidates(Bundle)} is
+	 * really a test.
+	 * <p>
+	 * The default implementation returns always {@code true}.
+	 *
+	 * @param candidate
+	 *            the candidate to verify
+	 * @return {@code true} if the candidate is a test, {@code false}
+	 *         otherwise
+	 */
+	protected boolean verifyCandidate(TestBean candidate) {
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.github.nfalco79.junit4osgi.registry.spi.TestRegistry#registerTests(org.osgi.framework.Bundle)
+	 */
+	@Override
+	public void registerTests(Bundle contributor) {
+		if (tests.containsKey(contributor)) {
+			return;
+		}
+		publish(contributor, discover(contributor));
+	}
+
+	/*
+	 * The tests or the candidates found in a bundle.
+	 */
+	private static final class Discovery {
+		private final Collection<TestBean> tests;
+		private final boolean verified;
+
+		public Discovery(Collection<TestBean> tests, boolean verified) {
+			this.tests = tests;
+			this.verified = verified;
+		}
+	}
+
+	/*
+	 * The time spent to discover the tests of a bundle.
+	 */
+	private static final class DiscoveryTime {
+		private final String bundle;
+		private final long micros;
+		private final int tests;
+		private final boolean verified;
+
+		public DiscoveryTime(String bundle, long micros, int tests, boolean verified) {
+			this.bundle = bundle;
+			this.micros = micros;
+			this.tests = tests;
+			this.verified = verified;
+		}
+
+		@Override
+		public String toString() {
+			return bundle + " time=" + micros + "us " + (verified ? "tests=" : "candidates=") + tests;
+		}
+	}
+
+	private Discovery discover(Bundle contributor) {
+		long start = System.nanoTime();
+		Discovery discovery = restoreOrScan(contributor);
+		long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+		String bundle = String.valueOf(contributor.getSymbolicName());
+		discoveryTimes.put(bundle, new DiscoveryTime(bundle, micros, discovery.tests.size(), discovery.verified));
+		return discovery;
+	}
+
+	/*
+	 * Restores the tests of the contributor from the discovery index if it
+	 * is not changed since the last scan, otherwise scans it.
+	 */
+	private Discovery restoreOrScan(Bundle contributor) {
+		DiscoveryIndex index = discoveryIndex;
+		Collection<TestBean> bundleTests = index != null ? index.restore(contributor) : null;
+		if (bundleTests != null) {
+			return new Discovery(bundleTests, true);
+		}
+
+		if (lazy) {
+			return new Discovery(scanCandidates(contributor), false);
+		}
+		bundleTests = scanTests(contributor);
+		if (index != null) {
+			index.store(contributor, bundleTests);
+		}
+		return new Discovery(bundleTests, true);
+	}
+
+	private void publish(Bundle contributor, Discovery discovery) {
+		if (discovery.verified) {
+			publishTests(contributor, discovery.tests);
+			return;
+		}
+
+		synchronized (publishLock) {
+			if (tests.containsKey(contributor)) {
+				return;
+			}
+			tests.put(contributor, new LinkedHashSet<TestBean>());
+			if (!discovery.tests.isEmpty()) {
+				Map<String, TestBean> bundleCandidates = new LinkedHashMap<String, TestBean>();
+				for (TestBean candidate : discovery.tests) {
+					bundleCandidates.put(candidate.getName(), candidate);
+				}
+				candidates.put(contributor, bundleCandidates);
+			}
+		}
+
+		if (!listeners.isEmpty()) {
+			// listeners would never know about the tests of this bundle
+			verifyCandidates(contributor, getListenersFilter());
+		}
+	}
+
+	/*
+	 * Returns a filter that accepts the tests accepted by at least one
+	 * listener, null when a listener is interested in all tests.
+	 */
+	private TestBeanFilter getListenersFilter() {
+		final List<TestBeanFilter> filters = new ArrayList<TestBeanFilter>(listeners.size());
+		for (TestRegistryChangeListener listener : listeners) {
+			if (!(listener instanceof TestBeanFilter)) {
+				return null;
+			}
+			filters.add((TestBeanFilter) listener);
+		}
+		return new TestBeanFilter() {
+			@Override
+			public boolean accept(TestBean test) {
+				for (TestBeanFilter filter : filters) {
+					if (filter.accept(test)) {
+						return true;
+					}
+				}
+				return false;
+			}
+		};
+	}
+
+	/*
+	 * Verifies the candidates not yet verified of the bundles with the given
+	 * symbolic name, with the given class name and accepted by the given
+	 * filter, null matches any, and publishes those that are tests.
+	 */
+	private void verifyCandidates(String symbolicName, String className, TestBeanFilter filter) {
+		if (candidates.isEmpty()) {
+			return;
+		}
+
+		List<TestRegistryEvent> events = new ArrayList<TestRegistryEvent>();
+		synchronized (verifyLock) {
+			for (Entry<Bundle, Map<String, TestBean>> entry : candidates.entrySet()) {
+				Bundle bundle = entry.getKey();
+				if (symbolicName == null || symbolicName.equals(String.valueOf(bundle.getSymbolicName()))) {
+					verifyCandidates(bundle, entry.getValue(), className, filter, events);
+				}
+			}
+		}
+		for (TestRegistryEvent event : events) {
+			fireEvent(event);
+		}
+	}
+
+	/*
+	 * Verifies the candidates not yet verified of the given bundle accepted
+	 * by the given filter, null matches any, and publishes those that are
+	 * tests.
+	 */
+	private void verifyCandidates(Bundle contributor, TestBeanFilter filter) {
+		List<TestRegistryEvent> events = new ArrayList<TestRegistryEvent>(1);
+		synchronized (verifyLock) {
+			Map<String, TestBean> bundleCandidates = candidates.get(contributor);
+			if (bundleCandidates != null) {
+				verifyCandidates(contributor, bundleCandidates, null, filter, events);
+			}
+		}
+		for (TestRegistryEvent event : events) {
+			fireEvent(event);
+		}
+	}
+
+	/*
+	 * Verifies the candidates of the bundle with the given class name and
+	 * accepted by the given filter, null matches any, and indexes those that
+	 * are tests. The events to notify are added to the given list. Must be
+	 * called holding verifyLock.
+	 */
+	private void verifyCandidates(Bundle bundle, Map<String, TestBean> bundleCandidates, String className, TestBeanFilter filter, List<TestRegistryEvent> events) {
+		Collection<TestBean> toVerify;
+		if (className == null) {
+			toVerify = new ArrayList<TestBean>(bundleCandidates.size());
+			for (TestBean candidate : bundleCandidates.values()) {
+				if (filter == null || filter.accept(candidate)) {
+					toVerify.add(candidate);
+				}
+			}
+		} else if (bundleCandidates.containsKey(className)) {
+			toVerify = Collections.singleton(bundleCandidates.get(className));
+		} else {
+			return;
+		}
+		if (toVerify.isEmpty()) {
+			return;
+		}
+
+		Collection<TestBean> verified = new ArrayList<TestBean>(toVerify.size());
+		for (TestBean candidate : toVerify) {
+			// results are memoized, a candidate is verified once
+			bundleCandidates.remove(candidate.getName());
+			if (isVerified(candidate)) {
+				verified.add(candidate);
+			}
+		}
+
+		Collection<TestBean> added = Collections.emptyList();
+		Collection<TestBean> bundleTests = null;
+		synchronized (publishLock) {
+			if (tests.containsKey(bundle)) {
+				added = indexTests(verified);
+				if (bundleCandidates.isEmpty()) {
+					bundleTests = new ArrayList<TestBean>(tests.get(bundle));
+				}
+			}
+		}
+		if (!added.isEmpty()) {
+			events.add(TestRegistryEvent.batch(TestRegistryEventType.ADD, added));
+		}
+
+		if (bundleCandidates.isEmpty()) {
+			candidates.remove(bundle, bundleCandidates);
+			DiscoveryIndex index = discoveryIndex;
+			if (index != null && bundleTests != null) {
+				// all candidates are verified, next time restore them
+				index.store(bundle, bundleTests);
+			}
+		}
+	}
+
+	private boolean isVerified(TestBean candidate) {
+		try {
+			return verifyCandidate(candidate);
+		} catch (RuntimeException e) {
+			getLog().log(LogService.LOG_ERROR, "Could not verify the test class " + candidate.getId(), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Registers the given tests as the tests of the contributor bundle, unless
+	 * the contributor has been registered meanwhile.
+	 *
+	 * @param contributor
+	 *            the bundle that contains tests
+	 * @param bundleTests
+	 *            the tests found in the bundle
+	 */
+	protected void publishTests(Bundle contributor, Collection<TestBean> bundleTests) {
+		Collection<TestBean> added;
+		synchronized (publishLock) {
+			if (tests.containsKey(contributor)) {
+				return;
+			}
+			tests.put(contributor, new LinkedHashSet<TestBean>());
+			added = indexTests(bundleTests);
+		}
+		if (!added.isEmpty()) {
+			fireEvent(TestRegistryEvent.batch(TestRegistryEventType.ADD, added));
 		}
 	}
 
 	protected void deactivate(BundleContext bundleContext) {
 		try {
 			bundleContext.removeBundleListener(bundleListener);
+			bundleListener.dispose();
+
+			DiscoveryIndex index = discoveryIndex;
+			discoveryIndex = null;
+			if (index != null) {
+				index.save();
+			}
 		} finally {
 			dispose();
+			for (ListenerMailbox mailbox : mailboxes.values()) {
+				mailbox.close();
+			}
+			mailboxes.clear();
 		}
 	}
 
+	/**
+	 * Notifies the given event to all listeners.
+	 * <p>
+	 * A {@link BatchTestRegistryChangeListener} receives the event as is,
+	 * other listeners receive an event for each test of a batch event.
+	 * <p>
+	 * When {@value #LISTENER_QUEUE} is set the event is only enqueued in the
+	 * mailbox of each listener.
+	 *
+	 * @param event
+	 *            the event to notify
+	 */
 	protected void fireEvent(TestRegistryEvent event) {
 		for (TestRegistryChangeListener listener : listeners) {
+			ListenerMailbox mailbox = mailboxes.get(listener);
+			if (mailbox == null) {
+				deliver(listener, event);
+			} else if (!mailbox.post(event)) {
+				getLog().log(LogService.LOG_WARNING, "Listener " + listener.getClass() //
+					+ " is too slow, dropped the event " + event.getType() //
+					+ " for " + event.getTests().size() + " tests, it will resync from the registry");
+			}
+		}
+	}
+
+	private void deliver(TestRegistryChangeListener listener, TestRegistryEvent event) {
+		if (listener instanceof BatchTestRegistryChangeListener) {
 			try {
-				listener.registryChanged(event);
+				((BatchTestRegistryChangeListener) listener).registryBatchChanged(event);
 			} catch (Exception t) {
 				getLog().log(LogService.LOG_INFO, "Listener " + listener.getClass() //
 					+ " fails on event " + event.getType() //
-					+ " for the test " + event.getTest().getId());
+					+ " for " + event.getTests().size() + " tests");
+			}
+		} else {
+			for (TestRegistryEvent singleEvent : toSingleEvents(event)) {
+				try {
+					listener.registryChanged(singleEvent);
+				} catch (Exception t) {
+					getLog().log(LogService.LOG_INFO, "Listener " + listener.getClass() //
+						+ " fails on event " + singleEvent.getType() //
+						+ (singleEvent.getTest() != null ? " for the test " + singleEvent.getTest().getId() : ""));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until all events have been delivered to the listeners notified
+	 * asynchronously.
+	 *
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted while waiting
+	 */
+	public void flushListeners() throws InterruptedException {
+		for (ListenerMailbox mailbox : mailboxes.values()) {
+			mailbox.flush();
+		}
+	}
+
+	/**
+	 * Returns the statistics of the listeners notified asynchronously, how
+	 * many events were delivered, dropped or are waiting.
+	 *
+	 * @return a description for each listener
+	 */
+	public String[] getListenerStats() {
+		List<String> stats = new ArrayList<String>(mailboxes.size());
+		for (ListenerMailbox mailbox : mailboxes.values()) {
+			stats.add(mailbox.toString());
+		}
+		return stats.toArray(new String[stats.size()]);
+	}
+
+	/**
+	 * Returns how long it took to discover the tests of each bundle, the
+	 * slowest first.
+	 *
+	 * @return a description for each scanned bundle
+	 */
+	public String[] getDiscoveryTimes() {
+		List<DiscoveryTime> times = new ArrayList<DiscoveryTime>(discoveryTimes.values());
+		Collections.sort(times, new Comparator<DiscoveryTime>() {
+			@Override
+			public int compare(DiscoveryTime t1, DiscoveryTime t2) {
+				return t1.micros < t2.micros ? 1 : (t1.micros == t2.micros ? 0 : -1);
 			}
+		});
+		String[] result = new String[times.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = times.get(i).toString();
 		}
+		return result;
+	}
+
+	private List<TestRegistryEvent> toSingleEvents(TestRegistryEvent event) {
+		if (!event.isBatch()) {
+			return Collections.singletonList(event);
+		}
+		List<TestRegistryEvent> singleEvents = new ArrayList<TestRegistryEvent>(event.getTests().size());
+		for (TestBean test : event.getTests()) {
+			singleEvents.add(new TestRegistryEvent(event.getType(), test));
+		}
+		return singleEvents;
+	}
+
+	/**
+	 * Creates a visitor to analyse the byte code of classes of the given
+	 * bundle, that shares with other visitors what it learns about super
+	 * classes.
+	 *
+	 * @param bundle
+	 *            the bundle of the classes to analyse
+	 * @return a new visitor
+	 */
+	protected BundleTestClassVisitor createVisitor(Bundle bundle) {
+		BundleTestClassVisitor visitor = new BundleTestClassVisitor(bundle, hierarchyCache);
+		visitor.setLog(getLog());
+		visitor.setByteCodeOnly(byteCodeOnly);
+		return visitor;
 	}
 
 	protected boolean isTestClass(Bundle bundle, TestBean bean, BundleTestClassVisitor visitor) {
+		return isTestClass(bundle, bean, visitor, null);
+	}
+
+	/**
+	 * Verifies if the given class is a test class, analysing its byte code
+	 * when loading the class would activate the bundle or the
+	 * {@value #BYTECODE_ONLY} mode is enabled.
+	 *
+	 * @param bundle
+	 *            the bundle of the class
+	 * @param bean
+	 *            the class to verify
+	 * @param visitor
+	 *            the visitor to analyse the byte code
+	 * @param bundleJar
+	 *            the jar of the bundle where read the byte code, if
+	 *            {@code null} it is read from the bundle entry
+	 * @return {@code true} if the class is a test class, {@code false}
+	 *         otherwise
+	 */
+	protected boolean isTestClass(Bundle bundle, TestBean bean, BundleTestClassVisitor visitor, ZipFile bundleJar) {
 		final String className = bean.getName();
 
 		boolean isTest = false;
 		boolean isLazy = "lazy".equals(bundle.getHeaders().get("Bundle-ActivationPolicy"));
-		if ((bundle.getState() == Bundle.RESOLVED && !isLazy) || bundle.getState() == Bundle.ACTIVE) {
+		if (!byteCodeOnly && ((bundle.getState() == Bundle.RESOLVED && !isLazy) || bundle.getState() == Bundle.ACTIVE)) {
 
 			final String symbolicName = bundle.getSymbolicName();
 
@@ -112,8 +789,10 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 						+ "' could not be loaded by its bundle " + symbolicName + " classloader: ", e);
 			}
 		} else {
-			URL entry = bundle.getEntry('/' + className.replace('.', '/') + ".class");
-			assert entry != null; // checked by TestBean constructor
+			String entryPath = className.replace('.', '/') + ".class";
+			ZipEntry jarEntry = bundleJar != null ? bundleJar.getEntry(entryPath) : null;
+			URL entry = jarEntry == null ? bundle.getEntry('/' + entryPath) : null;
+			assert jarEntry != null || entry != null; // checked by TestBean constructor
 
 			visitor.reset();
 
@@ -122,7 +801,11 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 
 			// use classloader to introspect class
 			try {
-				ASMUtils.analyseByteCode(entry, visitor);
+				if (jarEntry != null) {
+					ASMUtils.analyseByteCode(bundleJar, jarEntry, visitor);
+				} else {
+					ASMUtils.analyseByteCode(entry, visitor);
+				}
 				isTest = visitor.isTestClass();
 			} catch (RuntimeException e) {
 				// could happen if some static code in the class fails
@@ -137,9 +820,95 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 		return isTest;
 	}
 
+	private Collection<TestBean> indexTests(Collection<TestBean> beans) {
+		Collection<TestBean> added = new ArrayList<TestBean>(beans.size());
+		for (TestBean bean : beans) {
+			if (indexTest(bean)) {
+				added.add(bean);
+			}
+		}
+		return added;
+	}
+
+	private boolean indexTest(TestBean bean) {
+		Bundle bundle = bean.getBundle();
+		Set<TestBean> bundleTests = tests.get(bundle);
+		if (bundleTests == null) {
+			bundleTests = new LinkedHashSet<TestBean>();
+			tests.put(bundle, bundleTests);
+		}
+		if (!bundleTests.add(bean)) {
+			return false;
+		}
+
+		synchronized (indexLock) {
+			if (!allTests.containsKey(bean)) {
+				long sequence = registrations++;
+				allTests.put(bean, sequence);
+				registrationOrder.put(sequence, bean);
+			}
+			index(testsById, bean.getId(), bean);
+			index(testsByClassName, bean.getName(), bean);
+			index(testsByBundle, String.valueOf(bundle.getSymbolicName()), bean);
+			version++;
+		}
+		return true;
+	}
+
+	private static void index(ConcurrentMap<String, Set<TestBean>> index, String key, TestBean bean) {
+		Set<TestBean> beans = index.get(key);
+		if (beans == null) {
+			beans = Collections.newSetFromMap(new ConcurrentHashMap<TestBean, Boolean>(2));
+			index.put(key, beans);
+		}
+		beans.add(bean);
+	}
+
+	private static void unindex(ConcurrentMap<String, Set<TestBean>> index, String key, TestBean bean) {
+		Set<TestBean> beans = index.get(key);
+		if (beans != null) {
+			beans.remove(bean);
+			if (beans.isEmpty()) {
+				index.remove(key);
+			}
+		}
+	}
+
+	private static Set<TestBean> lookup(ConcurrentMap<String, Set<TestBean>> index, String key) {
+		Set<TestBean> beans = key != null ? index.get(key) : null;
+		if (beans == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(new LinkedHashSet<TestBean>(beans));
+	}
+
 	@Override
 	public void dispose() {
 		tests.clear();
+		candidates.clear();
+		discoveryTimes.clear();
+		hierarchyCache.clear();
+		synchronized (indexLock) {
+			allTests.clear();
+			registrationOrder.clear();
+			testsById.clear();
+			testsByClassName.clear();
+			testsByBundle.clear();
+			version++;
+		}
+	}
+
+	/**
+	 * Returns the identifiers of all registered tests.
+	 * <p>
+	 * In {@value #LAZY} mode the candidates not yet verified are not
+	 * returned.
+	 *
+	 * @return an array of test identifiers
+	 */
+	public String[] getTestIds() {
+		Set<String> ids = snapshot().getTestIds();
+		return ids.toArray(new String[ids.size()]);
 	}
 
 	/*
@@ -151,6 +920,22 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 		if (listener == null) {
 			throw new NullPointerException("Cannot add a null listener");
 		}
+		if (listenerQueue > 0 && !mailboxes.containsKey(listener)) {
+			final TestRegistryChangeListener target = listener;
+			mailboxes.putIfAbsent(listener, new ListenerMailbox(listener, listenerQueue) {
+				@Override
+				protected void deliver(TestRegistryEvent event) {
+					AbstractTestRegistry.this.deliver(target, event);
+				}
+
+				@Override
+				protected void failed(TestRegistryEvent event, Throwable t) {
+					getLog().log(LogService.LOG_ERROR, "Listener " + target.getClass() //
+						+ " fails on event " + event.getType() //
+						+ " for " + event.getTests().size() + " tests", t);
+				}
+			});
+		}
 		listeners.add(listener);
 	}
 
@@ -164,6 +949,10 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 			throw new NullPointerException("Cannot remove a null listener");
 		}
 		listeners.remove(listener);
+		ListenerMailbox mailbox = mailboxes.remove(listener);
+		if (mailbox != null) {
+			mailbox.close();
+		}
 	}
 
 	/*
@@ -172,10 +961,28 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 	 */
 	@Override
 	public void removeTests(Bundle contributor) {
-		Set<TestBean> bundleTests = tests.remove(contributor);
+		Set<TestBean> bundleTests;
+		synchronized (publishLock) {
+			bundleTests = tests.remove(contributor);
+		}
+		candidates.remove(contributor);
+		// the byte code of the bundle classes could change
+		hierarchyCache.evict(contributor);
 		if (bundleTests != null) {
-			for (TestBean test : bundleTests) {
-				fireEvent(new TestRegistryEvent(TestRegistryEventType.REMOVE, test));
+			synchronized (indexLock) {
+				for (TestBean test : bundleTests) {
+					Long sequence = allTests.remove(test);
+					if (sequence != null) {
+						registrationOrder.remove(sequence);
+					}
+					unindex(testsById, test.getId(), test);
+					unindex(testsByClassName, test.getName(), test);
+					unindex(testsByBundle, String.valueOf(contributor.getSymbolicName()), test);
+				}
+				version++;
+			}
+			if (!bundleTests.isEmpty()) {
+				fireEvent(TestRegistryEvent.batch(TestRegistryEventType.REMOVE, new ArrayList<TestBean>(bundleTests)));
 			}
 		}
 	}
@@ -186,11 +993,7 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 	 */
 	@Override
 	public Set<TestBean> getTests() {
-		Set<TestBean> allTests = new LinkedHashSet<TestBean>();
-		for (Set<TestBean> foo : tests.values()) {
-			allTests.addAll(foo);
-		}
-		return Collections.unmodifiableSet(allTests);
+		return snapshot(null).getTests();
 	}
 
 	/*
@@ -202,13 +1005,15 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 		Set<TestBean> testBucket = new LinkedHashSet<TestBean>();
 
 		if (testIds != null) {
-			for (Set<TestBean> bundleTests : tests.values()) {
-				for (TestBean test : bundleTests) {
-					for (String testId : testIds) {
-						if (testId != null && testId.equals(test.getId())) {
-							testBucket.add(test);
-							break;
-						}
+			for (String testId : testIds) {
+				int idx = testId != null ? testId.lastIndexOf('@') : -1;
+				if (idx != -1) {
+					verifyCandidates(testId.substring(0, idx), testId.substring(idx + 1), null);
+				}
+				if (testId != null) {
+					Set<TestBean> beans = testsById.get(testId);
+					if (beans != null) {
+						testBucket.addAll(beans);
 					}
 				}
 			}
@@ -216,4 +1021,66 @@ public abstract class AbstractTestRegistry implements TestRegistry {
 		return testBucket;
 	}
 
-}
\ No newline at end of file
+	/*
+	 * (non-Javadoc)
+	 * @see com.github.nfalco79.junit4osgi.registry.spi.TestRegistry#getTestsByClassName(java.lang.String)
+	 */
+	@Override
+	public Set<TestBean> getTestsByClassName(String className) {
+		if (className != null) {
+			verifyCandidates(null, className, null);
+		}
+		return lookup(testsByClassName, className);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.github.nfalco79.junit4osgi.registry.spi.TestRegistry#getTestsByBundle(java.lang.String)
+	 */
+	@Override
+	public Set<TestBean> getTestsByBundle(String symbolicName) {
+		if (symbolicName != null) {
+			verifyCandidates(symbolicName, null, null);
+		}
+		return lookup(testsByBundle, symbolicName);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.github.nfalco79.junit4osgi.registry.spi.TestRegistry#getTestsView()
+	 */
+	@Override
+	public Collection<TestBean> getTestsView() {
+		return testsView;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.github.nfalco79.junit4osgi.registry.spi.TestRegistry#snapshot()
+	 */
+	@Override
+	public RegistrySnapshot snapshot() {
+		RegistrySnapshot current = snapshot;
+		if (current.getVersion() == version) {
+			return current;
+		}
+		synchronized (indexLock) {
+			if (snapshot.getVersion() != version) {
+				snapshot = new RegistrySnapshot(version, registrationOrder.values());
+			}
+			return snapshot;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A {@code null} filter accepts all tests.
+	 */
+	@Override
+	public RegistrySnapshot snapshot(TestBeanFilter filter) {
+		verifyCandidates(null, null, filter);
+		return snapshot();
+	}
+
+}
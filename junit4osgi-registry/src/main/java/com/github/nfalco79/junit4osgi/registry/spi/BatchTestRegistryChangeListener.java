@@ -0,0 +1,40 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.spi;
+
+/**
+ * A listener that is notified once for all the tests of a bundle added or
+ * removed together, instead of once for each test.
+ * <p>
+ * The {@link TestRegistry} notifies this listener only through
+ * {@link #registryBatchChanged(TestRegistryEvent)}, also when a single test
+ * changes.
+ *
+ * @author nikolasfalco
+ */
+public interface BatchTestRegistryChangeListener extends TestRegistryChangeListener {
+
+	/**
+	 * Fires a {@link TestRegistry} changes that involves one or more tests of
+	 * the same bundle.
+	 *
+	 * @param event
+	 *            a {@link TestRegistryEvent}, its
+	 *            {@link TestRegistryEvent#getTests()} are the changed tests
+	 */
+	void registryBatchChanged(TestRegistryEvent event);
+
+}
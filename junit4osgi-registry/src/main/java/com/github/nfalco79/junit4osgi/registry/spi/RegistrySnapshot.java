@@ -0,0 +1,104 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.spi;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * An immutable view of the tests in a {@link TestRegistry} at a given
+ * version.
+ * <p>
+ * The registry increases the version every time a test is registered or
+ * removed, so clients can compare versions to skip work when nothing changed.
+ *
+ * @author nikolasfalco
+ */
+public final class RegistrySnapshot {
+
+	/**
+	 * A snapshot of an empty registry.
+	 */
+	public static final RegistrySnapshot EMPTY = new RegistrySnapshot(0, Collections.<TestBean> emptySet());
+
+	private final long version;
+	private final Set<TestBean> tests;
+	private final Set<String> testIds;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param version
+	 *            the registry version
+	 * @param tests
+	 *            the tests in the registry, they are copied
+	 */
+	public RegistrySnapshot(long version, Collection<TestBean> tests) {
+		this.version = version;
+
+		Set<TestBean> testsCopy = new LinkedHashSet<TestBean>(tests);
+		Set<String> ids = new LinkedHashSet<String>(testsCopy.size());
+		for (TestBean test : testsCopy) {
+			ids.add(test.getId());
+		}
+		this.tests = Collections.unmodifiableSet(testsCopy);
+		this.testIds = Collections.unmodifiableSet(ids);
+	}
+
+	/**
+	 * Returns the registry version of this snapshot.
+	 *
+	 * @return the version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the tests in the registry.
+	 *
+	 * @return an unmodifiable set of {@link TestBean}
+	 */
+	public Set<TestBean> getTests() {
+		return tests;
+	}
+
+	/**
+	 * Returns the identifiers of the tests in the registry.
+	 *
+	 * @return an unmodifiable set of test ids
+	 */
+	public Set<String> getTestIds() {
+		return testIds;
+	}
+
+	/**
+	 * Returns the number of tests in the registry.
+	 *
+	 * @return the tests count
+	 */
+	public int size() {
+		return tests.size();
+	}
+
+	@Override
+	public String toString() {
+		return "RegistrySnapshot [version=" + version + ", tests=" + tests.size() + "]";
+	}
+
+}
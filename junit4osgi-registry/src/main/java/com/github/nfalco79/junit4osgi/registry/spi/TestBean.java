@@ -30,6 +30,7 @@ import org.osgi.framework.Bundle;
 public class TestBean {
 	private String className;
 	private transient Bundle bundle;
+	private transient String id;
 
 	public TestBean(Bundle bundle, String className) {
 		if (bundle == null) {
@@ -51,12 +52,24 @@ public class TestBean {
 		return className;
 	}
 
+	/**
+	 * Returns the bundle that contributes this test.
+	 *
+	 * @return the contributor bundle
+	 */
+	public Bundle getBundle() {
+		return bundle;
+	}
+
 	public Class<?> getTestClass() throws ClassNotFoundException {
 		return bundle.loadClass(className);
 	}
 
 	public String getId() {
-		return bundle.getSymbolicName() + '@' + className;
+		if (id == null) {
+			id = bundle.getSymbolicName() + '@' + className;
+		}
+		return id;
 	}
 
 	@Override
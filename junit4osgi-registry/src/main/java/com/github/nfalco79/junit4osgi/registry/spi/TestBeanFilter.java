@@ -0,0 +1,38 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.spi;
+
+/**
+ * Selects the tests a client of the {@link TestRegistry} is interested in.
+ * <p>
+ * In lazy mode the registry verifies only the candidate tests accepted by
+ * the filter. A {@link TestRegistryChangeListener} that implements this
+ * interface could not be notified of the tests it does not accept.
+ *
+ * @author nikolasfalco
+ */
+public interface TestBeanFilter {
+
+	/**
+	 * Returns if the client is interested in the given test.
+	 *
+	 * @param test
+	 *            a test or a candidate test not yet verified
+	 * @return {@code true} if the test is accepted, {@code false} otherwise
+	 */
+	boolean accept(TestBean test);
+
+}
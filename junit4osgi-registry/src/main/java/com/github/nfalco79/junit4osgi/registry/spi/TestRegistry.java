@@ -15,6 +15,7 @@
  */
 package com.github.nfalco79.junit4osgi.registry.spi;
 
+import java.util.Collection;
 import java.util.Set;
 
 import org.osgi.framework.Bundle;
@@ -48,8 +49,11 @@ public interface TestRegistry {
 	/**
 	 * Returns a set of {@link TestBean} to provides all the JUnit class in the
 	 * registry.
+	 * <p>
+	 * In lazy mode all candidate tests are verified, prefer
+	 * {@link #snapshot(TestBeanFilter)} to verify only the interesting ones.
 	 *
-	 * @return a copy of a set of all registered {@link TestBean}
+	 * @return an unmodifiable set of all registered {@link TestBean}
 	 */
 	Set<TestBean> getTests();
 
@@ -62,6 +66,66 @@ public interface TestRegistry {
 	 */
 	Set<TestBean> getTests(String[] testIds);
 
+	/**
+	 * Returns a set of {@link TestBean} whose test class has the given name.
+	 * <p>
+	 * The same class could be contributed by more bundles, for example by
+	 * different versions of the same bundle.
+	 *
+	 * @param className
+	 *            the fully qualified name of the test class
+	 * @return a set of {@link TestBean} with the given class name.
+	 */
+	Set<TestBean> getTestsByClassName(String className);
+
+	/**
+	 * Returns a set of {@link TestBean} contributed by bundles with the given
+	 * symbolic name.
+	 *
+	 * @param symbolicName
+	 *            the bundle symbolic name
+	 * @return a set of {@link TestBean} of the given bundle.
+	 */
+	Set<TestBean> getTestsByBundle(String symbolicName);
+
+	/**
+	 * Returns an unmodifiable live view of all registered {@link TestBean}.
+	 * <p>
+	 * Unlike {@link #getTests()} the view is not a snapshot, it reflects
+	 * tests registered or removed meanwhile and could be iterated while the
+	 * registry changes.
+	 *
+	 * @return a read-only view of all registered {@link TestBean}
+	 */
+	Collection<TestBean> getTestsView();
+
+	/**
+	 * Returns an immutable snapshot of the registered tests.
+	 * <p>
+	 * The snapshot is rebuilt only when tests are registered or removed,
+	 * until then the same instance is returned, so this method is cheap to
+	 * call. Compare {@link RegistrySnapshot#getVersion()} to know if the
+	 * registry has changed since a previous snapshot.
+	 * <p>
+	 * In lazy mode the snapshot contains only the tests already verified.
+	 *
+	 * @return the current snapshot of the registry
+	 */
+	RegistrySnapshot snapshot();
+
+	/**
+	 * Returns an immutable snapshot of the registered tests, after the
+	 * verification of the candidate tests accepted by the given filter in
+	 * lazy mode.
+	 * <p>
+	 * The snapshot could contain also tests not accepted by the filter.
+	 *
+	 * @param filter
+	 *            selects the tests the caller is interested in
+	 * @return the current snapshot of the registry
+	 */
+	RegistrySnapshot snapshot(TestBeanFilter filter);
+
 	/**
 	 * Register a {@link TestRegistryChangeListener} used to be notified each
 	 * time a new JUnit test is registered or is gone.
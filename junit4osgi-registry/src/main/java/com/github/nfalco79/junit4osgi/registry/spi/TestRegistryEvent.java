@@ -15,9 +15,16 @@
  */
 package com.github.nfalco79.junit4osgi.registry.spi;
 
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  * Describes the kind of event that the {@link TestRegistry} has triggered when
  * a new bundle is to be installing or uninstalling.
+ * <p>
+ * A batch event carries all the tests of a bundle added or removed in one
+ * operation and it is sent only to
+ * {@link BatchTestRegistryChangeListener}s.
  *
  * @author nikolasfalco
  */
@@ -27,11 +34,17 @@ public class TestRegistryEvent {
 	 * The event kind
 	 */
 	public enum TestRegistryEventType {
-		ADD, REMOVE
+		ADD, REMOVE,
+		/**
+		 * Some events have been lost, the listener must read again all tests
+		 * from {@link TestRegistry#snapshot()}. This event has no test.
+		 */
+		RESYNC
 	}
 
 	private TestRegistryEventType type;
 	private TestBean test;
+	private Collection<TestBean> tests;
 
 	/**
 	 * Default constructor.
@@ -46,6 +59,21 @@ public class TestRegistryEvent {
 		this.setTest(test);
 	}
 
+	/**
+	 * Creates a batch event.
+	 *
+	 * @param type
+	 *            the event type
+	 * @param tests
+	 *            the event subjects, all contributed by the same bundle
+	 * @return a batch event
+	 */
+	public static TestRegistryEvent batch(TestRegistryEventType type, Collection<TestBean> tests) {
+		TestRegistryEvent event = new TestRegistryEvent(type, (TestBean) null);
+		event.tests = Collections.unmodifiableCollection(tests);
+		return event;
+	}
+
 	/**
 	 * Returns the event type.
 	 *
@@ -82,6 +110,29 @@ public class TestRegistryEvent {
 	 */
 	public void setTest(TestBean test) {
 		this.test = test;
+		this.tests = null;
+	}
+
+	/**
+	 * Returns the test subjects of this event, for a single test event a
+	 * collection with only that test.
+	 *
+	 * @return an unmodifiable collection of {@link TestBean}
+	 */
+	public Collection<TestBean> getTests() {
+		if (tests == null) {
+			return test != null ? Collections.singleton(test) : Collections.<TestBean> emptySet();
+		}
+		return tests;
+	}
+
+	/**
+	 * Returns if this event carries more tests at once.
+	 *
+	 * @return {@code true} if this is a batch event, {@code false} otherwise
+	 */
+	public boolean isBatch() {
+		return tests != null;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.internal;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.service.log.LogService;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestRegistry;
+
+public class AsyncBundleListenerTest {
+
+	@Test
+	public void events_are_handled_outside_the_framework_thread() throws Exception {
+		final AtomicReference<Thread> scanThread = new AtomicReference<Thread>();
+		TestRegistry registry = mock(TestRegistry.class);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				scanThread.set(Thread.currentThread());
+				return null;
+			}
+		}).when(registry).registerTests(any(Bundle.class));
+
+		AsyncBundleListener listener = new AsyncBundleListener(registry, mock(LogService.class));
+		try {
+			listener.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, mock(Bundle.class)));
+			listener.flush();
+
+			assertNotNull(scanThread.get());
+			assertNotSame(Thread.currentThread(), scanThread.get());
+		} finally {
+			listener.dispose();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void errors_do_not_stop_the_handling_of_next_bundles() throws Exception {
+		Bundle bundle1 = mock(Bundle.class);
+		Bundle bundle2 = mock(Bundle.class);
+
+		TestRegistry registry = mock(TestRegistry.class);
+		doThrow(new LinkageError("bad class")).when(registry).registerTests(bundle1);
+		LogService log = mock(LogService.class);
+
+		AsyncBundleListener listener = new AsyncBundleListener(registry, log);
+		try {
+			listener.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, bundle1));
+			listener.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, bundle2));
+			listener.flush();
+
+			verify(registry).registerTests(bundle2);
+			verify(log).log(eq(LogService.LOG_ERROR), contains("Could not update tests"), any(LinkageError.class));
+		} finally {
+			listener.dispose();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void a_new_worker_handles_events_after_an_interrupt() throws Exception {
+		final AtomicReference<Thread> scanThread = new AtomicReference<Thread>();
+		Bundle bundle1 = mock(Bundle.class);
+		Bundle bundle2 = mock(Bundle.class);
+
+		TestRegistry registry = mock(TestRegistry.class);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				scanThread.set(Thread.currentThread());
+				return null;
+			}
+		}).when(registry).registerTests(bundle1);
+
+		AsyncBundleListener listener = new AsyncBundleListener(registry, mock(LogService.class));
+		try {
+			listener.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, bundle1));
+			listener.flush();
+
+			// the worker exits when interrupted
+			scanThread.get().interrupt();
+			scanThread.get().join();
+
+			listener.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, bundle2));
+			listener.flush();
+
+			verify(registry).registerTests(bundle2);
+		} finally {
+			listener.dispose();
+		}
+	}
+
+	@Test
+	public void events_of_the_same_bundle_are_coalesced() throws Exception {
+		final CountDownLatch scanning = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		Bundle busyBundle = mock(Bundle.class);
+		Bundle bundle1 = mock(Bundle.class);
+		Bundle bundle2 = mock(Bundle.class);
+
+		TestRegistry registry = mock(TestRegistry.class);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				scanning.countDown();
+				release.await(5, TimeUnit.SECONDS);
+				return null;
+			}
+		}).when(registry).registerTests(busyBundle);
+
+		AsyncBundleListener listener = new AsyncBundleListener(registry, mock(LogService.class));
+		try {
+			// keep the worker busy while the other events arrive
+			listener.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, busyBundle));
+			assertTrue(scanning.await(5, TimeUnit.SECONDS));
+
+			listener.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, bundle1));
+			listener.bundleChanged(new BundleEvent(BundleEvent.STARTED, bundle1));
+			listener.bundleChanged(new BundleEvent(BundleEvent.UNRESOLVED, bundle2));
+			listener.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, bundle2));
+			release.countDown();
+			listener.flush();
+
+			InOrder inOrder = inOrder(registry);
+			inOrder.verify(registry).registerTests(busyBundle);
+			inOrder.verify(registry).registerTests(bundle1);
+			inOrder.verify(registry).removeTests(bundle2);
+			inOrder.verify(registry).registerTests(bundle2);
+			verify(registry, times(1)).registerTests(bundle1);
+			verify(registry, never()).removeTests(bundle1);
+		} finally {
+			listener.dispose();
+		}
+	}
+
+	@Test
+	public void register_not_yet_done_is_discarded_when_bundle_stops() throws Exception {
+		final CountDownLatch scanning = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		Bundle busyBundle = mock(Bundle.class);
+		Bundle bundle = mock(Bundle.class);
+
+		TestRegistry registry = mock(TestRegistry.class);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				scanning.countDown();
+				release.await(5, TimeUnit.SECONDS);
+				return null;
+			}
+		}).when(registry).registerTests(busyBundle);
+
+		AsyncBundleListener listener = new AsyncBundleListener(registry, mock(LogService.class));
+		try {
+			listener.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, busyBundle));
+			assertTrue(scanning.await(5, TimeUnit.SECONDS));
+
+			listener.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, bundle));
+			listener.bundleChanged(new BundleEvent(BundleEvent.STOPPED, bundle));
+			release.countDown();
+			listener.flush();
+
+			verify(registry, never()).registerTests(bundle);
+			verify(registry).removeTests(bundle);
+		} finally {
+			listener.dispose();
+		}
+	}
+
+}
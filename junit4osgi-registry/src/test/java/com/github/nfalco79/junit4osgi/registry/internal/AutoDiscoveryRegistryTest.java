@@ -19,9 +19,19 @@ import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
 import org.example.GenericClass;
 import org.example.ITGenericClass;
@@ -35,20 +45,29 @@ import org.example.inner.TestInnerClassIsNotAJUnit3;
 import org.example.inner.TestInnerClassIsNotAJUnit3.XClass;
 import org.example.inner.TestOuterIsNotAJUnit3;
 import org.hamcrest.Matchers;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 import org.osgi.framework.Bundle;
 import org.osgi.service.log.LogService;
 
 import com.github.nfalco79.junit4osgi.registry.internal.util.BundleBuilder;
 import com.github.nfalco79.junit4osgi.registry.internal.util.BundleBuilder.URLStrategy;
+import com.github.nfalco79.junit4osgi.registry.spi.AbstractTestRegistry;
+import com.github.nfalco79.junit4osgi.registry.spi.BatchTestRegistryChangeListener;
+import com.github.nfalco79.junit4osgi.registry.spi.RegistrySnapshot;
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestBeanFilter;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryChangeListener;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent.TestRegistryEventType;
 
 public class AutoDiscoveryRegistryTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void test_gather_test_by_naming_convention() throws Exception {
 		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class, GenericClass.class, MyServiceIT.class,
@@ -139,6 +158,69 @@ public class AutoDiscoveryRegistryTest {
 		registry.dispose();
 	}
 
+	@Test
+	public void lookup_tests_by_id_class_name_and_bundle() throws Exception {
+		Bundle bundle1 = getMockBundle(SimpleTestCase.class, JUnit3Test.class).build();
+		Bundle bundle2 = getMockBundle(SimpleTestCase.class, MyServiceIT.class).symbolicName("other").build();
+
+		AutoDiscoveryRegistry registry = new AutoDiscoveryRegistry();
+		registry.setLog(mock(LogService.class));
+		registry.registerTests(bundle1);
+		registry.registerTests(bundle2);
+
+		assertThat(registry.getTests(new String[] { "other@" + SimpleTestCase.class.getName(), "unknown@x" }),
+				Matchers.contains(new TestBean(bundle2, SimpleTestCase.class.getName())));
+		assertThat(registry.getTestsByClassName(SimpleTestCase.class.getName()), Matchers.containsInAnyOrder(
+				new TestBean(bundle1, SimpleTestCase.class.getName()), new TestBean(bundle2, SimpleTestCase.class.getName())));
+		assertThat(registry.getTestsByBundle("other"), Matchers.containsInAnyOrder(
+				new TestBean(bundle2, SimpleTestCase.class.getName()), new TestBean(bundle2, MyServiceIT.class.getName())));
+		assertThat(registry.getTestsView(), Matchers.hasSize(4));
+
+		registry.removeTests(bundle2);
+		assertThat(registry.getTestsByBundle("other"), Matchers.empty());
+		assertThat(registry.getTestsByClassName(SimpleTestCase.class.getName()),
+				Matchers.contains(new TestBean(bundle1, SimpleTestCase.class.getName())));
+		assertThat(registry.getTests(new String[] { "other@" + SimpleTestCase.class.getName() }), Matchers.empty());
+		assertThat(registry.getTestsView(), Matchers.hasSize(2));
+
+		registry.dispose();
+		assertThat(registry.getTestsView(), Matchers.empty());
+	}
+
+	@Test
+	public void snapshot_is_rebuilt_only_when_registry_changes() throws Exception {
+		Bundle bundle1 = getMockBundle(SimpleTestCase.class, JUnit3Test.class).build();
+		Bundle bundle2 = getMockBundle(MyServiceIT.class).symbolicName("other").build();
+
+		AutoDiscoveryRegistry registry = new AutoDiscoveryRegistry();
+		registry.setLog(mock(LogService.class));
+
+		RegistrySnapshot empty = registry.snapshot();
+		assertThat(empty.getTests(), Matchers.empty());
+
+		registry.registerTests(bundle1);
+		RegistrySnapshot snapshot = registry.snapshot();
+		assertThat(snapshot.getVersion(), Matchers.greaterThan(empty.getVersion()));
+		assertThat(snapshot.getTestIds(), Matchers.containsInAnyOrder("acme@" + SimpleTestCase.class.getName(),
+				"acme@" + JUnit3Test.class.getName()));
+		assertSame(snapshot, registry.snapshot());
+
+		registry.registerTests(bundle1);
+		assertSame(snapshot, registry.snapshot());
+
+		registry.registerTests(bundle2);
+		RegistrySnapshot newSnapshot = registry.snapshot();
+		assertThat(newSnapshot.getVersion(), Matchers.greaterThan(snapshot.getVersion()));
+		assertThat(newSnapshot.size(), Matchers.is(3));
+		// older snapshot are not affected by changes
+		assertThat(snapshot.size(), Matchers.is(2));
+
+		registry.removeTests(bundle1);
+		assertThat(registry.snapshot().getTests(), Matchers.contains(new TestBean(bundle2, MyServiceIT.class.getName())));
+
+		registry.dispose();
+	}
+
 	@Test
 	public void test_listener_event() throws Exception {
 		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class).build();
@@ -170,6 +252,54 @@ public class AutoDiscoveryRegistryTest {
 		registry.dispose();
 	}
 
+	@Test
+	public void batch_listener_receives_one_event_per_bundle() throws Exception {
+		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class).build();
+		BatchTestRegistryChangeListener listener = mock(BatchTestRegistryChangeListener.class);
+
+		AutoDiscoveryRegistry registry = new AutoDiscoveryRegistry();
+		registry.setLog(mock(LogService.class));
+		registry.addTestRegistryListener(listener);
+
+		registry.registerTests(bundle);
+
+		ArgumentCaptor<TestRegistryEvent> argument = ArgumentCaptor.forClass(TestRegistryEvent.class);
+		verify(listener).registryBatchChanged(argument.capture());
+		assertThat(argument.getValue().getType(), Matchers.is(TestRegistryEventType.ADD));
+		assertThat(argument.getValue().getTests(), Matchers.containsInAnyOrder(
+				new TestBean(bundle, SimpleTestCase.class.getName()), new TestBean(bundle, JUnit3Test.class.getName())));
+
+		reset(listener);
+
+		registry.removeTests(bundle);
+
+		argument = ArgumentCaptor.forClass(TestRegistryEvent.class);
+		verify(listener).registryBatchChanged(argument.capture());
+		assertThat(argument.getValue().getType(), Matchers.is(TestRegistryEventType.REMOVE));
+		assertThat(argument.getValue().getTests(), Matchers.hasSize(2));
+		verify(listener, never()).registryChanged(any(TestRegistryEvent.class));
+
+		registry.dispose();
+	}
+
+	@Test
+	public void discovery_time_is_tracked_per_bundle() throws Exception {
+		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class).build();
+
+		AutoDiscoveryRegistry registry = new AutoDiscoveryRegistry();
+		registry.setLog(mock(LogService.class));
+
+		registry.registerTests(bundle);
+
+		String[] times = registry.getDiscoveryTimes();
+		assertEquals(1, times.length);
+		assertThat(times[0], Matchers.startsWith(bundle.getSymbolicName() + " time="));
+		assertThat(times[0], Matchers.endsWith(" tests=2"));
+
+		registry.dispose();
+		assertEquals(0, registry.getDiscoveryTimes().length);
+	}
+
 	@Test
 	public void bundle_are_not_registered_twice() throws Exception {
 		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class).build();
@@ -187,6 +317,257 @@ public class AutoDiscoveryRegistryTest {
 		verify(bundle).getEntryPaths("/");
 	}
 
+	@Test
+	public void scan_the_bundle_jar_when_installed_from_local_file() throws Exception {
+		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class, GenericClass.class).build();
+		File jar = createJar("acme;singleton:=true", SimpleTestCase.class, JUnit3Test.class, GenericClass.class);
+		when(bundle.getLocation()).thenReturn("reference:" + jar.toURI());
+		when(bundle.getLastModified()).thenReturn(jar.lastModified() + 1000);
+
+		AutoDiscoveryRegistry registry = new AutoDiscoveryRegistry();
+		registry.setLog(mock(LogService.class));
+		registry.registerTests(bundle);
+
+		assertThat(registry.getTests(), Matchers.containsInAnyOrder(new TestBean(bundle, SimpleTestCase.class.getName()),
+				new TestBean(bundle, JUnit3Test.class.getName())));
+		verify(bundle, never()).getEntryPaths(anyString());
+		verify(bundle, never()).findEntries(anyString(), anyString(), anyBoolean());
+
+		registry.dispose();
+	}
+
+	@Test
+	public void jar_of_another_bundle_is_not_scanned() throws Exception {
+		Bundle bundle = getMockBundle(SimpleTestCase.class).build();
+		File jar = createJar("other", SimpleTestCase.class, JUnit3Test.class);
+		when(bundle.getLocation()).thenReturn(jar.toURI().toString());
+		when(bundle.getLastModified()).thenReturn(jar.lastModified() + 1000);
+
+		AutoDiscoveryRegistry registry = new AutoDiscoveryRegistry();
+		registry.setLog(mock(LogService.class));
+		registry.registerTests(bundle);
+
+		assertThat(registry.getTests(), Matchers.contains(new TestBean(bundle, SimpleTestCase.class.getName())));
+		verify(bundle).getEntryPaths("/");
+
+		registry.dispose();
+	}
+
+	@Test
+	public void find_entries_instead_of_navigate_bundle_paths() throws Exception {
+		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class).build();
+		Vector<URL> entries = new Vector<URL>();
+		entries.add(new URL("file:" + BundleBuilder.toResource(SimpleTestCase.class)));
+		entries.add(new URL("file:" + BundleBuilder.toResource(JUnit3Test.class)));
+		// class of a fragment, not visible as bundle entry
+		entries.add(new URL("file:/org/example/fragment/FragmentTest.class"));
+		when(bundle.findEntries("/", "*.class", true)).thenReturn(entries.elements());
+
+		AutoDiscoveryRegistry registry = new AutoDiscoveryRegistry();
+		registry.setLog(mock(LogService.class));
+		registry.registerTests(bundle);
+
+		assertThat(registry.getTests(), Matchers.containsInAnyOrder(new TestBean(bundle, SimpleTestCase.class.getName()),
+				new TestBean(bundle, JUnit3Test.class.getName())));
+		verify(bundle, never()).getEntryPaths(anyString());
+
+		registry.dispose();
+	}
+
+	private File createJar(String symbolicName, Class<?>... classes) throws IOException {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue("Bundle-SymbolicName", symbolicName);
+
+		File jar = folder.newFile(symbolicName.replaceAll("\\W", "") + ".jar");
+		JarOutputStream os = new JarOutputStream(new FileOutputStream(jar), manifest);
+		try {
+			for (Class<?> clazz : classes) {
+				String resource = BundleBuilder.toResource(clazz);
+				os.putNextEntry(new JarEntry(resource.substring(1)));
+				InputStream is = clazz.getResourceAsStream(resource);
+				try {
+					byte[] buffer = new byte[4096];
+					int read;
+					while ((read = is.read(buffer)) != -1) {
+						os.write(buffer, 0, read);
+					}
+				} finally {
+					is.close();
+				}
+				os.closeEntry();
+			}
+		} finally {
+			os.close();
+		}
+		return jar;
+	}
+
+	@Test
+	public void bytecode_only_mode_never_loads_classes() throws Exception {
+		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class, GenericClass.class, MyServiceIT.class) //
+				.state(Bundle.ACTIVE) //
+				.build();
+
+		System.setProperty(AbstractTestRegistry.BYTECODE_ONLY, "true");
+		AutoDiscoveryRegistry registry;
+		try {
+			registry = new AutoDiscoveryRegistry();
+		} finally {
+			System.clearProperty(AbstractTestRegistry.BYTECODE_ONLY);
+		}
+		registry.setLog(mock(LogService.class));
+		registry.registerTests(bundle);
+
+		assertThat(registry.getTests(), Matchers.containsInAnyOrder(new TestBean(bundle, SimpleTestCase.class.getName()),
+				new TestBean(bundle, JUnit3Test.class.getName()), new TestBean(bundle, MyServiceIT.class.getName())));
+		verify(bundle, never()).loadClass(anyString());
+
+		registry.dispose();
+	}
+
+	@Test
+	public void lazy_mode_verifies_candidates_on_demand() throws Exception {
+		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class, ITGenericClass.class) //
+				.state(Bundle.ACTIVE) //
+				.build();
+		TestRegistryChangeListener listener = mock(TestRegistryChangeListener.class);
+
+		System.setProperty(AbstractTestRegistry.LAZY, "true");
+		AutoDiscoveryRegistry registry;
+		try {
+			registry = new AutoDiscoveryRegistry();
+		} finally {
+			System.clearProperty(AbstractTestRegistry.LAZY);
+		}
+		registry.setLog(mock(LogService.class));
+		registry.registerTests(bundle);
+		registry.addTestRegistryListener(listener);
+
+		assertThat(registry.getTestIds(), Matchers.emptyArray());
+		assertThat(registry.getTestsView(), Matchers.empty());
+		verify(bundle, never()).loadClass(anyString());
+		verifyNoInteractions(listener);
+
+		assertThat(registry.getTestsByClassName(SimpleTestCase.class.getName()),
+				Matchers.contains(new TestBean(bundle, SimpleTestCase.class.getName())));
+		verify(bundle, never()).loadClass(JUnit3Test.class.getName());
+		verify(listener).registryChanged(any(TestRegistryEvent.class));
+
+		assertThat(registry.getTests(), Matchers.containsInAnyOrder(new TestBean(bundle, SimpleTestCase.class.getName()),
+				new TestBean(bundle, JUnit3Test.class.getName())));
+
+		// verification results are memoized
+		clearInvocations(bundle);
+		assertThat(registry.getTests(), Matchers.hasSize(2));
+		assertThat(registry.getTestsByClassName(ITGenericClass.class.getName()), Matchers.empty());
+		verify(bundle, never()).loadClass(anyString());
+
+		registry.removeTests(bundle);
+		assertThat(registry.getTests(), Matchers.empty());
+
+		registry.dispose();
+	}
+
+	@Test
+	public void lazy_mode_verifies_bundles_registered_while_listening() throws Exception {
+		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class, ITGenericClass.class) //
+				.state(Bundle.ACTIVE) //
+				.build();
+		BatchTestRegistryChangeListener listener = mock(BatchTestRegistryChangeListener.class);
+
+		System.setProperty(AbstractTestRegistry.LAZY, "true");
+		AutoDiscoveryRegistry registry;
+		try {
+			registry = new AutoDiscoveryRegistry();
+		} finally {
+			System.clearProperty(AbstractTestRegistry.LAZY);
+		}
+		registry.setLog(mock(LogService.class));
+		registry.addTestRegistryListener(listener);
+		registry.registerTests(bundle);
+
+		ArgumentCaptor<TestRegistryEvent> event = ArgumentCaptor.forClass(TestRegistryEvent.class);
+		verify(listener).registryBatchChanged(event.capture());
+		assertThat(event.getValue().getType(), Matchers.is(TestRegistryEventType.ADD));
+		assertThat(event.getValue().getTests(), Matchers.containsInAnyOrder(new TestBean(bundle, SimpleTestCase.class.getName()),
+				new TestBean(bundle, JUnit3Test.class.getName())));
+
+		registry.dispose();
+	}
+
+	@Test
+	public void lazy_mode_verifies_only_the_candidates_accepted_by_listeners() throws Exception {
+		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class) //
+				.state(Bundle.ACTIVE) //
+				.build();
+		FilteringListener listener = new FilteringListener(SimpleTestCase.class.getName());
+
+		System.setProperty(AbstractTestRegistry.LAZY, "true");
+		AutoDiscoveryRegistry registry;
+		try {
+			registry = new AutoDiscoveryRegistry();
+		} finally {
+			System.clearProperty(AbstractTestRegistry.LAZY);
+		}
+		registry.setLog(mock(LogService.class));
+		registry.addTestRegistryListener(listener);
+		registry.registerTests(bundle);
+
+		TestBean simpleTest = new TestBean(bundle, SimpleTestCase.class.getName());
+		assertThat(listener.tests, Matchers.contains(simpleTest));
+		assertThat(registry.snapshot().getTests(), Matchers.contains(simpleTest));
+		assertThat(registry.snapshot(listener).getTests(), Matchers.contains(simpleTest));
+		verify(bundle, never()).loadClass(JUnit3Test.class.getName());
+
+		assertThat(registry.getTests(), Matchers.containsInAnyOrder(simpleTest, new TestBean(bundle, JUnit3Test.class.getName())));
+
+		registry.dispose();
+	}
+
+	@Test(timeout = 10000)
+	public void listeners_are_notified_without_holding_registry_locks() throws Exception {
+		Bundle bundle = getMockBundle(SimpleTestCase.class, JUnit3Test.class) //
+				.state(Bundle.ACTIVE) //
+				.build();
+
+		System.setProperty(AbstractTestRegistry.LAZY, "true");
+		final AutoDiscoveryRegistry registry;
+		try {
+			registry = new AutoDiscoveryRegistry();
+		} finally {
+			System.clearProperty(AbstractTestRegistry.LAZY);
+		}
+		registry.setLog(mock(LogService.class));
+		registry.registerTests(bundle);
+
+		final Set<TestBean> seen = new CopyOnWriteArraySet<TestBean>();
+		registry.addTestRegistryListener(new TestRegistryChangeListener() {
+			@Override
+			public void registryChanged(TestRegistryEvent event) {
+				// a listener that waits for another thread that reads the registry
+				Thread reader = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						seen.addAll(registry.getTestsByBundle("acme"));
+						seen.addAll(registry.snapshot().getTests());
+					}
+				});
+				reader.start();
+				try {
+					reader.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+
+		assertThat(registry.getTestsByClassName(SimpleTestCase.class.getName()), Matchers.hasSize(1));
+		assertThat(seen, Matchers.hasSize(2));
+
+		registry.dispose();
+	}
+
 	@Test
 	public void testclass_not_found() throws Exception {
 		LogService logService = spy(LogService.class);
@@ -206,6 +587,34 @@ public class AutoDiscoveryRegistryTest {
 		verify(logService).log(eq(LogService.LOG_ERROR), contains(expectedLog), any(Exception.class));
 	}
 
+	/*
+	 * A listener interested in a single test class, like a runner with an
+	 * include pattern.
+	 */
+	private static class FilteringListener implements BatchTestRegistryChangeListener, TestBeanFilter {
+		private final String className;
+		private final Set<TestBean> tests = new CopyOnWriteArraySet<TestBean>();
+
+		public FilteringListener(String className) {
+			this.className = className;
+		}
+
+		@Override
+		public boolean accept(TestBean test) {
+			return className.equals(test.getName());
+		}
+
+		@Override
+		public void registryChanged(TestRegistryEvent event) {
+			registryBatchChanged(event);
+		}
+
+		@Override
+		public void registryBatchChanged(TestRegistryEvent event) {
+			tests.addAll(event.getTests());
+		}
+	}
+
 	private BundleBuilder getMockBundle(Class<?>... classes) throws Exception {
 		return BundleBuilder.newBuilder() //
 				.symbolicName("acme") //
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.internal;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.example.JUnit3Test;
+import org.example.SimpleTestCase;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
+import org.osgi.service.log.LogService;
+
+import com.github.nfalco79.junit4osgi.registry.internal.util.BundleBuilder;
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+public class DiscoveryIndexTest {
+
+	private static final String RULES = "registry;bytecode=false";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void tests_are_restored_after_save() throws Exception {
+		File file = new File(folder.getRoot(), "index.properties");
+		Bundle bundle = getBundle(1000l);
+
+		DiscoveryIndex index = new DiscoveryIndex(file, RULES, mock(LogService.class));
+		assertNull(index.restore(bundle));
+		index.store(bundle, Arrays.asList(new TestBean(bundle, SimpleTestCase.class.getName()),
+				new TestBean(bundle, JUnit3Test.class.getName())));
+		index.save();
+		assertTrue("Index not written", file.isFile());
+
+		Collection<TestBean> tests = new DiscoveryIndex(file, RULES, mock(LogService.class)).restore(bundle);
+		assertThat(tests, Matchers.contains(new TestBean(bundle, SimpleTestCase.class.getName()),
+				new TestBean(bundle, JUnit3Test.class.getName())));
+	}
+
+	@Test
+	public void bundle_without_tests_is_restored() throws Exception {
+		File file = new File(folder.getRoot(), "index.properties");
+		Bundle bundle = getBundle(1000l);
+
+		DiscoveryIndex index = new DiscoveryIndex(file, RULES, mock(LogService.class));
+		index.store(bundle, Arrays.<TestBean> asList());
+		index.save();
+
+		assertThat(new DiscoveryIndex(file, RULES, mock(LogService.class)).restore(bundle), Matchers.empty());
+	}
+
+	@Test
+	public void changed_bundle_is_not_restored() throws Exception {
+		File file = new File(folder.getRoot(), "index.properties");
+		Bundle bundle = getBundle(1000l);
+
+		DiscoveryIndex index = new DiscoveryIndex(file, RULES, mock(LogService.class));
+		index.store(bundle, Arrays.asList(new TestBean(bundle, SimpleTestCase.class.getName())));
+		index.save();
+
+		Bundle updatedBundle = getBundle(2000l);
+		assertNull(new DiscoveryIndex(file, RULES, mock(LogService.class)).restore(updatedBundle));
+	}
+
+	@Test
+	public void index_of_other_detection_rules_is_discarded() throws Exception {
+		File file = new File(folder.getRoot(), "index.properties");
+		Bundle bundle = getBundle(1000l);
+
+		DiscoveryIndex index = new DiscoveryIndex(file, RULES, mock(LogService.class));
+		index.store(bundle, Arrays.asList(new TestBean(bundle, SimpleTestCase.class.getName())));
+		index.save();
+
+		index = new DiscoveryIndex(file, "registry;bytecode=true", mock(LogService.class));
+		assertNull(index.restore(bundle));
+		index.save();
+
+		// the discarded entries are removed from the file too
+		assertNull(new DiscoveryIndex(file, RULES, mock(LogService.class)).restore(bundle));
+	}
+
+	@Test
+	public void missing_class_is_not_restored() throws Exception {
+		File file = new File(folder.getRoot(), "index.properties");
+		Bundle bundle = getBundle(1000l);
+
+		DiscoveryIndex index = new DiscoveryIndex(file, RULES, mock(LogService.class));
+		index.store(bundle, Arrays.asList(new TestBean(bundle, SimpleTestCase.class.getName())));
+		when(bundle.getEntry(BundleBuilder.toResource(SimpleTestCase.class))).thenReturn(null);
+
+		assertNull(index.restore(bundle));
+	}
+
+	private Bundle getBundle(long lastModified) throws Exception {
+		Bundle bundle = BundleBuilder.newBuilder() //
+				.symbolicName("acme") //
+				.addClasses(SimpleTestCase.class, JUnit3Test.class) //
+				.build();
+		when(bundle.getVersion()).thenReturn(new Version(1, 0, 0));
+		when(bundle.getLastModified()).thenReturn(lastModified);
+		return bundle;
+	}
+
+}
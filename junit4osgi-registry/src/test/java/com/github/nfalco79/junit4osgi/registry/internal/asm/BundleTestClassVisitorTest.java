@@ -28,6 +28,7 @@ import org.example.hierarchy.AbstractJUnit4HierarchyTest;
 import org.example.hierarchy.JUnit3HierarchyBaseTestCase;
 import org.example.hierarchy.JUnit3HierarchyTestCase;
 import org.example.hierarchy.JUnit4HierarchyTest;
+import org.example.suite.MyEnclosedTest;
 import org.example.suite.MyJUnit4SuiteTest;
 import org.example.suite.MyJUnit3SuiteTest;
 import org.hamcrest.Matchers;
@@ -53,7 +54,8 @@ public class BundleTestClassVisitorTest {
 						{ JUnit4HierarchyTest.class, true, false, "hierarchy extends an abstract class that contains @Test annotation, it's a JUnit4 class" },
 						{ JUnit4HierarchyTest.class, true, true, "hierarchy extends an abstract class loaded by bundle classloader since bundle state ACTIVE, it's a JUnit4 class" },
 						{ MyJUnit3SuiteTest.class, true, true, "JUnit3 test suite" },
-						{ MyJUnit4SuiteTest.class, true, true, "JUnit4 test suite" }});
+						{ MyJUnit4SuiteTest.class, true, true, "JUnit4 test suite" },
+						{ MyEnclosedTest.class, true, true, "class with a custom runner" }});
 	}
 
 	private Class<?> testClass;
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.internal.asm;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.net.URL;
+
+import org.example.hierarchy.AbstractJUnit3HierarchyTestCase;
+import org.example.hierarchy.JUnit3HierarchyBaseTestCase;
+import org.example.hierarchy.JUnit3HierarchyTestCase;
+import org.example.hierarchy.JUnit4HierarchyTest;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import com.github.nfalco79.junit4osgi.registry.internal.util.BundleBuilder;
+
+public class HierarchyCacheTest {
+
+	private static final String ABSTRACT_TYPE = "org/example/hierarchy/AbstractJUnit3HierarchyTestCase";
+
+	@Test
+	public void super_classes_are_analysed_once() throws Exception {
+		Bundle bundle = BundleBuilder.newBuilder() //
+				.symbolicName("acme") //
+				.addClasses(JUnit3HierarchyTestCase.class, JUnit3HierarchyBaseTestCase.class,
+						AbstractJUnit3HierarchyTestCase.class) //
+				.build();
+
+		HierarchyCache cache = new HierarchyCache();
+		assertTrue(analyse(bundle, cache, JUnit3HierarchyTestCase.class));
+		assertThat(cache.get(bundle, ABSTRACT_TYPE), Matchers.is(Boolean.TRUE));
+
+		// the super class byte code is no more readable, the verdict comes from the cache
+		when(bundle.getEntry(BundleBuilder.toResource(AbstractJUnit3HierarchyTestCase.class)))
+				.thenReturn(new File("notexists.class").toURI().toURL());
+		assertTrue(analyse(bundle, cache, JUnit3HierarchyBaseTestCase.class));
+
+		// without cache the analysis fails
+		assertFalse(analyse(bundle, new HierarchyCache(), JUnit3HierarchyBaseTestCase.class));
+	}
+
+	@Test
+	public void verdicts_are_kept_per_type() throws Exception {
+		Bundle bundle = BundleBuilder.newBuilder() //
+				.symbolicName("acme") //
+				.addClasses(JUnit4HierarchyTest.class) //
+				.build();
+
+		HierarchyCache cache = new HierarchyCache();
+		cache.put(bundle, "org/example/hierarchy/AbstractJUnit4HierarchyTest", false);
+		assertThat(cache.get(bundle, "org/example/hierarchy/AbstractJUnit4HierarchyTest"), Matchers.is(Boolean.FALSE));
+		assertThat(cache.get(bundle, "org/example/Unknown"), Matchers.nullValue());
+	}
+
+	@Test
+	public void evict_drops_verdicts_of_the_bundle() throws Exception {
+		Bundle bundle1 = mock(Bundle.class);
+		Bundle bundle2 = mock(Bundle.class);
+
+		HierarchyCache cache = new HierarchyCache();
+		cache.put(bundle1, ABSTRACT_TYPE, true);
+		cache.put(bundle2, ABSTRACT_TYPE, true);
+		assertThat(cache.size(), Matchers.is(2));
+
+		cache.evict(bundle1);
+		assertThat(cache.get(bundle1, ABSTRACT_TYPE), Matchers.nullValue());
+		assertThat(cache.get(bundle2, ABSTRACT_TYPE), Matchers.is(Boolean.TRUE));
+	}
+
+	@Test
+	public void updated_bundle_invalidates_verdicts() throws Exception {
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getLastModified()).thenReturn(1000l);
+
+		HierarchyCache cache = new HierarchyCache();
+		cache.put(bundle, ABSTRACT_TYPE, true);
+		assertThat(cache.get(bundle, ABSTRACT_TYPE), Matchers.is(Boolean.TRUE));
+
+		when(bundle.getLastModified()).thenReturn(2000l);
+		assertThat(cache.get(bundle, ABSTRACT_TYPE), Matchers.nullValue());
+	}
+
+	private boolean analyse(Bundle bundle, HierarchyCache cache, Class<?> testClass) {
+		URL resource = getClass().getResource(BundleBuilder.toResource(testClass));
+
+		BundleTestClassVisitor visitor = new BundleTestClassVisitor(bundle, cache);
+		ASMUtils.analyseByteCode(resource, visitor);
+		return visitor.isTestClass();
+	}
+
+}
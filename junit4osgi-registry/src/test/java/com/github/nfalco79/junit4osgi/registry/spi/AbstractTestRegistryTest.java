@@ -0,0 +1,325 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.registry.spi;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.example.SimpleTestCase;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.log.LogService;
+
+import com.github.nfalco79.junit4osgi.registry.internal.util.BundleBuilder;
+
+public class AbstractTestRegistryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void cleanup() {
+		System.clearProperty(AbstractTestRegistry.SCAN_THREADS);
+		System.clearProperty(AbstractTestRegistry.LISTENER_QUEUE);
+	}
+
+	@Test
+	public void parallel_scan_publish_tests_in_bundle_order() throws Exception {
+		System.setProperty(AbstractTestRegistry.SCAN_THREADS, "4");
+
+		final Bundle[] bundles = new Bundle[6];
+		for (int i = 0; i < bundles.length; i++) {
+			bundles[i] = BundleBuilder.newBuilder() //
+					.symbolicName("bundle" + i) //
+					.addClass(SimpleTestCase.class) //
+					.state(Bundle.RESOLVED) //
+					.build();
+		}
+		BundleContext bundleContext = mock(BundleContext.class);
+		when(bundleContext.getBundles()).thenReturn(bundles);
+
+		final Set<String> scanThreads = new CopyOnWriteArraySet<String>();
+		AbstractTestRegistry registry = new AbstractTestRegistry() {
+			@Override
+			protected Collection<TestBean> scanTests(Bundle contributor) {
+				scanThreads.add(Thread.currentThread().getName());
+				int index = indexOf(bundles, contributor);
+				try {
+					// first bundles complete last
+					Thread.sleep((bundles.length - index) * 20l);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return Collections.singleton(new TestBean(contributor, SimpleTestCase.class.getName()));
+			}
+		};
+		registry.setLog(mock(LogService.class));
+
+		final List<Bundle> events = new ArrayList<Bundle>();
+		registry.addTestRegistryListener(new TestRegistryChangeListener() {
+			@Override
+			public void registryChanged(TestRegistryEvent event) {
+				assertThat(event.getType(), Matchers.is(TestRegistryEvent.TestRegistryEventType.ADD));
+				events.add(event.getTest().getBundle());
+			}
+		});
+
+		registry.activate(bundleContext);
+		try {
+			assertThat(events, Matchers.contains(bundles));
+			List<TestBean> expected = new ArrayList<TestBean>();
+			for (Bundle bundle : bundles) {
+				expected.add(new TestBean(bundle, SimpleTestCase.class.getName()));
+			}
+			assertThat(registry.getTests(), Matchers.contains(expected.toArray()));
+			assertThat(registry.getTestsView(), Matchers.contains(expected.toArray()));
+			assertThat(scanThreads, Matchers.everyItem(Matchers.startsWith("JUnitRegistry-scanner-")));
+		} finally {
+			registry.deactivate(bundleContext);
+		}
+	}
+
+	@Test
+	public void serial_scan_when_only_one_thread() throws Exception {
+		System.setProperty(AbstractTestRegistry.SCAN_THREADS, "1");
+
+		Bundle bundle = BundleBuilder.newBuilder() //
+				.symbolicName("acme") //
+				.addClass(SimpleTestCase.class) //
+				.state(Bundle.RESOLVED) //
+				.build();
+		BundleContext bundleContext = mock(BundleContext.class);
+		when(bundleContext.getBundles()).thenReturn(new Bundle[] { bundle, bundle });
+
+		final List<String> scanThreads = new ArrayList<String>();
+		AbstractTestRegistry registry = new AbstractTestRegistry() {
+			@Override
+			protected Collection<TestBean> scanTests(Bundle contributor) {
+				scanThreads.add(Thread.currentThread().getName());
+				return Collections.singleton(new TestBean(contributor, SimpleTestCase.class.getName()));
+			}
+		};
+		registry.setLog(mock(LogService.class));
+
+		registry.activate(bundleContext);
+		try {
+			assertThat(scanThreads, Matchers.contains(Thread.currentThread().getName()));
+			assertThat(registry.getTests(), Matchers.contains(new TestBean(bundle, SimpleTestCase.class.getName())));
+		} finally {
+			registry.deactivate(bundleContext);
+		}
+	}
+
+	@Test
+	public void unchanged_bundles_are_restored_from_the_index() throws Exception {
+		System.setProperty(AbstractTestRegistry.SCAN_THREADS, "1");
+
+		Bundle bundle = BundleBuilder.newBuilder() //
+				.symbolicName("acme") //
+				.addClass(SimpleTestCase.class) //
+				.state(Bundle.RESOLVED) //
+				.build();
+		when(bundle.getLastModified()).thenReturn(1000l);
+		BundleContext bundleContext = mock(BundleContext.class);
+		when(bundleContext.getBundles()).thenReturn(new Bundle[] { bundle });
+		when(bundleContext.getDataFile(anyString())).thenReturn(new File(folder.getRoot(), "index.properties"));
+
+		final AtomicInteger scans = new AtomicInteger();
+		for (int i = 0; i < 2; i++) {
+			AbstractTestRegistry registry = new AbstractTestRegistry() {
+				@Override
+				protected Collection<TestBean> scanTests(Bundle contributor) {
+					scans.incrementAndGet();
+					return Collections.singleton(new TestBean(contributor, SimpleTestCase.class.getName()));
+				}
+			};
+			registry.setLog(mock(LogService.class));
+
+			registry.activate(bundleContext);
+			try {
+				assertThat(registry.getTests(), Matchers.contains(new TestBean(bundle, SimpleTestCase.class.getName())));
+			} finally {
+				registry.deactivate(bundleContext);
+			}
+		}
+		assertThat(scans.get(), Matchers.is(1));
+	}
+
+	@Test
+	public void slow_listener_resyncs_when_its_events_are_dropped() throws Exception {
+		System.setProperty(AbstractTestRegistry.LISTENER_QUEUE, "1");
+
+		Bundle[] bundles = new Bundle[3];
+		for (int i = 0; i < bundles.length; i++) {
+			bundles[i] = BundleBuilder.newBuilder() //
+					.symbolicName("bundle" + i) //
+					.addClass(SimpleTestCase.class) //
+					.build();
+		}
+
+		AbstractTestRegistry registry = new AbstractTestRegistry() {
+			@Override
+			protected Collection<TestBean> scanTests(Bundle contributor) {
+				return Collections.singleton(new TestBean(contributor, SimpleTestCase.class.getName()));
+			}
+		};
+		LogService log = mock(LogService.class);
+		registry.setLog(log);
+
+		final AbstractTestRegistry target = registry;
+		final CountDownLatch delivering = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> events = new CopyOnWriteArrayList<String>();
+		registry.addTestRegistryListener(new TestRegistryChangeListener() {
+			@Override
+			public void registryChanged(TestRegistryEvent event) {
+				assertThat(Thread.currentThread().getName(), Matchers.startsWith("JUnitRegistry-listener-"));
+				delivering.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (event.getType() == TestRegistryEvent.TestRegistryEventType.RESYNC) {
+					events.add("resync " + target.snapshot().getTests().size());
+				} else {
+					events.add(event.getTest().getBundle().getSymbolicName());
+				}
+			}
+		});
+
+		registry.registerTests(bundles[0]);
+		assertTrue(delivering.await(5, TimeUnit.SECONDS));
+		// the first event is delivering, the second waits and the third
+		// replaces it with a resync
+		registry.registerTests(bundles[1]);
+		registry.registerTests(bundles[2]);
+		assertThat(registry.getTests(), Matchers.hasSize(3));
+
+		release.countDown();
+		registry.flushListeners();
+		assertThat(events, Matchers.contains("bundle0", "resync 3"));
+		assertThat(registry.getListenerStats(), Matchers.arrayContaining( //
+				Matchers.containsString("delivered=2 dropped=2 pending=0 maxPending=1")));
+		verify(log).log(eq(LogService.LOG_WARNING), contains("dropped the event ADD for 1 tests"));
+
+		registry.dispose();
+	}
+
+	@Test(timeout = 10000)
+	public void listener_error_does_not_stop_the_delivery() throws Exception {
+		System.setProperty(AbstractTestRegistry.LISTENER_QUEUE, "10");
+
+		AbstractTestRegistry registry = new AbstractTestRegistry() {
+			@Override
+			protected Collection<TestBean> scanTests(Bundle contributor) {
+				return Collections.singleton(new TestBean(contributor, SimpleTestCase.class.getName()));
+			}
+		};
+		LogService log = mock(LogService.class);
+		registry.setLog(log);
+
+		final List<String> events = new CopyOnWriteArrayList<String>();
+		registry.addTestRegistryListener(new TestRegistryChangeListener() {
+			@Override
+			public void registryChanged(TestRegistryEvent event) {
+				String symbolicName = event.getTest().getBundle().getSymbolicName();
+				if ("bundle0".equals(symbolicName)) {
+					throw new AssertionError("listener failure");
+				}
+				events.add(symbolicName);
+			}
+		});
+
+		for (int i = 0; i < 2; i++) {
+			registry.registerTests(BundleBuilder.newBuilder() //
+					.symbolicName("bundle" + i) //
+					.addClass(SimpleTestCase.class) //
+					.build());
+		}
+		registry.flushListeners();
+
+		assertThat(events, Matchers.contains("bundle1"));
+		verify(log).log(eq(LogService.LOG_ERROR), contains("fails on event ADD for 1 tests"), any(AssertionError.class));
+
+		registry.dispose();
+	}
+
+	@Test(timeout = 10000)
+	public void listener_is_notified_after_its_thread_is_interrupted() throws Exception {
+		System.setProperty(AbstractTestRegistry.LISTENER_QUEUE, "10");
+
+		AbstractTestRegistry registry = new AbstractTestRegistry() {
+			@Override
+			protected Collection<TestBean> scanTests(Bundle contributor) {
+				return Collections.singleton(new TestBean(contributor, SimpleTestCase.class.getName()));
+			}
+		};
+		registry.setLog(mock(LogService.class));
+
+		final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+		registry.addTestRegistryListener(new TestRegistryChangeListener() {
+			@Override
+			public void registryChanged(TestRegistryEvent event) {
+				threads.add(Thread.currentThread());
+			}
+		});
+
+		for (int i = 0; i < 2; i++) {
+			registry.registerTests(BundleBuilder.newBuilder() //
+					.symbolicName("bundle" + i) //
+					.addClass(SimpleTestCase.class) //
+					.build());
+			registry.flushListeners();
+			if (i == 0) {
+				// the listener thread exits when interrupted
+				threads.get(0).interrupt();
+				threads.get(0).join();
+			}
+		}
+
+		assertThat(threads, Matchers.hasSize(2));
+
+		registry.dispose();
+	}
+
+	private static int indexOf(Bundle[] bundles, Bundle bundle) {
+		for (int i = 0; i < bundles.length; i++) {
+			if (bundles[i] == bundle) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,16 @@
+package org.example.suite;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+@RunWith(Enclosed.class)
+public class MyEnclosedTest {
+
+	public static class InnerTest {
+		@Test
+		public void test() {
+		}
+	}
+
+}
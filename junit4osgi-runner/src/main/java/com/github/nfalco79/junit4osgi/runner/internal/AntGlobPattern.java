@@ -15,27 +15,152 @@
  */
 package com.github.nfalco79.junit4osgi.runner.internal;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Compiles glob patterns where {@code *} matches any sequence of characters
+ * and {@code ?} matches any single character.
+ * <p>
+ * A pattern is split by {@code *} in literal segments that are matched
+ * in place, without regular expressions and without allocations.
+ */
 public class AntGlobPattern {
 
 	public static class IncludeExcludePattern {
-		private Pattern pattern;
+		private final String glob;
+		// literal parts between the stars, '?' matches any character
+		private final String[] segments;
+		private final boolean leadingStar;
+		private final boolean trailingStar;
+		private final boolean hasQuestionMark;
+
+		private IncludeExcludePattern(String glob) {
+			this.glob = glob;
+			this.segments = split(glob);
+			this.leadingStar = glob.startsWith("*");
+			this.trailingStar = glob.endsWith("*") && glob.length() > 0;
+			this.hasQuestionMark = glob.indexOf('?') != -1;
+		}
 
-		private IncludeExcludePattern(Pattern pattern) {
-			this.pattern = pattern;
+		/**
+		 * Returns if the pattern has no wildcards, so it matches only a name
+		 * equals to it.
+		 *
+		 * @return {@code true} if this pattern is a literal name
+		 */
+		public boolean isLiteral() {
+			return !hasQuestionMark && glob.indexOf('*') == -1;
+		}
+
+		/**
+		 * Returns the source glob pattern.
+		 *
+		 * @return the glob pattern
+		 */
+		public String getGlob() {
+			return glob;
 		}
 
 		public boolean matches(String name) {
-			return pattern.matcher(name).matches();
+			int size = segments.length;
+			if (size == 0) {
+				// only stars or empty
+				return leadingStar || name.length() == 0;
+			}
+			if (!hasQuestionMark) {
+				// fast paths for the common forms *Test, com.acme.* and *acme*
+				if (size == 1) {
+					String segment = segments[0];
+					if (!leadingStar && !trailingStar) {
+						return name.equals(segment);
+					} else if (!leadingStar) {
+						return name.startsWith(segment);
+					} else if (!trailingStar) {
+						return name.endsWith(segment);
+					} else {
+						return name.indexOf(segment) != -1;
+					}
+				}
+			}
+
+			int start = 0;
+			int end = name.length();
+			int first = 0;
+			int last = size - 1;
+			if (!leadingStar) {
+				if (!regionMatches(name, 0, segments[0])) {
+					return false;
+				}
+				start = segments[0].length();
+				first++;
+			}
+			if (!trailingStar && first <= last) {
+				String segment = segments[last];
+				int offset = end - segment.length();
+				if (offset < start || !regionMatches(name, offset, segment)) {
+					return false;
+				}
+				end = offset;
+				last--;
+			} else if (!trailingStar && start != end) {
+				// the only segment was the leading one
+				return false;
+			}
+
+			// the segments between stars are matched at their leftmost position
+			for (int i = first; i <= last; i++) {
+				String segment = segments[i];
+				int offset = indexOf(name, start, end, segment);
+				if (offset == -1) {
+					return false;
+				}
+				start = offset + segment.length();
+			}
+			return true;
+		}
+
+		private static boolean regionMatches(String name, int offset, String segment) {
+			int length = segment.length();
+			if (offset + length > name.length()) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				char c = segment.charAt(i);
+				if (c != '?' && c != name.charAt(offset + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static int indexOf(String name, int from, int to, String segment) {
+			int max = to - segment.length();
+			for (int offset = from; offset <= max; offset++) {
+				if (regionMatches(name, offset, segment)) {
+					return offset;
+				}
+			}
+			return -1;
+		}
+
+		private static String[] split(String glob) {
+			List<String> segments = new ArrayList<String>();
+			int start = 0;
+			for (int i = 0; i <= glob.length(); i++) {
+				if (i == glob.length() || glob.charAt(i) == '*') {
+					if (i > start) {
+						segments.add(glob.substring(start, i));
+					}
+					start = i + 1;
+				}
+			}
+			return segments.toArray(new String[segments.size()]);
 		}
 
 		@Override
 		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + ((pattern == null) ? 0 : pattern.hashCode());
-			return result;
+			return glob.hashCode();
 		}
 
 		@Override
@@ -47,38 +172,17 @@ public class AntGlobPattern {
 			if (getClass() != obj.getClass())
 				return false;
 			IncludeExcludePattern other = (IncludeExcludePattern) obj;
-			if (pattern == null) {
-				if (other.pattern != null)
-					return false;
-			} else if (!pattern.equals(other.pattern))
-				return false;
-			return true;
+			return glob.equals(other.glob);
 		}
-	}
 
-	private static Pattern translate(String antPattern) {
-		StringBuilder regexp = new StringBuilder();
-		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < antPattern.length(); i++) {
-			char charAt = antPattern.charAt(i);
-			if (charAt == '*' || charAt == '?') {
-				if (sb.length() > 0) {
-					regexp.append(Pattern.quote(sb.toString()));
-					sb = new StringBuilder();
-				}
-				regexp.append(charAt == '*' ? ".*" : ".");
-			} else {
-				sb.append(charAt);
-			}
-		}
-		if (sb.length() > 0) {
-			regexp.append(Pattern.quote(sb.toString()));
+		@Override
+		public String toString() {
+			return glob;
 		}
-		return Pattern.compile(regexp.toString());
 	}
 
 	public static IncludeExcludePattern parse(String pattern) {
-		return new IncludeExcludePattern(translate(pattern));
+		return new IncludeExcludePattern(pattern);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import org.osgi.framework.Bundle;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+/**
+ * Hands out the tests in the queue to the runner workers giving each bundle
+ * its own serial lane.
+ * <p>
+ * Test classes contributed by the same bundle are never executed at the same
+ * time because they could share framework singletons, while test classes of
+ * different bundles run in parallel. A bundle could declare the
+ * {@value #TEST_CONCURRENCY_HEADER} header with value
+ * {@value #CONCURRENCY_PARALLEL} in its MANIFEST to opt out of its lane and
+ * let its test classes run concurrently, the default value is
+ * {@value #CONCURRENCY_SERIAL}.
+ * <p>
+ * Tests are handed out in the queue order unless an order is given, in that
+ * case the first test in that order whose lane is free is handed out. The
+ * tests in the queue are sorted once and sorted again only when the queue has
+ * changed and no sorted test has a free lane.
+ *
+ * @author Nikolas Falco
+ */
+public class BundleLaneScheduler {
+
+	/**
+	 * The MANIFEST header that declares how the test classes of a bundle could
+	 * be executed.
+	 */
+	public static final String TEST_CONCURRENCY_HEADER = "Test-Concurrency";
+	public static final String CONCURRENCY_SERIAL = "serial";
+	public static final String CONCURRENCY_PARALLEL = "parallel";
+
+	private final Queue<TestBean> tests;
+	private final Comparator<TestBean> order;
+	private final Set<Bundle> busyLanes = new HashSet<Bundle>();
+	private final Map<Bundle, Boolean> serialBundles = new HashMap<Bundle, Boolean>();
+	// the tests in the given order, not yet handed out
+	private final LinkedList<TestBean> sorted = new LinkedList<TestBean>();
+	private boolean stopped;
+
+	public BundleLaneScheduler(Queue<TestBean> tests) {
+		this(tests, null);
+	}
+
+	/**
+	 * Creates a scheduler that hands out tests in the given order.
+	 *
+	 * @param tests
+	 *            the queue of tests to execute
+	 * @param order
+	 *            the order of execution, {@code null} means the queue order
+	 */
+	public BundleLaneScheduler(Queue<TestBean> tests, Comparator<TestBean> order) {
+		if (tests == null) {
+			throw new NullPointerException("tests queue is null");
+		}
+		this.tests = tests;
+		this.order = order;
+	}
+
+	/**
+	 * Retrieves and removes the first test in the scheduler order whose bundle
+	 * lane is free, waiting if all tests in the queue belong to busy lanes.
+	 *
+	 * @return the next test to execute or {@code null} if the queue is empty
+	 *         or the scheduler has been stopped
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for a lane
+	 */
+	public synchronized TestBean next() throws InterruptedException {
+		while (!stopped && !tests.isEmpty()) {
+			TestBean test;
+			while ((test = nextFree()) != null) {
+				if (tests.remove(test)) {
+					Bundle lane = getLane(test);
+					if (lane != null) {
+						busyLanes.add(lane);
+					}
+					return test;
+				}
+			}
+
+			if (!busyLanes.isEmpty()) {
+				// all remaining tests belong to busy lanes
+				wait();
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Returns the first test, in queue order or in the given order, whose
+	 * lane is free.
+	 */
+	private TestBean nextFree() {
+		if (order == null) {
+			return firstFree(tests.iterator());
+		}
+
+		TestBean test = firstFree(sorted.iterator());
+		if (test == null && sorted.size() != tests.size()) {
+			// tests added or removed since the last sort
+			sorted.clear();
+			sorted.addAll(tests);
+			Collections.sort(sorted, order);
+			test = firstFree(sorted.iterator());
+		}
+		return test;
+	}
+
+	private TestBean firstFree(Iterator<TestBean> it) {
+		while (it.hasNext()) {
+			TestBean test = it.next();
+			Bundle lane = getLane(test);
+			if (lane == null || !busyLanes.contains(lane)) {
+				if (order != null) {
+					// a sorted test is handed out once
+					it.remove();
+				}
+				return test;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Stops handing out tests, also to the workers waiting for a free lane.
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		notifyAll();
+	}
+
+	/**
+	 * Wakes up the workers waiting for a free lane, must be called when tests
+	 * are added to the queue because they could belong to a free lane.
+	 */
+	public synchronized void wakeUp() {
+		notifyAll();
+	}
+
+	/**
+	 * Frees the lane of the given test, must be called when the test
+	 * returned by {@link #next()} has been executed.
+	 *
+	 * @param test
+	 *            the executed test
+	 */
+	public synchronized void done(TestBean test) {
+		Bundle lane = getLane(test);
+		if (lane != null && busyLanes.remove(lane)) {
+			notifyAll();
+		}
+	}
+
+	private Bundle getLane(TestBean test) {
+		Bundle bundle = test.getBundle();
+		if (bundle == null) {
+			return null;
+		}
+
+		Boolean serial = serialBundles.get(bundle);
+		if (serial == null) {
+			Object concurrency = bundle.getHeaders().get(TEST_CONCURRENCY_HEADER);
+			serial = !(concurrency != null && CONCURRENCY_PARALLEL.equalsIgnoreCase(concurrency.toString().trim()));
+			serialBundles.put(bundle, serial);
+		}
+		return serial ? bundle : null;
+	}
+
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * A buffer that holds the output of a test.
+ * <p>
+ * Bytes are kept in memory up to a configurable limit, the overflow is spilled
+ * to a temporary file so that noisy tests do not exhaust the heap. Optionally
+ * only the first {@code head} bytes and the last {@code tail} bytes are kept,
+ * everything in the middle is dropped and replaced by a marker when the
+ * content is read.
+ * <p>
+ * Call {@link #dispose()} to delete the temporary file once the content is
+ * no longer needed.
+ *
+ * @author Nikolas Falco
+ */
+public class CaptureBuffer extends OutputStream {
+
+	/**
+	 * The system property to set the amount of bytes kept in memory before
+	 * spill the output to a temporary file.
+	 */
+	public static final String MEMORY_LIMIT = "org.osgi.junit.capture.memory";
+	/**
+	 * The system property to set the amount of bytes to keep from the start
+	 * of the output when truncation is enabled.
+	 */
+	public static final String HEAD_LIMIT = "org.osgi.junit.capture.head";
+	/**
+	 * The system property to set the amount of bytes to keep from the end of
+	 * the output when truncation is enabled.
+	 */
+	public static final String TAIL_LIMIT = "org.osgi.junit.capture.tail";
+
+	/**
+	 * Default amount of bytes kept in memory.
+	 */
+	public static final int DEFAULT_MEMORY_LIMIT = 1024 * 1024;
+
+	private static final String NL = System.getProperty("line.separator", "\n");
+	private static final int INITIAL_SIZE = 256;
+	private static final byte[] EMPTY = new byte[0];
+
+	private final int memoryLimit;
+	private final long headLimit;
+	private final int tailLimit;
+	private final boolean truncate;
+
+	private byte[] memory = EMPTY;
+	private int count;
+	private File spillFile;
+	private OutputStream spill;
+	private long head;
+
+	private byte[] tail;
+	private int tailPosition;
+	private long tailCount;
+
+	private long size;
+	private boolean blank = true;
+
+	/**
+	 * Creates a buffer configured through system properties.
+	 */
+	public CaptureBuffer() {
+		this(Integer.getInteger(MEMORY_LIMIT, DEFAULT_MEMORY_LIMIT), Long.getLong(HEAD_LIMIT, 0l), Integer.getInteger(TAIL_LIMIT, 0));
+	}
+
+	/**
+	 * Creates a buffer with the given limits.
+	 *
+	 * @param memoryLimit
+	 *            the amount of bytes kept in memory, any other byte is
+	 *            written to a temporary file
+	 * @param headLimit
+	 *            the amount of bytes to keep from the start of the output, 0
+	 *            to keep nothing
+	 * @param tailLimit
+	 *            the amount of bytes to keep from the end of the output, 0 to
+	 *            keep nothing
+	 *            <p>
+	 *            When both headLimit and tailLimit are 0 the whole output is
+	 *            kept.
+	 */
+	public CaptureBuffer(int memoryLimit, long headLimit, int tailLimit) {
+		this.memoryLimit = Math.max(0, memoryLimit);
+		this.headLimit = Math.max(0l, headLimit);
+		this.tailLimit = Math.max(0, tailLimit);
+		this.truncate = this.headLimit > 0 || this.tailLimit > 0;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return;
+		}
+		size += len;
+		if (blank) {
+			for (int i = off; i < off + len; i++) {
+				if ((b[i] & 0xFF) > ' ') {
+					blank = false;
+					break;
+				}
+			}
+		}
+
+		if (!truncate) {
+			store(b, off, len);
+			return;
+		}
+
+		int headLength = (int) Math.min(len, headLimit - head);
+		if (headLength > 0) {
+			store(b, off, headLength);
+			head += headLength;
+			off += headLength;
+			len -= headLength;
+		}
+		if (len > 0 && tailLimit > 0) {
+			storeTail(b, off, len);
+		}
+	}
+
+	private void store(byte[] b, int off, int len) throws IOException {
+		if (spill == null && count + len <= memoryLimit) {
+			if (count + len > memory.length) {
+				int newSize = Math.max(Math.max(INITIAL_SIZE, memory.length << 1), count + len);
+				byte[] newMemory = new byte[Math.min(newSize, memoryLimit)];
+				System.arraycopy(memory, 0, newMemory, 0, count);
+				memory = newMemory;
+			}
+			System.arraycopy(b, off, memory, count, len);
+			count += len;
+			return;
+		}
+
+		if (spill == null) {
+			spillFile = File.createTempFile("junit4osgi-capture", ".log");
+			spill = new BufferedOutputStream(new FileOutputStream(spillFile));
+		}
+		spill.write(b, off, len);
+	}
+
+	private void storeTail(byte[] b, int off, int len) {
+		if (tail == null) {
+			tail = new byte[tailLimit];
+		}
+		tailCount += len;
+		if (len >= tailLimit) {
+			System.arraycopy(b, off + len - tailLimit, tail, 0, tailLimit);
+			tailPosition = 0;
+			return;
+		}
+		int firstPart = Math.min(len, tailLimit - tailPosition);
+		System.arraycopy(b, off, tail, tailPosition, firstPart);
+		System.arraycopy(b, off + firstPart, tail, 0, len - firstPart);
+		tailPosition = (tailPosition + len) % tailLimit;
+	}
+
+	/**
+	 * Returns the amount of bytes written in this buffer, truncated bytes
+	 * included.
+	 *
+	 * @return the total size of the output.
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Returns if this buffer contains only white spaces.
+	 *
+	 * @return {@code true} if nothing has been written or only white spaces,
+	 *         {@code false} otherwise.
+	 */
+	public synchronized boolean isBlank() {
+		return blank;
+	}
+
+	/**
+	 * Returns if part of the output has been written to a temporary file.
+	 *
+	 * @return {@code true} if the memory limit has been exceeded.
+	 */
+	public synchronized boolean isSpilled() {
+		return spillFile != null;
+	}
+
+	/**
+	 * Returns the amount of bytes dropped by the head/tail truncation.
+	 *
+	 * @return the count of truncated bytes.
+	 */
+	public synchronized long getTruncated() {
+		return truncate ? size - head - Math.min(tailCount, tailLimit) : 0l;
+	}
+
+	/**
+	 * Opens a reader on the captured content. The content is decoded using
+	 * the platform charset as {@link System#out} does.
+	 *
+	 * @return a reader on the captured output.
+	 * @throws IOException
+	 *             in case the temporary file could not be read
+	 */
+	public synchronized Reader openReader() throws IOException {
+		List<InputStream> streams = new ArrayList<InputStream>(4);
+		streams.add(new ByteArrayInputStream(memory, 0, count));
+		if (spill != null) {
+			spill.flush();
+			streams.add(new FileInputStream(spillFile));
+		}
+		long truncated = getTruncated();
+		if (truncated > 0) {
+			String marker = NL + "[... " + truncated + " bytes truncated ...]" + NL;
+			streams.add(new ByteArrayInputStream(marker.getBytes()));
+		}
+		if (tailCount > 0) {
+			if (tailCount > tailLimit) {
+				streams.add(new ByteArrayInputStream(tail, tailPosition, tailLimit - tailPosition));
+				streams.add(new ByteArrayInputStream(tail, 0, tailPosition));
+			} else {
+				streams.add(new ByteArrayInputStream(tail, 0, tailPosition == 0 ? tailLimit : tailPosition));
+			}
+		}
+		return new InputStreamReader(new SequenceInputStream(Collections.enumeration(streams)));
+	}
+
+	/**
+	 * Empties this buffer deleting any temporary file.
+	 */
+	public synchronized void reset() {
+		closeSpill();
+		count = 0;
+		head = 0;
+		tailCount = 0;
+		tailPosition = 0;
+		size = 0;
+		blank = true;
+	}
+
+	/**
+	 * Releases the resources held by this buffer, included any temporary
+	 * file.
+	 */
+	public synchronized void dispose() {
+		reset();
+		memory = EMPTY;
+		tail = null;
+	}
+
+	/**
+	 * Returns the capacity of the memory part of this buffer.
+	 *
+	 * @return the current memory capacity in bytes
+	 */
+	synchronized int capacity() {
+		return memory.length;
+	}
+
+	private void closeSpill() {
+		if (spill != null) {
+			IOUtil.close(spill);
+			spill = null;
+		}
+		if (spillFile != null) {
+			if (!spillFile.delete()) {
+				spillFile.deleteOnExit();
+			}
+			spillFile = null;
+		}
+	}
+
+	/**
+	 * Returns the whole captured content, prefer {@link #openReader()} for
+	 * big outputs.
+	 */
+	@Override
+	public String toString() {
+		Reader reader = null;
+		try {
+			reader = openReader();
+			StringWriter writer = new StringWriter();
+			IOUtil.copy(reader, writer);
+			return writer.toString();
+		} catch (IOException e) {
+			return "";
+		} finally {
+			IOUtil.close(reader);
+		}
+	}
+}
@@ -23,17 +23,39 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestBeanFilter;
 
-public class FilteredTestQueue implements Queue<TestBean> {
+public class FilteredTestQueue implements Queue<TestBean>, TestBeanFilter {
 
     private final TestFilter filter;
+    private final TestShard shard;
     private final ConcurrentLinkedQueue<TestBean> queue;
+    private final Object lock = new Object();
+    private volatile BundleLaneScheduler scheduler;
 
     public FilteredTestQueue(TestFilter filter) {
+        this(filter, null);
+    }
+
+    /**
+     * Creates a queue that accepts only the tests of the given shard.
+     *
+     * @param filter
+     *            the filter on test class names
+     * @param shard
+     *            the shard of tests to accept, {@code null} means all
+     */
+    public FilteredTestQueue(TestFilter filter, TestShard shard) {
         this.filter = filter == null ? new TestFilter(null, null) : filter;
+        this.shard = shard;
         this.queue = new ConcurrentLinkedQueue<TestBean>();
     }
 
+    @Override
+    public boolean accept(TestBean test) {
+        return filter.accept(test.getName()) && (shard == null || shard.accept(test));
+    }
+
     @Override
     public int hashCode() {
         return queue.hashCode();
@@ -71,8 +93,8 @@ public class FilteredTestQueue implements Queue<TestBean> {
 
     @Override
     public boolean offer(TestBean test) {
-        if (filter.accept(test.getName())) {
-            return queue.offer(test);
+        if (accept(test)) {
+            return signal(queue.offer(test));
         }
         return false;
     }
@@ -121,11 +143,11 @@ public class FilteredTestQueue implements Queue<TestBean> {
     public boolean addAll(Collection<? extends TestBean> tests) {
         Set<TestBean> filtered = new LinkedHashSet<TestBean>(tests.size());
         for (TestBean testBean : tests) {
-            if (filter.accept(testBean.getName())) {
+            if (accept(testBean)) {
                 filtered.add(testBean);
             }
         }
-        return queue.addAll(filtered);
+        return signal(queue.addAll(filtered));
     }
 
     @Override
@@ -145,12 +167,50 @@ public class FilteredTestQueue implements Queue<TestBean> {
 
     @Override
     public boolean add(TestBean testBean) {
-        if (filter.accept(testBean.getName())) {
-            return queue.add(testBean);
+        if (accept(testBean)) {
+            return signal(queue.add(testBean));
         }
         return false;
     }
 
+    /**
+     * Waits until this queue contains at least one test.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public void awaitTests() throws InterruptedException {
+        synchronized (lock) {
+            while (queue.isEmpty()) {
+                lock.wait();
+            }
+        }
+    }
+
+    /**
+     * Sets the scheduler that hands out the tests of this queue, it is woken
+     * up when tests are added.
+     *
+     * @param scheduler
+     *            the scheduler of this queue, {@code null} if none
+     */
+    public void setScheduler(BundleLaneScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    private boolean signal(boolean added) {
+        if (added) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+            BundleLaneScheduler current = scheduler;
+            if (current != null) {
+                current.wakeUp();
+            }
+        }
+        return added;
+    }
+
     public void remove(TestBean testBean) {
         queue.remove();
     }
@@ -16,12 +16,22 @@
 package com.github.nfalco79.junit4osgi.runner.internal;
 
 import java.io.File;
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -35,10 +45,13 @@ import org.junit.runner.notification.RunListener;
 import org.osgi.service.log.LogService;
 
 import com.github.nfalco79.junit4osgi.registry.TestRegistryUtils;
+import com.github.nfalco79.junit4osgi.registry.spi.BatchTestRegistryChangeListener;
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestBeanFilter;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistry;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryChangeListener;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
+import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent.TestRegistryEventType;
 import com.github.nfalco79.junit4osgi.runner.internal.jmx.JMXServer;
 import com.github.nfalco79.junit4osgi.runner.spi.TestRunner;
 import com.github.nfalco79.junit4osgi.runner.spi.TestRunnerNotifier;
@@ -49,31 +62,92 @@ import com.j256.simplejmx.common.JmxResource;
 
 @JmxResource(domainName = "org.osgi.junit4osgi", folderNames = "type=runner", beanName = "JUnitRunner", description = "The JUnit4 runner, executes JUnit3/4 test case in any OSGi bundle in the current system")
 public class JUnitRunner implements TestRunner {
-	private final class QueeueTestListener implements TestRegistryChangeListener {
+	private final class QueeueTestListener implements BatchTestRegistryChangeListener, TestBeanFilter {
 		private final Queue<TestBean> tests;
+		private final TestBeanFilter filter;
+		// tests queued since they are in the registry, also if already run
+		private final Set<TestBean> queued = new HashSet<TestBean>();
 
-		private QueeueTestListener(Queue<TestBean> tests) {
+		private QueeueTestListener(FilteredTestQueue tests) {
 			this.tests = tests;
+			this.filter = tests;
 		}
 
 		@Override
-		public void registryChanged(TestRegistryEvent event) {
+		public boolean accept(TestBean test) {
+			// in lazy mode the registry verifies only the tests this runner executes
+			return filter.accept(test);
+		}
+
+		@Override
+		public synchronized void registryChanged(TestRegistryEvent event) {
 			TestBean testBean = event.getTest();
-			if (testBean == null) {
+			if (testBean == null && event.getType() != TestRegistryEventType.RESYNC) {
 				throw new IllegalArgumentException("event has a null test bean");
 			}
 			switch (event.getType()) {
 			case ADD:
-		        tests.add(testBean);
+				if (queued.add(testBean)) {
+					tests.add(testBean);
+				}
 				break;
 			case REMOVE:
+				queued.remove(testBean);
 				tests.remove(testBean);
 				break;
+			case RESYNC:
+				resync();
+				break;
+			default:
+				logger.log(LogService.LOG_WARNING, "Test registry event type " + event.getType() + " not supported");
+				break;
+			}
+		}
+
+		@Override
+		public synchronized void registryBatchChanged(TestRegistryEvent event) {
+			switch (event.getType()) {
+			case ADD:
+				// the whole bundle is queued with a single wake up of the runner
+				addAll(event.getTests());
+				break;
+			case REMOVE:
+				queued.removeAll(event.getTests());
+				tests.removeAll(event.getTests());
+				break;
+			case RESYNC:
+				resync();
+				break;
 			default:
 				logger.log(LogService.LOG_WARNING, "Test registry event type " + event.getType() + " not supported");
 				break;
 			}
 		}
+
+		/*
+		 * Aligns the queue to the registry tests, tests already run are not
+		 * queued again.
+		 */
+		private synchronized void resync() {
+			Set<TestBean> registryTests = registry.snapshot(this).getTests();
+
+			Set<TestBean> removed = new HashSet<TestBean>(queued);
+			removed.removeAll(registryTests);
+			queued.removeAll(removed);
+			tests.removeAll(removed);
+
+			addAll(registryTests);
+		}
+
+		private void addAll(Collection<TestBean> registryTests) {
+			List<TestBean> added = new ArrayList<TestBean>(registryTests.size());
+			for (TestBean test : registryTests) {
+				if (queued.add(test)) {
+					added.add(test);
+				}
+			}
+			tests.addAll(added);
+		}
 	}
 
 	/**
@@ -104,6 +178,78 @@ public class JUnitRunner implements TestRunner {
 	 * suite name have to matches.
 	 */
 	public static final String PATH_EXCLUDE = "org.osgi.junit.exclude";
+	/**
+	 * The number of test classes executed concurrently. Each worker thread
+	 * runs its test classes with its own {@link JUnitCore} and
+	 * {@link ReportListener}. Default is 1 (sequential), a value lower than 1
+	 * means as many workers as the available processors.
+	 * <p>
+	 * Test classes of the same bundle are executed one at time unless the
+	 * bundle opts out, see {@link BundleLaneScheduler}.
+	 */
+	public static final String RUNNER_THREADS = "org.osgi.junit.runner.threads";
+	/**
+	 * The number of test class reports that can wait to be written while
+	 * the next test classes are executed. When the queue is full the test
+	 * execution waits for the report writer. Default is 16, a value lower
+	 * than 1 writes reports synchronously.
+	 */
+	public static final String REPORT_QUEUE = "org.osgi.junit.report.queue";
+	/**
+	 * The order in which test classes are executed, {@value #SCHEDULE_FIFO}
+	 * (default) runs them in the order they are registered,
+	 * {@value #SCHEDULE_LONGEST_FIRST} runs first the test classes that took
+	 * longer in previous runs so that parallel workers end together,
+	 * {@value #SCHEDULE_FAILED_FIRST} runs first the test classes that failed
+	 * in the more recent runs.
+	 */
+	public static final String SCHEDULE = "org.osgi.junit.runner.schedule";
+	public static final String SCHEDULE_FIFO = "fifo";
+	public static final String SCHEDULE_LONGEST_FIRST = "longest";
+	public static final String SCHEDULE_FAILED_FIRST = "failed";
+	/**
+	 * The file where store the duration and the outcome of previous runs of
+	 * each test class, by default {@value #DEFAULT_HISTORY_FILE} in the
+	 * reports path.
+	 */
+	public static final String HISTORY_FILE = "org.osgi.junit.runner.history";
+	public static final String DEFAULT_HISTORY_FILE = "junit4osgi-history.properties";
+	/**
+	 * The system property that stops the runner as soon as a test class
+	 * fails, tests still in the queue are not executed.
+	 */
+	public static final String FAIL_FAST = "org.osgi.junit.runner.failFast";
+	/**
+	 * The zero based index of the share of tests to execute when the same
+	 * tests run on {@value #SHARD_COUNT} containers.
+	 */
+	public static final String SHARD_INDEX = "org.osgi.junit.runner.shardIndex";
+	/**
+	 * The number of containers that share the tests, by default 1.
+	 */
+	public static final String SHARD_COUNT = "org.osgi.junit.runner.shardCount";
+	/**
+	 * How tests are assigned to shards, {@value #SHARD_HASH} (default) by a
+	 * stable hash of the test identifier, {@value #SHARD_DURATION} balancing
+	 * the durations read from {@value #SHARD_DURATIONS}.
+	 */
+	public static final String SHARD_MODE = "org.osgi.junit.runner.shardMode";
+	public static final String SHARD_HASH = "hash";
+	public static final String SHARD_DURATION = "duration";
+	/**
+	 * The test history file used to balance the shards by duration. It must
+	 * be the same file in all containers and it is never written by the
+	 * runner, otherwise containers that end at different times would
+	 * balance different durations and run some tests twice or never. Copy
+	 * there the {@value #HISTORY_FILE} of a previous run to update it.
+	 */
+	public static final String SHARD_DURATIONS = "org.osgi.junit.runner.shardDurations";
+	/**
+	 * The suffix of the report file names, by default {@code shard<index>}
+	 * when tests are sharded so that reports of all containers can be
+	 * merged.
+	 */
+	public static final String REPORT_NAME_SUFFIX = "org.osgi.junit.reportNameSuffix";
 
 	private static final String DEFAULT_PATH_EXCLUDE = "junit.extensions.*";
 
@@ -113,14 +259,29 @@ public class JUnitRunner implements TestRunner {
 	LogService logger;
 	private TestRegistryChangeListener testListener;
 	private ScheduledThreadPoolExecutor executor;
+	private final RunnerMetrics metrics = new RunnerMetrics();
+	private volatile ReportWriter reportWriter = new ReportWriter(0, metrics);
 	private Integer reRunCount;
+	private int threads;
 	private final File defaultReportsDirectory;
 	private final TestFilter testFilter;
+	private final String schedule;
+	private final File historyFile;
+	private volatile TestHistory history;
+	private volatile BundleLaneScheduler scheduler;
+	private boolean failFast;
+	private final int shardIndex;
+	private final int shardCount;
+	private final boolean shardByDuration;
+	private final File shardDurationsFile;
+	private Map<String, Long> shardDurations;
+	private final String reportNameSuffix;
 	private final AtomicInteger testCount = new AtomicInteger(0);
 
 	public JUnitRunner() {
 		defaultReportsDirectory = new File(System.getProperty(REPORT_PATH, "surefire-reports"));
 		reRunCount = Integer.getInteger(RERUN_COUNT, 0);
+		setThreads(Integer.getInteger(RUNNER_THREADS, 1));
 		stop = true;
 
 		String excludes = System.getProperty(PATH_EXCLUDE, DEFAULT_PATH_EXCLUDE).trim();
@@ -128,6 +289,31 @@ public class JUnitRunner implements TestRunner {
 		    excludes += "," + DEFAULT_PATH_EXCLUDE;
 		}
         testFilter = new TestFilter(System.getProperty(PATH_INCLUDES), excludes);
+
+		shardCount = Integer.getInteger(SHARD_COUNT, 1);
+		shardIndex = Integer.getInteger(SHARD_INDEX, 0);
+		if (shardCount > 1) {
+			// fails early on a wrong configuration
+			new TestShard(shardIndex, shardCount);
+		}
+		shardByDuration = shardCount > 1 && SHARD_DURATION.equalsIgnoreCase(System.getProperty(SHARD_MODE, SHARD_HASH).trim());
+		String durations = System.getProperty(SHARD_DURATIONS);
+		shardDurationsFile = shardByDuration && durations != null ? new File(durations) : null;
+		reportNameSuffix = System.getProperty(REPORT_NAME_SUFFIX, shardCount > 1 ? "shard" + shardIndex : null);
+
+		String order = System.getProperty(SCHEDULE, SCHEDULE_FIFO).trim().toLowerCase();
+		if (SCHEDULE_LONGEST_FIRST.equals(order) || SCHEDULE_FAILED_FIRST.equals(order)) {
+			schedule = order;
+		} else {
+			schedule = SCHEDULE_FIFO;
+		}
+		if (!SCHEDULE_FIFO.equals(schedule)) {
+			String file = System.getProperty(HISTORY_FILE);
+			historyFile = file != null ? new File(file) : new File(defaultReportsDirectory, DEFAULT_HISTORY_FILE);
+		} else {
+			historyFile = null;
+		}
+		failFast = Boolean.getBoolean(FAIL_FAST);
 	}
 
 	/* (non-Javadoc)
@@ -198,7 +384,7 @@ public class JUnitRunner implements TestRunner {
         TestFilter filter = new TestFilter(includePatterns, excludePatterns);
 
         Set<String> filteredTests = new LinkedHashSet<String>();
-        for (TestBean test : registry.getTests()) {
+        for (TestBean test : registry.snapshot(filter).getTests()) {
             if (filter.accept(test.getName())) {
                 filteredTests.add(test.getId());
             }
@@ -230,21 +416,38 @@ public class JUnitRunner implements TestRunner {
 		}
 
 		if (!isRunning()) {
+			if (historyFile != null && history == null) {
+				// loaded once, then kept up to date by each run
+				history = new TestHistory(historyFile, logger);
+			}
+			TestShard shard = newShard();
+
+			final FilteredTestQueue allTests;
 			final Queue<TestBean> tests;
 			if (testIds == null) {
 				// create a queue collecting all registry tests
-				tests = new FilteredTestQueue(testFilter);
-				testListener = new QueeueTestListener(tests);
-				registry.addTestRegistryListener(testListener);
-
-				tests.addAll(registry.getTests());
+				allTests = new FilteredTestQueue(testFilter, shard);
+				QueeueTestListener queueListener = new QueeueTestListener(allTests);
+				testListener = queueListener;
+				registry.addTestRegistryListener(queueListener);
+
+				// also tests notified meanwhile are queued once
+				queueListener.resync();
+				tests = allTests;
 			} else {
 				// create a queue with only the specified tests
-				tests = new ArrayDeque<TestBean>(registry.getTests(testIds));
+				allTests = null;
+				tests = new ConcurrentLinkedQueue<TestBean>();
+				for (TestBean test : registry.getTests(testIds)) {
+					if (shard == null || shard.accept(test)) {
+						tests.add(test);
+					}
+				}
 			}
 
 			stop = false;
 			running = true;
+			reportWriter = new ReportWriter(Integer.getInteger(REPORT_QUEUE, 16), metrics, reportNameSuffix);
 			executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
 				@Override
 				public Thread newThread(Runnable runnable) {
@@ -256,37 +459,42 @@ public class JUnitRunner implements TestRunner {
 				Runnable testRunnable = getSingleRunnable(reportsDirectory, tests, notifier);
 				executor.schedule(testRunnable, 0l, TimeUnit.MILLISECONDS);
 			} else {
-			    Runnable testRunnable = getInfiniteRunnable(reportsDirectory, tests);
-				executor.scheduleAtFixedRate(testRunnable, 0l, getRepeatTime(), TimeUnit.MILLISECONDS);
+				Runnable testRunnable = getInfiniteRunnable(reportsDirectory, allTests);
+				executor.schedule(testRunnable, 0l, TimeUnit.MILLISECONDS);
 			}
 		}
 	}
 
-	/**
-	 * For test purpose only
-	 *
-	 * @return the delay time before reschedule the job runner
-	 */
-	protected long getRepeatTime() {
-		return 5000l;
+	private TestShard newShard() {
+		if (shardCount < 2) {
+			return null;
+		}
+		TestShard shard = new TestShard(shardIndex, shardCount);
+		if (shardByDuration) {
+			if (shardDurations == null) {
+				if (shardDurationsFile != null) {
+					// read only, all containers must balance the same durations
+					shardDurations = new TestHistory(shardDurationsFile, logger).getDurations();
+				} else {
+					logger.log(LogService.LOG_WARNING, SHARD_DURATIONS + " is not set, tests are sharded by hash");
+					shardDurations = Collections.emptyMap();
+				}
+			}
+			shard.balance(shardDurations);
+		}
+		return shard;
 	}
 
 	protected Runnable getSingleRunnable(final File reportsDirectory, final Queue<TestBean> tests, final TestRunnerNotifier notifier) {
-		return getTestRunnable(reportsDirectory, tests, notifier, true);
-	}
-
-	protected Runnable getInfiniteRunnable(final File reportsDirectory, final Queue<TestBean> tests) {
-        return getTestRunnable(reportsDirectory, tests, null, false);
-	}
-
-	private Runnable getTestRunnable(final File reportsDirectory, final Queue<TestBean> tests, final TestRunnerNotifier notifier, final boolean singleRun) {
 		final TestRunnerNotifier safeNotifier = new SafeTestRunnerNotifier(notifier, logger);
+		final ReportWriter writer = reportWriter;
 
 		return new Runnable() {
 			@Override
 			public void run() {
 				if (tests.isEmpty()) {
-				    testCount.set(0);
+					testCount.set(0);
+					writer.close();
 					return;
 				}
 
@@ -294,73 +502,232 @@ public class JUnitRunner implements TestRunner {
 					safeNotifier.start();
 					runTests(tests, reportsDirectory, safeNotifier);
 				} finally {
-					if (singleRun) {
-						running = false;
-						stop = true;
-					}
+					// nobody calls stop at the end of a single run
+					writer.close();
+					running = false;
+					stop = true;
 					safeNotifier.stop();
 				}
 			}
 		};
 	}
 
-	private void runTests(final Queue<TestBean> tests, final File reportsDirectory, TestRunnerNotifier notifier) {
-		TestBean testBean;
-		try {
-			RunListener customListener = null;
-			ReportListener reportListener = null;
-			JUnitCore core = new JUnitCore();
+	/**
+	 * Returns the job that runs tests as soon as the registry listener put them
+	 * in the queue. The job sleeps while the queue is empty and ends when the
+	 * runner is stopped.
+	 *
+	 * @param reportsDirectory
+	 *            where write the surefire reports
+	 * @param tests
+	 *            the queue fed by the registry listener
+	 * @return the job to schedule once
+	 */
+	protected Runnable getInfiniteRunnable(final File reportsDirectory, final FilteredTestQueue tests) {
+		final TestRunnerNotifier safeNotifier = new SafeTestRunnerNotifier(null, logger);
 
-			while (!isStopped() && (testBean = tests.poll()) != null) {
-                testCount.set(tests.size());
+		return new Runnable() {
+			@Override
+			public void run() {
 				try {
-					Class<?> testClass = testBean.getTestClass();
-					if (!TestRegistryUtils.isValidTestClass(testClass)) {
-					    logger.log(LogService.LOG_DEBUG, "Skip class " + testBean.getName());
-						continue;
+					while (!isStopped()) {
+						testCount.set(tests.size());
+						metrics.sampleQueue(tests.size());
+						tests.awaitTests();
+
+						try {
+							safeNotifier.start();
+							runTests(tests, reportsDirectory, safeNotifier);
+						} finally {
+							safeNotifier.stop();
+						}
 					}
+					// stopped at the first failure
+					running = false;
+				} catch (InterruptedException e) {
+					// the runner has been stopped
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
 
-					// initialise the report listener
-					reportListener = new ReportListener();
-					core.addListener(reportListener);
+	private void runTests(final Queue<TestBean> tests, final File reportsDirectory, final TestRunnerNotifier notifier) {
+		// keep the capture streams installed for the whole run instead of
+		// swapping System.out/err for each test
+		OutputCapture.install();
+		TestHistory history = this.history;
+		try {
+			BundleLaneScheduler scheduler = new BundleLaneScheduler(tests, getOrder(history));
+			this.scheduler = scheduler;
+			if (tests instanceof FilteredTestQueue) {
+				// workers waiting for a lane must see the tests added meanwhile
+				((FilteredTestQueue) tests).setScheduler(scheduler);
+			}
+			if (threads == 1) {
+				new TestWorker(tests, scheduler, reportsDirectory, notifier).call();
+			} else {
+				runTestsInParallel(tests, scheduler, reportsDirectory, notifier);
+			}
 
-					customListener = notifier.getRunListener();
-					if (customListener != null) {
-						core.addListener(customListener);
-					}
+			logger.log(LogService.LOG_INFO, "All tests in the queue has been processed");
+			// all reports of this run must be on disk when it ends
+			reportWriter.flush();
+			if (history != null) {
+				history.save();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			logger.log(LogService.LOG_ERROR, null, e);
+		} finally {
+			OutputCapture.uninstall();
+		}
+	}
+
+	private Comparator<TestBean> getOrder(TestHistory history) {
+		if (history == null || SCHEDULE_FIFO.equals(schedule)) {
+			return null;
+		}
+		return SCHEDULE_FAILED_FIRST.equals(schedule) ? history.recentlyFailedFirst() : history.longestFirst();
+	}
 
-					logger.log(LogService.LOG_INFO, "Running test " + testBean.getId());
-					Request request = Request.classes(testClass);
-					Result result = core.run(request);
+	private void runTestsInParallel(final Queue<TestBean> tests, final BundleLaneScheduler scheduler, final File reportsDirectory, final TestRunnerNotifier notifier) throws InterruptedException {
+		// the custom listener is shared between all workers
+		final TestRunnerNotifier syncNotifier = new SynchronizedTestRunnerNotifier(notifier);
 
-					if (isRerunFailingTests() && !result.wasSuccessful()) {
-						rerunTests(core, reportListener);
-					}
+		final AtomicInteger workerCount = new AtomicInteger(0);
+		ExecutorService workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				return new Thread(runnable, "JUnitRunner-worker-" + workerCount.incrementAndGet());
+			}
+		});
+		try {
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(threads);
+			for (int i = 0; i < threads; i++) {
+				tasks.add(new TestWorker(tests, scheduler, reportsDirectory, syncNotifier));
+			}
+			for (Future<Void> result : workers.invokeAll(tasks)) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					logger.log(LogService.LOG_ERROR, null, e.getCause());
+				}
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Takes test classes from the queue until it is empty or the runner is
+	 * stopped. Each worker has its own {@link JUnitCore} so that it can run in
+	 * parallel with other workers, the scheduler ensures that test classes of
+	 * the same bundle lane are not executed at the same time.
+	 */
+	private class TestWorker implements Callable<Void> {
+		private final Queue<TestBean> tests;
+		private final BundleLaneScheduler scheduler;
+		private final File reportsDirectory;
+		private final TestRunnerNotifier notifier;
+		private final JUnitCore core = new JUnitCore();
+
+		public TestWorker(Queue<TestBean> tests, BundleLaneScheduler scheduler, File reportsDirectory, TestRunnerNotifier notifier) {
+			this.tests = tests;
+			this.scheduler = scheduler;
+			this.reportsDirectory = reportsDirectory;
+			this.notifier = notifier;
+			core.addListener(metrics.newRunListener());
+		}
 
-					// write test result
-					final XMLReport xmlReport = new XMLReport(reportsDirectory);
-					xmlReport.generateReport(reportListener.getReport());
-				} catch (ClassNotFoundException e) {
-					logger.log(LogService.LOG_ERROR, "Cannot load class " + testBean.getId(), e);
-				} catch (NoClassDefFoundError e) {
-					logger.log(LogService.LOG_ERROR, "Cannot load class " + testBean.getId(), e);
+		@Override
+		public Void call() throws Exception {
+			TestBean testBean;
+			while (!isStopped() && (testBean = scheduler.next()) != null) {
+				int size = tests.size();
+				testCount.set(size);
+				metrics.sampleQueue(size);
+				try {
+					runTest(core, testBean, reportsDirectory, notifier);
 				} finally {
-					if (customListener != null) {
-						core.removeListener(customListener);
-					}
-					if (reportListener != null) {
-						core.removeListener(reportListener);
-					}
+					scheduler.done(testBean);
 				}
 			}
+			return null;
+		}
+	}
 
-			logger.log(LogService.LOG_INFO, "All tests in the queue has been processed");
-		} catch (Exception e) {
-			logger.log(LogService.LOG_ERROR, null, e);
+	private void runTest(final JUnitCore core, final TestBean testBean, final File reportsDirectory, final TestRunnerNotifier notifier) {
+		RunListener customListener = null;
+		ReportListener reportListener = null;
+		try {
+			Class<?> testClass = testBean.getTestClass();
+			if (!TestRegistryUtils.isValidTestClass(testClass)) {
+				logger.log(LogService.LOG_DEBUG, "Skip class " + testBean.getName());
+				return;
+			}
+
+			// initialise the report listener
+			reportListener = new ReportListener();
+			core.addListener(reportListener);
+
+			customListener = notifier.getRunListener();
+			if (customListener != null) {
+				core.addListener(customListener);
+			}
+
+			logger.log(LogService.LOG_INFO, "Running test " + testBean.getId());
+			long start = System.nanoTime();
+			Request request = Request.classes(testClass);
+			Result result = core.run(request);
+
+			boolean failed = !result.wasSuccessful();
+			boolean passedOnRerun = false;
+			if (isRerunFailingTests() && failed) {
+				passedOnRerun = rerunFailedTests(core, reportListener);
+			}
+			long elapsed = System.nanoTime() - start;
+			metrics.recordClass(testClass.getName(), elapsed);
+			TestHistory history = this.history;
+			if (history != null) {
+				// flaky tests are recorded as failed
+				history.record(testBean.getId(), TimeUnit.NANOSECONDS.toMillis(elapsed), failed);
+			}
+			if (failFast && failed && !passedOnRerun) {
+				logger.log(LogService.LOG_INFO, "Stop at the first failure of " + testBean.getId());
+				stopAtFailure();
+			}
+
+			// write test result, the writer disposes the listener
+			reportWriter.submit(reportsDirectory, reportListener, logger);
+			core.removeListener(reportListener);
+			reportListener = null;
+		} catch (ClassNotFoundException e) {
+			logger.log(LogService.LOG_ERROR, "Cannot load class " + testBean.getId(), e);
+		} catch (NoClassDefFoundError e) {
+			logger.log(LogService.LOG_ERROR, "Cannot load class " + testBean.getId(), e);
+		} finally {
+			if (customListener != null) {
+				core.removeListener(customListener);
+			}
+			if (reportListener != null) {
+				core.removeListener(reportListener);
+				reportListener.dispose();
+			}
 		}
 	}
 
 	protected void rerunTests(final JUnitCore core, final ReportListener listener) {
+		rerunFailedTests(core, listener);
+	}
+
+	/*
+	 * Reruns the failed tests, returns true if all of them pass within the
+	 * configured number of runs.
+	 */
+	private boolean rerunFailedTests(final JUnitCore core, final ReportListener listener) {
+		boolean passed = true;
 		// remove the report listener in case of rerun, will be
 		// used a custom listener to avoid reset statistics
 		core.removeListener(listener);
@@ -378,11 +745,13 @@ public class JUnitRunner implements TestRunner {
 				 * the lookup for a valid test class in child descriptors
 				 */
 				if (!test.isTest()) {
+					passed = false;
 					continue;
 				}
 				Class<?> testClass = test.getTestClass();
 				if (testClass == null) {
 					logger.log(LogService.LOG_INFO, "Skip rerun of test : " + test.getClassName() + "." + test.getMethodName());
+					passed = false;
 					continue;
 				}
 
@@ -393,11 +762,13 @@ public class JUnitRunner implements TestRunner {
 					runCount--;
 					rerunResult = core.run(request);
 				}
+				passed &= rerunResult != null && rerunResult.wasSuccessful();
 			}
 		} finally {
 			core.removeListener(reportListener);
 			core.addListener(listener);
 		}
+		return passed;
 	}
 
 	/* (non-Javadoc)
@@ -414,6 +785,27 @@ public class JUnitRunner implements TestRunner {
 		    running = false;
 			executor.shutdownNow();
 		}
+		// writes reports of tests already executed
+		reportWriter.close();
+	}
+
+	/*
+	 * Stops workers from taking other tests, the runner thread is
+	 * not interrupted so that the executed tests are reported.
+	 */
+	private void stopAtFailure() {
+		stop = true;
+		BundleLaneScheduler scheduler = this.scheduler;
+		if (scheduler != null) {
+			// workers waiting for a lane must not take other tests
+			scheduler.stop();
+		}
+		if (registry != null && testListener != null) {
+			registry.removeTestRegistryListener(testListener);
+		}
+		if (executor != null) {
+			executor.shutdown();
+		}
 	}
 
 	/* (non-Javadoc)
@@ -439,6 +831,76 @@ public class JUnitRunner implements TestRunner {
 	    return testCount.get();
 	}
 
+	@JmxAttributeMethod(description = "Returns the order in which test classes are executed")
+	public String getSchedule() {
+		return schedule;
+	}
+
+	@JmxAttributeMethod(description = "Returns the share of tests executed by this runner as index/count")
+	public String getShard() {
+		return shardIndex + "/" + shardCount;
+	}
+
+	/**
+	 * Sets if the runner stops as soon as a test class fails.
+	 *
+	 * @param failFast
+	 *            {@code true} to skip the tests after the first failure
+	 */
+	public void setFailFast(boolean failFast) {
+		this.failFast = failFast;
+	}
+
+	@JmxAttributeMethod(description = "Returns if the runner stops at the first failing test class")
+	public boolean isFailFast() {
+		return failFast;
+	}
+
+	@JmxAttributeMethod(description = "Returns the executed test methods per second")
+	public double getThroughput() {
+		return metrics.getThroughput();
+	}
+
+	@JmxAttributeMethod(description = "Returns the count of executed test methods")
+	public long getExecutedTestCount() {
+		return metrics.getExecutedTests();
+	}
+
+	@JmxAttributeMethod(description = "Returns the latency percentiles of test methods")
+	public String getMethodLatency() {
+		return metrics.getMethodLatency().toString();
+	}
+
+	@JmxAttributeMethod(description = "Returns the latency percentiles of test classes")
+	public String getClassLatency() {
+		return metrics.getClassLatency().toString();
+	}
+
+	@JmxAttributeMethod(description = "Returns the test methods with the greatest mean duration")
+	public String[] getSlowestMethods() {
+		return metrics.getSlowestMethods();
+	}
+
+	@JmxAttributeMethod(description = "Returns the test classes with the greatest mean duration")
+	public String[] getSlowestClasses() {
+		return metrics.getSlowestClasses();
+	}
+
+	@JmxAttributeMethod(description = "Returns the latency percentiles of report writes")
+	public String getReportWriteLatency() {
+		return metrics.getReportLatency().toString();
+	}
+
+	@JmxAttributeMethod(description = "Returns the count of tests waiting in the queue sampled each second")
+	public String[] getQueueDepth() {
+		return metrics.getQueueDepth();
+	}
+
+	@JmxOperation(description = "Reset the collected metrics", operationAction = OperationAction.ACTION)
+	public void resetMetrics() {
+		metrics.reset();
+	}
+
 	public boolean accept(Class<?> testClass) {
 	    return testFilter.accept(testClass.getName());
 	}
@@ -451,6 +913,22 @@ public class JUnitRunner implements TestRunner {
 		return reRunCount > 0;
 	}
 
+	/**
+	 * Sets how many test classes could be executed concurrently.
+	 *
+	 * @param threads
+	 *            the number of workers, a value lower than 1 means as many
+	 *            workers as the available processors
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+	}
+
+	@JmxAttributeMethod(description = "Returns how many test classes are executed concurrently")
+	public int getThreads() {
+		return threads;
+	}
+
 	private JMXServer jmxServer = newJMXServer();
 
 	protected JMXServer newJMXServer() {
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe histogram of durations in microseconds with a fixed memory
+ * footprint.
+ * <p>
+ * Each power of two range is split in {@value #SUB_BUCKETS} linear buckets,
+ * so the recorded values are approximated with an error lower than 1/
+ * {@value #SUB_BUCKETS} whatever their magnitude. Values greater than
+ * {@link #MAX_VALUE} are recorded as {@link #MAX_VALUE}.
+ *
+ * @author Nikolas Falco
+ */
+class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_MAGNITUDE = 40;
+	/**
+	 * The greatest value that can be recorded, about 12 days.
+	 */
+	static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+	private static final int BUCKETS = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param micros
+	 *            the duration in microseconds, negative values are recorded
+	 *            as zero
+	 */
+	public void record(long micros) {
+		long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+		counts.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+
+		long current;
+		while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+			// retry
+		}
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+	/*
+	 * The greatest value that falls in the given bucket.
+	 */
+	static long highestValueOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotal() {
+		return sum.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public long getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : sum.get() / n;
+	}
+
+	/**
+	 * Returns the value under which fall the given percentage of the
+	 * recorded values.
+	 *
+	 * @param percentile
+	 *            the percentage between 0 and 100
+	 * @return the approximated value in microseconds, 0 if nothing has been
+	 *         recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100d) / 100d * n));
+		long cumulative = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			cumulative += counts.get(bucket);
+			if (cumulative >= target) {
+				return Math.min(highestValueOf(bucket), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Forgets all recorded values.
+	 */
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			counts.set(bucket, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + getCount() //
+				+ " mean=" + getMean() + "us" //
+				+ " p50=" + getValueAtPercentile(50) + "us" //
+				+ " p90=" + getValueAtPercentile(90) + "us" //
+				+ " p99=" + getValueAtPercentile(99) + "us" //
+				+ " max=" + getMax() + "us";
+	}
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Captures the standard output and error of running tests.
+ * <p>
+ * Instead of replacing {@link System#out} and {@link System#err} for each
+ * test, a single multiplexing {@link PrintStream} is installed while at least
+ * one client holds it. Each write is routed to the {@link Capture} bound to
+ * the writing thread (threads spawned by a test inherit its capture) or to the
+ * original stream when no capture is active. {@link CaptureBuffer}s are taken
+ * from a small pool only when the test actually writes something.
+ *
+ * @author Nikolas Falco
+ */
+public final class OutputCapture {
+
+	/**
+	 * Buffers with a bigger memory capacity are not returned to the pool.
+	 */
+	private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_POOL_SIZE = 16;
+
+	private static final Object lock = new Object();
+	private static final InheritableThreadLocal<Capture> current = new InheritableThreadLocal<Capture>();
+	private static final Queue<CaptureBuffer> pool = new ConcurrentLinkedQueue<CaptureBuffer>();
+	private static final AtomicInteger poolSize = new AtomicInteger();
+
+	private static int installCount;
+	private static PrintStream outBackup;
+	private static PrintStream errBackup;
+	private static PrintStream routedOut;
+	private static PrintStream routedErr;
+
+	private OutputCapture() {
+	}
+
+	/**
+	 * Installs the multiplexing streams as {@link System#out} and
+	 * {@link System#err} if not already done.
+	 * <p>
+	 * Every call must be paired with a call to {@link #uninstall()}.
+	 */
+	public static void install() {
+		synchronized (lock) {
+			if (installCount++ == 0) {
+				// buffers settings could be changed meanwhile
+				pool.clear();
+				poolSize.set(0);
+				outBackup = System.out; // NOSONAR
+				errBackup = System.err; // NOSONAR
+				routedOut = new PrintStream(new RoutingOutputStream(false, outBackup), true);
+				routedErr = new PrintStream(new RoutingOutputStream(true, errBackup), true);
+				System.setOut(routedOut);
+				System.setErr(routedErr);
+			}
+		}
+	}
+
+	/**
+	 * Restores the original standard streams when the last client releases
+	 * them.
+	 */
+	public static void uninstall() {
+		synchronized (lock) {
+			if (installCount == 0) {
+				return;
+			}
+			if (--installCount == 0) {
+				// someone else could have replaced the streams meanwhile
+				if (System.out == routedOut) { // NOSONAR
+					System.setOut(outBackup);
+				}
+				if (System.err == routedErr) { // NOSONAR
+					System.setErr(errBackup);
+				}
+				routedOut = null;
+				routedErr = null;
+				outBackup = null;
+				errBackup = null;
+			}
+		}
+	}
+
+	/**
+	 * Starts capturing the output written by the current thread and the
+	 * threads it spawns until {@link Capture#stop()} is called.
+	 *
+	 * @return the capture bound to the current thread
+	 */
+	public static Capture start() {
+		install();
+		Capture capture = new Capture(current.get());
+		current.set(capture);
+		return capture;
+	}
+
+	private static CaptureBuffer acquireBuffer() {
+		CaptureBuffer buffer = pool.poll();
+		if (buffer == null) {
+			return new CaptureBuffer();
+		}
+		poolSize.decrementAndGet();
+		return buffer;
+	}
+
+	private static void releaseBuffer(CaptureBuffer buffer) {
+		if (buffer == null) {
+			return;
+		}
+		if (buffer.capacity() <= MAX_POOLED_BUFFER_SIZE) {
+			buffer.reset();
+			if (poolSize.incrementAndGet() <= MAX_POOL_SIZE) {
+				pool.offer(buffer);
+				return;
+			}
+			poolSize.decrementAndGet();
+		}
+		buffer.dispose();
+	}
+
+	/**
+	 * The output captured for a single test.
+	 *
+	 * @author Nikolas Falco
+	 */
+	public static final class Capture {
+		private final Capture parent;
+		private CaptureBuffer out;
+		private CaptureBuffer err;
+		private boolean closed;
+
+		private Capture(Capture parent) {
+			this.parent = parent;
+		}
+
+		private synchronized boolean write(boolean error, byte[] b, int off, int len) throws IOException {
+			if (closed) {
+				return false;
+			}
+			if (error) {
+				if (err == null) {
+					err = acquireBuffer();
+				}
+				err.write(b, off, len);
+			} else {
+				if (out == null) {
+					out = acquireBuffer();
+				}
+				out.write(b, off, len);
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the standard output captured so far.
+		 *
+		 * @return the captured output, an empty string if nothing was
+		 *         written.
+		 */
+		public synchronized String getOut() {
+			return out == null ? "" : out.toString();
+		}
+
+		/**
+		 * Returns the standard error captured so far.
+		 *
+		 * @return the captured error, an empty string if nothing was written.
+		 */
+		public synchronized String getErr() {
+			return err == null ? "" : err.toString();
+		}
+
+		/**
+		 * Takes the ownership of the standard output captured so far, the
+		 * caller is in charge to dispose it.
+		 *
+		 * @return the captured output, {@code null} if nothing was written.
+		 */
+		public synchronized CaptureBuffer detachOut() {
+			CaptureBuffer buffer = out;
+			out = null;
+			return buffer;
+		}
+
+		/**
+		 * Takes the ownership of the standard error captured so far, the
+		 * caller is in charge to dispose it.
+		 *
+		 * @return the captured error, {@code null} if nothing was written.
+		 */
+		public synchronized CaptureBuffer detachErr() {
+			CaptureBuffer buffer = err;
+			err = null;
+			return buffer;
+		}
+
+		/**
+		 * Stops this capture, any further write of the test threads goes to
+		 * the enclosing capture or to the original streams.
+		 */
+		public void stop() {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				releaseBuffer(out);
+				releaseBuffer(err);
+				out = null;
+				err = null;
+			}
+			if (current.get() == this) {
+				if (parent != null) {
+					current.set(parent);
+				} else {
+					current.remove();
+				}
+			}
+			uninstall();
+		}
+	}
+
+	private static class RoutingOutputStream extends OutputStream {
+		private final boolean error;
+		private final PrintStream target;
+
+		public RoutingOutputStream(boolean error, PrintStream target) {
+			this.error = error;
+			this.target = target;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			Capture capture = current.get();
+			while (capture != null) {
+				if (capture.write(error, b, off, len)) {
+					return;
+				}
+				capture = capture.parent;
+			}
+			target.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			target.flush();
+		}
+	}
+}
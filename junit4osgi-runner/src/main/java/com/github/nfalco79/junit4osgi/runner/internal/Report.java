@@ -19,8 +19,8 @@ public class Report {
 	private String message;
 	private double elapsedTime = 0d;
 	private Failure failure;
-	private String err;
-	private String out;
+	private CaptureBuffer err;
+	private CaptureBuffer out;
 	private FailureType type = FailureType.SUCCESS;
 	private int runCount;
 
@@ -78,22 +78,40 @@ public class Report {
 		return description + " " + type;
 	}
 
-	public String getErr() {
+	public CaptureBuffer getErr() {
 		return err;
 	}
 
-	public void setErr(String err) {
+	public void setErr(CaptureBuffer err) {
 		this.err = err;
 	}
 
-	public String getOut() {
+	public CaptureBuffer getOut() {
 		return out;
 	}
 
-	public void setOut(String out) {
+	public void setOut(CaptureBuffer out) {
 		this.out = out;
 	}
 
+	/**
+	 * Releases the captured output of this report, its runs and children.
+	 */
+	public void dispose() {
+		if (out != null) {
+			out.dispose();
+		}
+		if (err != null) {
+			err.dispose();
+		}
+		for (Report run : runs) {
+			run.dispose();
+		}
+		for (Report child : children) {
+			child.dispose();
+		}
+	}
+
 	public List<Report> getChildren() {
 		return Collections.unmodifiableList(children);
 	}
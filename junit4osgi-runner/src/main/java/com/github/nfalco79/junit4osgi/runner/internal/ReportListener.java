@@ -15,9 +15,6 @@
  */
 package com.github.nfalco79.junit4osgi.runner.internal;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
@@ -38,7 +35,8 @@ import org.junit.runner.notification.RunListener;
  * An implementation {@link RunListener} that gather all JUnit event and create
  * a complete {@link Report}.
  * <p>
- * This listener also deals to wrap standard output and error.
+ * This listener also captures standard output and error of each test through
+ * {@link OutputCapture}, so it is safe when tests run concurrently.
  *
  * @author Nikolas Falco
  */
@@ -71,27 +69,10 @@ public class ReportListener extends RunListener {
 		}
 	}
 
-	private static final String UTF_8 = "UTF-8";
-
 	/**
-	 * Backup of the {@link System#out} stream.
+	 * The output captured during the test execution.
 	 */
-	private PrintStream outBackup = System.out; // NOSONAR
-
-	/**
-	 * Backup of the {@link System#err} stream.
-	 */
-	private PrintStream errBackup = System.err; // NOSONAR
-
-	/**
-	 * The output stream used during the test execution.
-	 */
-	private ByteArrayOutputStream out;
-
-	/**
-	 * The error stream used during the test execution.
-	 */
-	private ByteArrayOutputStream err;
+	private OutputCapture.Capture capture;
 
 	private DequeValueMap<Description, Report> executions = new DequeValueMapImpl<Description, Report>();
 	private long startTime;
@@ -125,8 +106,6 @@ public class ReportListener extends RunListener {
 		Report info = executions.peek(description);
 		info.setElapsedTime((endTime - startTime) / 1000d);
 		info.setFailure(failure);
-		info.setOut(toString(out));
-		info.setErr(toString(err));
 	}
 
 	/*
@@ -154,10 +133,8 @@ public class ReportListener extends RunListener {
 
 		Report info = new Report(description);
 
-		err = new ByteArrayOutputStream();
-		out = new ByteArrayOutputStream();
-		System.setErr(new PrintStream(err));
-		System.setOut(new PrintStream(out));
+		stopCapture();
+		capture = OutputCapture.start();
 
 		executions.push(description, info);
 
@@ -173,10 +150,14 @@ public class ReportListener extends RunListener {
 	@Override
 	public void testFinished(Description description) throws Exception {
 		long endTime = System.currentTimeMillis();
-		System.setErr(errBackup);
-		System.setOut(outBackup);
 
 		Report info = executions.peek(description);
+		// detached once, a test could fail more times (in @Before and @After)
+		if (capture != null && info.getFailure() != null) {
+			info.setOut(capture.detachOut());
+			info.setErr(capture.detachErr());
+		}
+		stopCapture();
 		info.setElapsedTime((endTime - startTime) / 1000d);
 	}
 
@@ -204,11 +185,10 @@ public class ReportListener extends RunListener {
 		runCount = result.getRunCount() + result.getIgnoreCount();
 	}
 
-	private static String toString(ByteArrayOutputStream out) {
-		try {
-			return out.toString(UTF_8);
-		} catch (UnsupportedEncodingException e) {
-			return out.toString();
+	private void stopCapture() {
+		if (capture != null) {
+			capture.stop();
+			capture = null;
 		}
 	}
 
@@ -307,6 +287,19 @@ public class ReportListener extends RunListener {
 		return report;
 	}
 
+	/**
+	 * Releases the output captured for all test executions, included any
+	 * temporary file. Reports returned by {@link #getReport()} can not be
+	 * written after this call.
+	 */
+	public void dispose() {
+		for (Deque<Report> runs : executions.values()) {
+			for (Report run : runs) {
+				run.dispose();
+			}
+		}
+	}
+
 	private void buildExecutionTree(Map<Description, Report> executionMap, Description parent) {
 		if (!executionMap.containsKey(parent)) {
 			// in case of test suite
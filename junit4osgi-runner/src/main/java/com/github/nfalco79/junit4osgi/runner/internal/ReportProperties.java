@@ -0,0 +1,205 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static com.github.nfalco79.junit4osgi.runner.internal.SurefireConstants.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.WriterFactory;
+
+import com.github.nfalco79.junit4osgi.runner.internal.xml.util.XMLStreamingWriter;
+
+/**
+ * Serialises the system properties block of the XML reports once and reuses
+ * it until the system properties change.
+ * <p>
+ * The properties can be written in each report (default) or once in a shared
+ * file referenced by each report, optionally only a subset of them.
+ *
+ * @author Nikolas Falco
+ */
+public final class ReportProperties {
+
+	/**
+	 * The system property that sets how properties are written in the
+	 * reports, {@value #MODE_INLINE} or {@value #MODE_FILE}.
+	 */
+	public static final String MODE = "org.osgi.junit.report.properties";
+	/**
+	 * The system property with a comma separated list of glob patterns of
+	 * the properties to include in the reports, all by default.
+	 */
+	public static final String INCLUDES = "org.osgi.junit.report.properties.includes";
+
+	/**
+	 * All properties are written in each report.
+	 */
+	public static final String MODE_INLINE = "inline";
+	/**
+	 * All properties are written once in {@value #SHARED_FILE_NAME} and each
+	 * report contains only the {@value #SHARED_FILE_PROPERTY} property.
+	 */
+	public static final String MODE_FILE = "file";
+
+	public static final String SHARED_FILE_NAME = "junit4osgi-properties.xml";
+	public static final String SHARED_FILE_PROPERTY = "junit4osgi.properties.file";
+
+	private static final String NL = System.getProperty("line.separator", "\n");
+
+	private static Properties source;
+	private static int sourceSize;
+	private static int sourceHash;
+	private static String sourceMode;
+	private static String sourceIncludes;
+
+	private static String block;
+	private static final Set<File> sharedFiles = new HashSet<File>();
+
+	private ReportProperties() {
+	}
+
+	/**
+	 * Returns the serialised properties element to include in a report as
+	 * child of the test suite element.
+	 *
+	 * @param reportsDirectory
+	 *            the folder where the report will be written
+	 * @return the properties element.
+	 * @throws IOException
+	 *             if the shared properties file could not be written
+	 */
+	public static synchronized String getBlock(File reportsDirectory) throws IOException {
+		Properties properties = System.getProperties();
+		String mode = System.getProperty(MODE, MODE_INLINE);
+		String includes = System.getProperty(INCLUDES);
+
+		if (isChanged(properties, mode, includes)) {
+			source = properties;
+			sourceSize = properties.size();
+			sourceHash = properties.hashCode();
+			sourceMode = mode;
+			sourceIncludes = includes;
+			sharedFiles.clear();
+
+			if (MODE_FILE.equals(mode)) {
+				block = serialize(singleProperty(SHARED_FILE_PROPERTY, SHARED_FILE_NAME), 1);
+			} else {
+				block = serialize(filter(properties, includes), 1);
+			}
+		}
+
+		if (MODE_FILE.equals(mode)) {
+			File sharedFile = new File(reportsDirectory, SHARED_FILE_NAME);
+			if (sharedFiles.add(sharedFile) || !sharedFile.isFile()) {
+				writeSharedFile(sharedFile, filter(properties, includes));
+			}
+		}
+		return block;
+	}
+
+	private static boolean isChanged(Properties properties, String mode, String includes) {
+		return block == null //
+				|| properties != source //
+				|| properties.size() != sourceSize //
+				|| properties.hashCode() != sourceHash //
+				|| !mode.equals(sourceMode) //
+				|| (includes == null ? sourceIncludes != null : !includes.equals(sourceIncludes));
+	}
+
+	private static Properties singleProperty(String key, String value) {
+		Properties properties = new Properties();
+		properties.setProperty(key, value);
+		return properties;
+	}
+
+	private static Properties filter(Properties properties, String includes) {
+		if (includes == null || "".equals(includes.trim())) {
+			return properties;
+		}
+
+		TestFilter filter = new TestFilter(includes, null);
+		Properties filtered = new Properties();
+		Enumeration<?> propertyKeys = properties.propertyNames();
+		while (propertyKeys.hasMoreElements()) {
+			String key = (String) propertyKeys.nextElement();
+			if (filter.accept(key)) {
+				String value = properties.getProperty(key);
+				filtered.setProperty(key, value == null ? "null" : value);
+			}
+		}
+		return filtered;
+	}
+
+	private static String serialize(Properties properties, int depth) throws IOException {
+		StringWriter writer = new StringWriter(properties.size() * 64);
+		XMLStreamingWriter xmlWriter = new XMLStreamingWriter(writer, NL, depth);
+		writeProperties(xmlWriter, properties);
+		return writer.toString();
+	}
+
+	private static void writeProperties(XMLStreamingWriter writer, Properties properties) throws IOException {
+		writer.startElement(PROPERTIES_ELEMENT);
+
+		Enumeration<?> propertyKeys = properties.propertyNames();
+		while (propertyKeys.hasMoreElements()) {
+			String key = (String) propertyKeys.nextElement();
+
+			String value = properties.getProperty(key);
+			if (value == null) {
+				value = "null";
+			}
+
+			writer.startElement(PROPERTY_ELEMENT);
+			writer.addAttribute(PROPERTY_NAME_ATTRIBUTE, key);
+			writer.addAttribute(PROPERTY_VALUE_ATTRIBUTE, value);
+			writer.endElement();
+		}
+
+		writer.endElement();
+	}
+
+	private static void writeSharedFile(File file, Properties properties) throws IOException {
+		Writer writer = null;
+		try {
+			try {
+				writer = WriterFactory.newWriter(file, WriterFactory.UTF_8);
+			} catch (UnsupportedEncodingException e) {
+				writer = WriterFactory.newPlatformWriter(file);
+			}
+			writer = new BufferedWriter(writer);
+
+			XMLStreamingWriter xmlWriter = new XMLStreamingWriter(writer, NL);
+			xmlWriter.writeMarkup(MessageFormat.format(XML_HEADER, WriterFactory.UTF_8));
+			writeProperties(xmlWriter, properties);
+			xmlWriter.flush();
+		} finally {
+			IOUtil.close(writer);
+		}
+	}
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.osgi.service.log.LogService;
+
+/**
+ * Writes the XML reports of executed test classes in a dedicated thread so
+ * that test execution does not wait for disk I/O.
+ * <p>
+ * At most {@code capacity} reports are waiting to be written, when the queue
+ * is full the submitter blocks until the writer catches up. A capacity lower
+ * than 1 makes the writes synchronous. Reports submitted after
+ * {@link #close()} are written by the submitter thread, so none is lost.
+ *
+ * @author Nikolas Falco
+ */
+class ReportWriter {
+
+	private static final Runnable POISON = new Runnable() {
+		@Override
+		public void run() {
+		}
+	};
+
+	private final BlockingQueue<Runnable> queue;
+	private final RunnerMetrics metrics;
+	private final String reportNameSuffix;
+	private final Object lock = new Object();
+	private Thread writerThread;
+	private int pending;
+	private boolean closed;
+
+	/**
+	 * Creates a writer with the given queue capacity.
+	 *
+	 * @param capacity
+	 *            the number of reports that can wait to be written
+	 */
+	public ReportWriter(int capacity) {
+		this(capacity, null);
+	}
+
+	/**
+	 * Creates a writer with the given queue capacity that records how long
+	 * it takes to write each report.
+	 *
+	 * @param capacity
+	 *            the number of reports that can wait to be written
+	 * @param metrics
+	 *            where record the write latency, could be {@code null}
+	 */
+	public ReportWriter(int capacity, RunnerMetrics metrics) {
+		this(capacity, metrics, null);
+	}
+
+	/**
+	 * Creates a writer with the given queue capacity that records how long
+	 * it takes to write each report and appends the given suffix to the
+	 * report file names.
+	 *
+	 * @param capacity
+	 *            the number of reports that can wait to be written
+	 * @param metrics
+	 *            where record the write latency, could be {@code null}
+	 * @param reportNameSuffix
+	 *            appended to the report file names, could be {@code null}
+	 */
+	public ReportWriter(int capacity, RunnerMetrics metrics, String reportNameSuffix) {
+		queue = capacity > 0 ? new ArrayBlockingQueue<Runnable>(capacity) : null;
+		this.metrics = metrics;
+		this.reportNameSuffix = reportNameSuffix;
+	}
+
+	/**
+	 * Writes the report of the given listener in the reports directory and
+	 * then disposes the listener.
+	 *
+	 * @param reportsDirectory
+	 *            the folder where write the report
+	 * @param listener
+	 *            the listener that has collected the test executions
+	 * @param logger
+	 *            where log write failures
+	 */
+	public void submit(final File reportsDirectory, final ReportListener listener, final LogService logger) {
+		Runnable job = new Runnable() {
+			@Override
+			public void run() {
+				long start = System.nanoTime();
+				try {
+					new XMLReport(reportsDirectory, reportNameSuffix).generateReport(listener.getReport());
+					if (metrics != null) {
+						metrics.recordReport(System.nanoTime() - start);
+					}
+				} catch (IOException e) {
+					logger.log(LogService.LOG_ERROR, "Could not write the report in " + reportsDirectory, e);
+				} catch (RuntimeException e) {
+					logger.log(LogService.LOG_ERROR, "Could not write the report in " + reportsDirectory, e);
+				} finally {
+					listener.dispose();
+				}
+			}
+		};
+
+		boolean inline;
+		synchronized (lock) {
+			inline = queue == null || closed;
+			if (!inline) {
+				pending++;
+				startWriter();
+			}
+		}
+		if (inline) {
+			job.run();
+			return;
+		}
+
+		try {
+			// blocks when the writer is behind
+			queue.put(new PendingJob(job));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			try {
+				job.run();
+			} finally {
+				done();
+			}
+		}
+	}
+
+	private void startWriter() {
+		if (writerThread == null) {
+			writerThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					consume();
+				}
+			}, "JUnitRunner-report-writer");
+			writerThread.setDaemon(true);
+			writerThread.start();
+		}
+	}
+
+	private void consume() {
+		try {
+			Runnable job;
+			while ((job = queue.take()) != POISON) {
+				job.run();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void done() {
+		synchronized (lock) {
+			pending--;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until all submitted reports have been written.
+	 *
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted while waiting
+	 */
+	public void flush() throws InterruptedException {
+		synchronized (lock) {
+			while (pending > 0) {
+				lock.wait();
+			}
+		}
+	}
+
+	/**
+	 * Writes all pending reports and stops the writer thread.
+	 * <p>
+	 * This method waits for pending reports also if the calling thread is
+	 * interrupted, the interrupt status is restored on exit.
+	 */
+	public void close() {
+		boolean interrupted = false;
+		synchronized (lock) {
+			closed = true;
+			while (pending > 0) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (writerThread != null) {
+				// the queue is empty so there is room for the poison
+				queue.offer(POISON);
+				writerThread = null;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private class PendingJob implements Runnable {
+		private final Runnable job;
+
+		public PendingJob(Runnable job) {
+			this.job = job;
+		}
+
+		@Override
+		public void run() {
+			try {
+				job.run();
+			} finally {
+				done();
+			}
+		}
+	}
+}
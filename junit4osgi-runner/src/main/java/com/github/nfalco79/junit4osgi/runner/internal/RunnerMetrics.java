@@ -0,0 +1,266 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Collects the execution metrics of the runner: the throughput, the latency
+ * of test methods, test classes and report writes and the size of the test
+ * queue over time.
+ * <p>
+ * The memory used is bounded, at most {@value #MAX_KEYS} test classes and
+ * test methods have their own histogram, the others share a single one.
+ *
+ * @author Nikolas Falco
+ */
+class RunnerMetrics {
+
+	static final int MAX_KEYS = 1000;
+	static final String OTHERS = "<others>";
+	static final int QUEUE_SAMPLES = 120;
+	private static final long QUEUE_SAMPLE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+	private static final int SLOWEST_COUNT = 10;
+	private static final long NONE = Long.MIN_VALUE;
+
+	private final LatencyHistogram methodLatency = new LatencyHistogram();
+	private final LatencyHistogram classLatency = new LatencyHistogram();
+	private final LatencyHistogram reportLatency = new LatencyHistogram();
+	private final ConcurrentMap<String, LatencyHistogram> classes = new ConcurrentHashMap<String, LatencyHistogram>();
+	private final ConcurrentMap<String, LatencyHistogram> methods = new ConcurrentHashMap<String, LatencyHistogram>();
+	private final AtomicLong firstStart = new AtomicLong(NONE);
+	private volatile long lastEnd = NONE;
+
+	// ring of queue depth samples, guarded by itself
+	private final long[] sampleTimes = new long[QUEUE_SAMPLES];
+	private final int[] sampleDepths = new int[QUEUE_SAMPLES];
+	private int samples;
+	private long lastSample = NONE;
+	private long origin = System.nanoTime();
+
+	/**
+	 * Returns a listener that records the duration of each test method run
+	 * by a {@link org.junit.runner.JUnitCore}.
+	 *
+	 * @return a new listener
+	 */
+	public RunListener newRunListener() {
+		return new RunListener() {
+			private final ConcurrentMap<Description, Long> started = new ConcurrentHashMap<Description, Long>();
+
+			@Override
+			public void testStarted(Description description) throws Exception {
+				long now = System.nanoTime();
+				firstStart.compareAndSet(NONE, now);
+				started.put(description, now);
+			}
+
+			@Override
+			public void testFinished(Description description) throws Exception {
+				Long start = started.remove(description);
+				if (start != null) {
+					long end = System.nanoTime();
+					lastEnd = end;
+					recordMethod(description.getClassName() + "#" + description.getMethodName(), end - start);
+				}
+			}
+		};
+	}
+
+	void recordMethod(String method, long nanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+		methodLatency.record(micros);
+		histogramOf(methods, method).record(micros);
+	}
+
+	/**
+	 * Records how long it takes to run all tests of a class.
+	 *
+	 * @param className
+	 *            the test class
+	 * @param nanos
+	 *            the duration in nanoseconds
+	 */
+	public void recordClass(String className, long nanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+		classLatency.record(micros);
+		histogramOf(classes, className).record(micros);
+	}
+
+	/**
+	 * Records how long it takes to write a report.
+	 *
+	 * @param nanos
+	 *            the duration in nanoseconds
+	 */
+	public void recordReport(long nanos) {
+		reportLatency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+
+	/**
+	 * Samples the number of tests waiting in the queue, at most once per
+	 * second.
+	 *
+	 * @param depth
+	 *            the queue size
+	 */
+	public void sampleQueue(int depth) {
+		long now = System.nanoTime();
+		synchronized (sampleTimes) {
+			if (lastSample != NONE && now - lastSample < QUEUE_SAMPLE_INTERVAL) {
+				return;
+			}
+			lastSample = now;
+			int slot = samples++ % QUEUE_SAMPLES;
+			sampleTimes[slot] = now;
+			sampleDepths[slot] = depth;
+		}
+	}
+
+	private LatencyHistogram histogramOf(ConcurrentMap<String, LatencyHistogram> histograms, String key) {
+		LatencyHistogram histogram = histograms.get(key);
+		if (histogram == null) {
+			if (histograms.size() >= MAX_KEYS) {
+				key = OTHERS;
+			}
+			LatencyHistogram newHistogram = new LatencyHistogram();
+			histogram = histograms.putIfAbsent(key, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Returns the test methods executed per second between the start of the
+	 * first test and the end of the last one.
+	 *
+	 * @return the throughput, 0 when no test has been executed
+	 */
+	public double getThroughput() {
+		long start = firstStart.get();
+		long end = lastEnd;
+		long count = methodLatency.getCount();
+		if (start == NONE || end == NONE || count == 0) {
+			return 0;
+		}
+		long elapsed = Math.max(end - start, 1);
+		return count * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+	}
+
+	public long getExecutedTests() {
+		return methodLatency.getCount();
+	}
+
+	public LatencyHistogram getMethodLatency() {
+		return methodLatency;
+	}
+
+	public LatencyHistogram getClassLatency() {
+		return classLatency;
+	}
+
+	public LatencyHistogram getReportLatency() {
+		return reportLatency;
+	}
+
+	/**
+	 * Returns the test classes with the greatest mean duration.
+	 *
+	 * @return a description for each class, the slowest first
+	 */
+	public String[] getSlowestClasses() {
+		return slowest(classes);
+	}
+
+	/**
+	 * Returns the test methods with the greatest mean duration.
+	 *
+	 * @return a description for each method, the slowest first
+	 */
+	public String[] getSlowestMethods() {
+		return slowest(methods);
+	}
+
+	private String[] slowest(ConcurrentMap<String, LatencyHistogram> histograms) {
+		List<Entry<String, LatencyHistogram>> entries = new ArrayList<Entry<String, LatencyHistogram>>(histograms.entrySet());
+		Collections.sort(entries, new Comparator<Entry<String, LatencyHistogram>>() {
+			@Override
+			public int compare(Entry<String, LatencyHistogram> e1, Entry<String, LatencyHistogram> e2) {
+				long m1 = e1.getValue().getMean();
+				long m2 = e2.getValue().getMean();
+				return m1 < m2 ? 1 : (m1 == m2 ? 0 : -1);
+			}
+		});
+
+		int size = Math.min(entries.size(), SLOWEST_COUNT);
+		String[] result = new String[size];
+		for (int i = 0; i < size; i++) {
+			Entry<String, LatencyHistogram> entry = entries.get(i);
+			result[i] = entry.getKey() + " " + entry.getValue();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the sampled sizes of the test queue, the oldest first.
+	 *
+	 * @return the samples as seconds since the metrics were reset and queue
+	 *         size
+	 */
+	public String[] getQueueDepth() {
+		synchronized (sampleTimes) {
+			int size = Math.min(samples, QUEUE_SAMPLES);
+			String[] result = new String[size];
+			for (int i = 0; i < size; i++) {
+				int slot = (samples - size + i) % QUEUE_SAMPLES;
+				long seconds = TimeUnit.NANOSECONDS.toSeconds(sampleTimes[slot] - origin);
+				result[i] = "+" + seconds + "s depth=" + sampleDepths[slot];
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Forgets all collected metrics.
+	 */
+	public void reset() {
+		methodLatency.reset();
+		classLatency.reset();
+		reportLatency.reset();
+		classes.clear();
+		methods.clear();
+		firstStart.set(NONE);
+		lastEnd = NONE;
+		synchronized (sampleTimes) {
+			samples = 0;
+			lastSample = NONE;
+			origin = System.nanoTime();
+		}
+	}
+}
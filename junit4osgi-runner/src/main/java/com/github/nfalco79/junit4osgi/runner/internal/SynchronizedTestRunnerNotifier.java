@@ -0,0 +1,125 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import com.github.nfalco79.junit4osgi.runner.spi.TestRunnerNotifier;
+
+/**
+ * A notifier that wraps a {@link TestRunnerNotifier} and serialises all
+ * events sent to its {@link RunListener} when test classes are executed by
+ * more than one worker.
+ * <p>
+ * JUnit synchronises a not thread safe listener only against the
+ * {@link org.junit.runner.JUnitCore} that notifies it, this notifier uses a
+ * lock shared between all workers.
+ *
+ * @author Nikolas Falco
+ */
+public class SynchronizedTestRunnerNotifier implements TestRunnerNotifier {
+
+	private static class SynchronizedRunListener extends RunListener {
+		private final RunListener delegate;
+		private final Object lock;
+
+		public SynchronizedRunListener(RunListener delegate, Object lock) {
+			this.delegate = delegate;
+			this.lock = lock;
+		}
+
+		@Override
+		public void testRunStarted(Description description) throws Exception {
+			synchronized (lock) {
+				delegate.testRunStarted(description);
+			}
+		}
+
+		@Override
+		public void testRunFinished(Result result) throws Exception {
+			synchronized (lock) {
+				delegate.testRunFinished(result);
+			}
+		}
+
+		@Override
+		public void testStarted(Description description) throws Exception {
+			synchronized (lock) {
+				delegate.testStarted(description);
+			}
+		}
+
+		@Override
+		public void testFinished(Description description) throws Exception {
+			synchronized (lock) {
+				delegate.testFinished(description);
+			}
+		}
+
+		@Override
+		public void testFailure(Failure failure) throws Exception {
+			synchronized (lock) {
+				delegate.testFailure(failure);
+			}
+		}
+
+		@Override
+		public void testAssumptionFailure(Failure failure) {
+			synchronized (lock) {
+				delegate.testAssumptionFailure(failure);
+			}
+		}
+
+		@Override
+		public void testIgnored(Description description) throws Exception {
+			synchronized (lock) {
+				delegate.testIgnored(description);
+			}
+		}
+	}
+
+	private final TestRunnerNotifier notifier;
+
+	public SynchronizedTestRunnerNotifier(TestRunnerNotifier notifier) {
+		if (notifier == null) {
+			throw new NullPointerException("notifier is null");
+		}
+		this.notifier = notifier;
+	}
+
+	@Override
+	public void start() {
+		notifier.start();
+	}
+
+	@Override
+	public void stop() {
+		notifier.stop();
+	}
+
+	@Override
+	public RunListener getRunListener() {
+		RunListener listener = notifier.getRunListener();
+		if (listener == null || listener.getClass().isAnnotationPresent(RunListener.ThreadSafe.class)) {
+			return listener;
+		}
+		return new SynchronizedRunListener(listener, this);
+	}
+
+}
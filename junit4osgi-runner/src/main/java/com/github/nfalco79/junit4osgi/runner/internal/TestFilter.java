@@ -15,30 +15,69 @@
  */
 package com.github.nfalco79.junit4osgi.runner.internal;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestBeanFilter;
 import com.github.nfalco79.junit4osgi.runner.internal.AntGlobPattern.IncludeExcludePattern;
 
-public final class TestFilter {
-    private final Set<IncludeExcludePattern> includes;
-    private final Set<IncludeExcludePattern> excludes;
+/**
+ * Accepts test names that match at least one include pattern, all when there
+ * are no includes, and no exclude pattern.
+ * <p>
+ * Patterns without wildcards are looked up in a hash set, the others are
+ * checked in order, so a match does not allocate any object.
+ */
+public final class TestFilter implements TestBeanFilter {
+    private final Set<String> literalIncludes;
+    private final IncludeExcludePattern[] includes;
+    private final Set<String> literalExcludes;
+    private final IncludeExcludePattern[] excludes;
+    private final boolean acceptAll;
 
     public TestFilter(String includePatterns, String excludePatterns) {
-        this.includes = getPatterns(includePatterns);
-        this.excludes = getPatterns(excludePatterns);
+        Set<IncludeExcludePattern> includePatternSet = getPatterns(includePatterns);
+        Set<IncludeExcludePattern> excludePatternSet = getPatterns(excludePatterns);
+        this.acceptAll = includePatternSet.isEmpty(); // by default accepts all
+        this.literalIncludes = getLiterals(includePatternSet);
+        this.includes = getWildcards(includePatternSet);
+        this.literalExcludes = getLiterals(excludePatternSet);
+        this.excludes = getWildcards(excludePatternSet);
     }
 
     private Set<IncludeExcludePattern> getPatterns(String value) {
         Set<String> patterns = parsePatterns(value);
-        Set<IncludeExcludePattern> regexpPatterns = new LinkedHashSet<IncludeExcludePattern>(patterns.size());
+        Set<IncludeExcludePattern> globPatterns = new LinkedHashSet<IncludeExcludePattern>(patterns.size());
         for (String pattern : patterns) {
-            regexpPatterns.add(AntGlobPattern.parse(pattern));
+            globPatterns.add(AntGlobPattern.parse(pattern));
         }
-        return regexpPatterns;
+        return globPatterns;
+    }
+
+    private Set<String> getLiterals(Set<IncludeExcludePattern> patterns) {
+        Set<String> literals = new HashSet<String>();
+        for (IncludeExcludePattern pattern : patterns) {
+            if (pattern.isLiteral()) {
+                literals.add(pattern.getGlob());
+            }
+        }
+        return literals;
+    }
+
+    private IncludeExcludePattern[] getWildcards(Set<IncludeExcludePattern> patterns) {
+        List<IncludeExcludePattern> wildcards = new ArrayList<IncludeExcludePattern>(patterns.size());
+        for (IncludeExcludePattern pattern : patterns) {
+            if (!pattern.isLiteral()) {
+                wildcards.add(pattern);
+            }
+        }
+        return wildcards.toArray(new IncludeExcludePattern[wildcards.size()]);
     }
 
     private Set<String> parsePatterns(String patterns) {
@@ -52,20 +91,24 @@ public final class TestFilter {
     }
 
     public boolean accept(String testName) {
-        boolean matches = includes.isEmpty(); // by default accepts all
+        boolean matches = acceptAll || matches(testName, literalIncludes, includes);
+        return matches && !matches(testName, literalExcludes, excludes);
+    }
 
-        Iterator<IncludeExcludePattern> include = includes.iterator();
-        while (include.hasNext() && !matches) {
-            matches = include.next().matches(testName);
-        }
+    @Override
+    public boolean accept(TestBean test) {
+        return accept(test.getName());
+    }
 
-        Iterator<IncludeExcludePattern> exclude = excludes.iterator();
-        while (exclude.hasNext() && matches) {
-            if (exclude.next().matches(testName)) {
-                matches = false;
-                //jUnitRunner.logger.log(LogService.LOG_DEBUG, "Test class: " + testName + " excluded by exclude pattern");
+    private static boolean matches(String testName, Set<String> literals, IncludeExcludePattern[] patterns) {
+        if (!literals.isEmpty() && literals.contains(testName)) {
+            return true;
+        }
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i].matches(testName)) {
+                return true;
             }
         }
-        return matches;
+        return false;
     }
-}
\ No newline at end of file
+}
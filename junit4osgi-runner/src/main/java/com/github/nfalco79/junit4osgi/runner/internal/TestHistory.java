@@ -0,0 +1,302 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.service.log.LogService;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+/**
+ * A persistent history of the test class runs, used to schedule first the
+ * longest test classes or the ones that failed recently.
+ * <p>
+ * Each test identifier is associated to its duration in milliseconds and
+ * to the outcome of its last {@value #FAILURE_RUNS} runs. A new duration is
+ * averaged with the stored one so that a single slow or fast run does not
+ * change the order too much.
+ *
+ * @author Nikolas Falco
+ */
+class TestHistory {
+
+	/**
+	 * The value of an unknown duration.
+	 */
+	static final long UNKNOWN = -1;
+	/**
+	 * How many runs are remembered for each test.
+	 */
+	static final int FAILURE_RUNS = 8;
+	private static final int LAST_RUN = 1 << (FAILURE_RUNS - 1);
+
+	private final File file;
+	private final LogService log;
+	private final Map<String, Run> runs = new ConcurrentHashMap<String, Run>();
+	private volatile boolean dirty;
+
+	/*
+	 * What is known about a test.
+	 */
+	private static final class Run {
+		private final long duration;
+		// one bit for each run, the last run is the most significant bit
+		private final int failures;
+
+		public Run(long duration, int failures) {
+			this.duration = duration;
+			this.failures = failures;
+		}
+
+		@Override
+		public String toString() {
+			return duration + "," + failures;
+		}
+	}
+
+	/**
+	 * Creates a history persisted in the given file, loading its content if
+	 * any.
+	 *
+	 * @param file
+	 *            where the history is stored
+	 * @param log
+	 *            where log I/O failures
+	 */
+	public TestHistory(File file, LogService log) {
+		this.file = file;
+		this.log = log;
+		load();
+	}
+
+	private void load() {
+		if (!file.isFile()) {
+			return;
+		}
+		Properties entries = new Properties();
+		InputStream is = null;
+		try {
+			is = new BufferedInputStream(new FileInputStream(file));
+			entries.load(is);
+		} catch (IOException e) {
+			log(LogService.LOG_WARNING, "Could not read the test history " + file, e);
+			return;
+		} finally {
+			closeSilently(is);
+		}
+
+		for (String id : entries.stringPropertyNames()) {
+			String value = entries.getProperty(id);
+			int separator = value.indexOf(',');
+			try {
+				if (separator == -1) {
+					runs.put(id, new Run(Long.parseLong(value), 0));
+				} else {
+					runs.put(id, new Run(Long.parseLong(value.substring(0, separator)), Integer.parseInt(value.substring(separator + 1))));
+				}
+			} catch (NumberFormatException e) {
+				// skip corrupted entries
+			}
+		}
+	}
+
+	/**
+	 * Returns the duration of the given test.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @return the duration in milliseconds or {@link #UNKNOWN} if the test
+	 *         has never run
+	 */
+	public long getDuration(String testId) {
+		Run run = runs.get(testId);
+		return run != null ? run.duration : UNKNOWN;
+	}
+
+	/**
+	 * Returns the known durations of all tests.
+	 *
+	 * @return a copy of the durations in milliseconds by test identifier
+	 */
+	public Map<String, Long> getDurations() {
+		Map<String, Long> durations = new HashMap<String, Long>(runs.size());
+		for (Entry<String, Run> entry : runs.entrySet()) {
+			if (entry.getValue().duration != UNKNOWN) {
+				durations.put(entry.getKey(), entry.getValue().duration);
+			}
+		}
+		return durations;
+	}
+
+	/**
+	 * Returns the outcome of the last runs of the given test.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @return a bit for each of the last {@value #FAILURE_RUNS} runs set when
+	 *         the run has failed, the most significant bit is the last run
+	 */
+	public int getFailures(String testId) {
+		Run run = runs.get(testId);
+		return run != null ? run.failures : 0;
+	}
+
+	/**
+	 * Records how long the given test took to run and if it has failed.
+	 *
+	 * @param testId
+	 *            the test identifier
+	 * @param millis
+	 *            the duration in milliseconds
+	 * @param failed
+	 *            if some test method has failed, also when it passes when
+	 *            re-executed
+	 */
+	public void record(String testId, long millis, boolean failed) {
+		Run old = runs.get(testId);
+		long duration = old != null && old.duration != UNKNOWN ? (old.duration + millis) / 2 : millis;
+		int failures = (old != null ? old.failures >>> 1 : 0) | (failed ? LAST_RUN : 0);
+		runs.put(testId, new Run(duration, failures));
+		dirty = true;
+	}
+
+	/**
+	 * Returns a comparator that orders tests from the longest to the
+	 * shortest. Tests that have never run come first because they could be
+	 * the longest.
+	 * <p>
+	 * The comparator uses the history as it is now, so that the order does
+	 * not change while tests are sorted and new runs are recorded.
+	 *
+	 * @return the longest first comparator
+	 */
+	public Comparator<TestBean> longestFirst() {
+		return longestFirst(new HashMap<String, Run>(runs));
+	}
+
+	private static Comparator<TestBean> longestFirst(final Map<String, Run> runs) {
+		return new Comparator<TestBean>() {
+			@Override
+			public int compare(TestBean t1, TestBean t2) {
+				return compareDescending(weight(t1), weight(t2));
+			}
+
+			private long weight(TestBean test) {
+				Run run = runs.get(test.getId());
+				return run == null || run.duration == UNKNOWN ? Long.MAX_VALUE : run.duration;
+			}
+		};
+	}
+
+	/**
+	 * Returns a comparator that orders first the tests that failed more
+	 * recently, tests with the same history are ordered from the longest to
+	 * the shortest.
+	 * <p>
+	 * The comparator uses the history as it is now, like
+	 * {@link #longestFirst()}.
+	 *
+	 * @return the recently failed first comparator
+	 */
+	public Comparator<TestBean> recentlyFailedFirst() {
+		final Map<String, Run> runs = new HashMap<String, Run>(this.runs);
+		final Comparator<TestBean> longestFirst = longestFirst(runs);
+		return new Comparator<TestBean>() {
+			@Override
+			public int compare(TestBean t1, TestBean t2) {
+				int result = compareDescending(failures(t1), failures(t2));
+				return result != 0 ? result : longestFirst.compare(t1, t2);
+			}
+
+			private int failures(TestBean test) {
+				Run run = runs.get(test.getId());
+				return run != null ? run.failures : 0;
+			}
+		};
+	}
+
+	private static int compareDescending(long v1, long v2) {
+		return v1 < v2 ? 1 : (v1 == v2 ? 0 : -1);
+	}
+
+	/**
+	 * Writes the history on disk if it has changed since it was loaded.
+	 */
+	public synchronized void save() {
+		if (!dirty) {
+			return;
+		}
+		dirty = false;
+
+		Properties entries = new Properties();
+		for (Entry<String, Run> entry : runs.entrySet()) {
+			entries.setProperty(entry.getKey(), entry.getValue().toString());
+		}
+
+		File tmpFile = new File(file.getPath() + ".tmp");
+		OutputStream os = null;
+		try {
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+				throw new IOException("Could not create the folder " + parent);
+			}
+			os = new BufferedOutputStream(new FileOutputStream(tmpFile));
+			entries.store(os, "junit4osgi test history");
+			os.close();
+			os = null;
+			if ((file.exists() && !file.delete()) || !tmpFile.renameTo(file)) {
+				throw new IOException("Could not replace " + file);
+			}
+		} catch (IOException e) {
+			dirty = true;
+			log(LogService.LOG_WARNING, "Could not write the test history " + file, e);
+		} finally {
+			closeSilently(os);
+		}
+	}
+
+	private void log(int level, String message, Exception e) {
+		if (log != null) {
+			log.log(level, message, e);
+		}
+	}
+
+	private static void closeSilently(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// close stream silently
+			}
+		}
+	}
+
+}
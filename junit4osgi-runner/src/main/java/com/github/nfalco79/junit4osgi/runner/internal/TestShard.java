@@ -0,0 +1,138 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+/**
+ * Selects the share of tests that a runner executes when the same tests run
+ * on more containers.
+ * <p>
+ * A test is assigned to a shard by a stable hash of its identifier, so every
+ * container selects the same tests whatever the order they are registered.
+ * When durations are given, the tests with a known duration are instead
+ * partitioned so that each shard takes about the same time, assigning each
+ * test from the longest to the shortest to the shard with the lowest total.
+ * All containers must use the same durations, otherwise a test could run in
+ * more shards or in none.
+ *
+ * @author Nikolas Falco
+ */
+class TestShard {
+
+	private final int index;
+	private final int count;
+	// tests partitioned by duration, all and the ones of this shard
+	private final Set<String> balanced = new HashSet<String>();
+	private final Set<String> assigned = new HashSet<String>();
+
+	/**
+	 * Creates the shard with the given index.
+	 *
+	 * @param index
+	 *            the zero based index of this shard
+	 * @param count
+	 *            the total number of shards
+	 */
+	public TestShard(int index, int count) {
+		if (count < 1 || index < 0 || index >= count) {
+			throw new IllegalArgumentException("Invalid shard " + index + " of " + count);
+		}
+		this.index = index;
+		this.count = count;
+	}
+
+	/**
+	 * Partitions the given tests by their duration.
+	 *
+	 * @param durations
+	 *            the durations by test identifier
+	 */
+	public void balance(Map<String, Long> durations) {
+		List<Entry<String, Long>> tests = new ArrayList<Entry<String, Long>>(durations.entrySet());
+		// the order must not depend on the map implementation
+		Collections.sort(tests, new Comparator<Entry<String, Long>>() {
+			@Override
+			public int compare(Entry<String, Long> e1, Entry<String, Long> e2) {
+				int result = e2.getValue().compareTo(e1.getValue());
+				return result != 0 ? result : e1.getKey().compareTo(e2.getKey());
+			}
+		});
+
+		long[] loads = new long[count];
+		for (Entry<String, Long> test : tests) {
+			int shard = 0;
+			for (int i = 1; i < count; i++) {
+				if (loads[i] < loads[shard]) {
+					shard = i;
+				}
+			}
+			loads[shard] += test.getValue();
+			balanced.add(test.getKey());
+			if (shard == index) {
+				assigned.add(test.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Returns if the given test belongs to this shard.
+	 *
+	 * @param test
+	 *            the test to check
+	 * @return {@code true} if this shard runs the test, {@code false}
+	 *         otherwise
+	 */
+	public boolean accept(TestBean test) {
+		String id = test.getId();
+		if (balanced.contains(id)) {
+			return assigned.contains(id);
+		}
+		return hash(id) % count == index;
+	}
+
+	/*
+	 * String.hashCode is defined by the language specification so it is the
+	 * same in every JVM.
+	 */
+	private static int hash(String id) {
+		int hash = id.hashCode();
+		hash ^= hash >>> 16;
+		return hash & Integer.MAX_VALUE;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return index + "/" + count;
+	}
+}
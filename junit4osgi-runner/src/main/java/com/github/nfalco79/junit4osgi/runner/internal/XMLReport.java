@@ -17,48 +17,64 @@ package com.github.nfalco79.junit4osgi.runner.internal;
 
 import static com.github.nfalco79.junit4osgi.runner.internal.SurefireConstants.*;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.text.MessageFormat;
-import java.util.Enumeration;
 import java.util.Locale;
-import java.util.Properties;
 
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.WriterFactory;
-import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.junit.runner.Description;
 import org.junit.runner.notification.Failure;
 
-import com.github.nfalco79.junit4osgi.runner.internal.xml.util.XMLChar;
-import com.github.nfalco79.junit4osgi.runner.internal.xml.util.Xpp3DomWriter;
+import com.github.nfalco79.junit4osgi.runner.internal.xml.util.XMLStreamingWriter;
 
 /**
  * This class generates test result as XML files compatible with Surefire.
+ * <p>
+ * The report is streamed to the file while visiting the {@link Report} tree,
+ * no XML tree is kept in memory.
  *
  * @author Nikolas Falco
  */
 public class XMLReport {
 	/**
-	 * New line constant.
+	 * Size of the buffer used to write the report file.
 	 */
-	private static final String NL = System.getProperty("line.separator", "\n");
+	private static final int BUFFER_SIZE = 64 * 1024;
 
 	private int errorsCount;
 	private int failuresCount;
 	private int ignoredCount;
 
 	private final File reportsDirectory;
+	private final String reportNameSuffix;
 
 	public XMLReport(File reportsDirectory) {
+		this(reportsDirectory, null);
+	}
+
+	/**
+	 * Creates a report generator whose report file names end with the given
+	 * suffix, as the surefire {@code reportNameSuffix} parameter does.
+	 *
+	 * @param reportsDirectory
+	 *            the folder where write reports
+	 * @param reportNameSuffix
+	 *            appended to the report file name, could be {@code null}
+	 */
+	public XMLReport(File reportsDirectory, String reportNameSuffix) {
 		if (reportsDirectory == null) {
 			throw new NullPointerException("report directory is null");
 		}
 		this.reportsDirectory = reportsDirectory;
+		this.reportNameSuffix = reportNameSuffix != null && reportNameSuffix.length() > 0 ? "-" + reportNameSuffix : "";
 	}
 
 	private String formatNumber(double time) {
@@ -71,76 +87,68 @@ public class XMLReport {
 	/**
 	 * Utility method writing error test result in the report.
 	 *
-	 * @param element
-	 *            the DOM parent element under wrote the problem
+	 * @param writer
+	 *            the XML writer positioned in the problem element
 	 * @param failure
 	 *            the error cause
+	 * @throws IOException
+	 *             in case of I/O errors
 	 */
-	private void writeTestError(Xpp3Dom element, Failure failure) {
+	private void writeTestError(XMLStreamingWriter writer, Failure failure) throws IOException {
 		Throwable exception = failure.getException();
 		if (exception != null) {
-			String message = escape(failure.getMessage());
+			String message = failure.getMessage();
 			if (message != null) {
-				element.setAttribute(TEST_ERROR_MESSAGE_ATTRIBUTE, message);
+				writer.addAttribute(TEST_ERROR_MESSAGE_ATTRIBUTE, message);
 			}
 
-			element.setAttribute(TEST_ERROR_TYPE_ATTRIBUTE, exception.getClass().getName());
+			writer.addAttribute(TEST_ERROR_TYPE_ATTRIBUTE, exception.getClass().getName());
 		}
 		String stackTrace = failure.getTrace();
 		if (stackTrace != null) {
-			element.setValue(stackTrace);
+			writer.writeText(stackTrace);
 		}
 	}
 
 	/**
 	 * Utility method writing failed test result in the report.
 	 *
-	 * @param element
-	 *            the DOM parent element under wrote the problem
+	 * @param writer
+	 *            the XML writer positioned in the problem element
 	 * @param failure
 	 *            the failing cause
+	 * @throws IOException
+	 *             in case of I/O errors
 	 */
-	private void writeTestFailure(Xpp3Dom element, Failure failure) {
+	private void writeTestFailure(XMLStreamingWriter writer, Failure failure) throws IOException {
 		Throwable exception = failure.getException();
 		if (exception != null) {
-			String message = escape(failure.getMessage());
+			String message = failure.getMessage();
 			if (message != null) {
-				element.setAttribute(TEST_FAILURE_MESSAGE_ATTRIBUTE, message);
+				writer.addAttribute(TEST_FAILURE_MESSAGE_ATTRIBUTE, message);
 			}
 
-			element.setAttribute(TEST_FAILURE_TYPE_ATTRIBUTE, exception.getClass().getName());
+			writer.addAttribute(TEST_FAILURE_TYPE_ATTRIBUTE, exception.getClass().getName());
 		}
 		String stackTrace = failure.getTrace();
 		if (stackTrace != null) {
-			element.setValue(stackTrace);
-		}
-	}
-
-	private String escape(final String message) {
-		if (message == null) {
-			return message;
-		}
-
-		char[] escapedMessage = message.toCharArray();
-		for (int i = 0; i < escapedMessage.length; i++) {
-			if (XMLChar.isInvalid(escapedMessage[i])) {
-				escapedMessage[i] = '?';
-			}
+			writer.writeText(stackTrace);
 		}
-		return new String(escapedMessage);
 	}
 
 	/**
 	 * Utility method writing ignored test result in the report.
 	 *
-	 * @param element
-	 *            the DOM parent element under wrote the problem
-	 * @param failure
-	 *            the failing cause
+	 * @param writer
+	 *            the XML writer positioned in the skipped element
+	 * @param message
+	 *            the reason because the test was skipped
+	 * @throws IOException
+	 *             in case of I/O errors
 	 */
-	private void writeTestSkipped(Xpp3Dom element, String message) {
+	private void writeTestSkipped(XMLStreamingWriter writer, String message) throws IOException {
 		if (StringUtils.isNotEmpty(message)) {
-			element.setAttribute(TEST_SKIPPED_MESSAGE_ATTRIBUTE, message);
+			writer.addAttribute(TEST_SKIPPED_MESSAGE_ATTRIBUTE, message);
 		}
 	}
 
@@ -162,9 +170,13 @@ public class XMLReport {
 			FileUtils.forceMkdir(reportsDirectory);
 		}
 
-		Xpp3Dom dom = createDOM(null, report);
+		// suite attributes are written before its test cases
+		errorsCount = 0;
+		failuresCount = 0;
+		ignoredCount = 0;
+		count(report);
 
-		File reportFile = new File(reportsDirectory, MessageFormat.format(DEFAULT_NAME, dom.getAttribute(SUITE_NAME_ATTRIBUTE).replace(' ', '_')));
+		File reportFile = new File(reportsDirectory, MessageFormat.format(DEFAULT_NAME, getReportName(report.getDescription()).replace(' ', '_') + reportNameSuffix));
 
 		Writer writer = null;
 		try {
@@ -173,190 +185,244 @@ public class XMLReport {
 			} catch (UnsupportedEncodingException e) {
 				writer = WriterFactory.newPlatformWriter(reportFile);
 			}
-			writer.write(MessageFormat.format(XML_HEADER, WriterFactory.UTF_8) + NL);
+			writer = new BufferedWriter(writer, BUFFER_SIZE);
 
-			Xpp3DomWriter.write(writer, dom);
-			writer.flush();
+			XMLStreamingWriter xmlWriter = new XMLStreamingWriter(writer);
+			xmlWriter.writeMarkup(MessageFormat.format(XML_HEADER, WriterFactory.UTF_8));
+			writeReport(xmlWriter, report, true);
+			xmlWriter.flush();
 		} finally {
 			IOUtil.close(writer);
 		}
 	}
 
 	/**
-	 * Creates the whole XML tree for the given report.
+	 * Counts errors, failures and skipped tests of the given report.
 	 *
-	 * @param dom
-	 *            the DOM root element
 	 * @param report
 	 *            the test report
-	 * @return the XML element describing the given test.
 	 */
-	private Xpp3Dom createDOM(Xpp3Dom dom, Report report) {
+	private void count(Report report) {
 		Description description = report.getDescription();
-		if (dom == null && description.isSuite()) {
-			// suite gather all test methods of all test classes ignoring their
-			// class container
-			dom = createTestSuiteElement(null, report);
-			addProperties(dom);
-
+		if (description.isEmpty()) {
+			return;
+		} else if (description.isTest()) {
+			switch (report.getType()) {
+			case ERROR:
+				errorsCount++;
+				break;
+			case FAILURE:
+				failuresCount++;
+				break;
+			case IGNORE:
+				ignoredCount++;
+				break;
+			default:
+				break;
+			}
+		} else {
 			for (Report child : report.getChildren()) {
-				createDOM(dom, child);
+				count(child);
 			}
+		}
+	}
+
+	/**
+	 * Writes the whole XML tree for the given report.
+	 *
+	 * @param writer
+	 *            the XML writer
+	 * @param report
+	 *            the test report
+	 * @param root
+	 *            if the report is the root of the XML document
+	 * @throws IOException
+	 *             in case of I/O errors
+	 */
+	private void writeReport(XMLStreamingWriter writer, Report report, boolean root) throws IOException {
+		Description description = report.getDescription();
+		if (root && description.isSuite()) {
+			// suite gather all test methods of all test classes ignoring their
+			// class container
+			startTestSuiteElement(writer, report);
 
 			// different than maven surefire this does not report failure in
 			// test class rule or before/after class as single testcase because
 			// the junit org.junit.runner.Result does not keep track about those runs
 			int runCount = report.getRunCount();
-			dom.setAttribute(SUITE_TESTS_ATTRIBUTE, String.valueOf(runCount));
-			dom.setAttribute(SUITE_FAILURES_ATTRIBUTE, String.valueOf(failuresCount));
-			dom.setAttribute(SUITE_ERRORS_ATTRIBUTE, String.valueOf(errorsCount));
-			dom.setAttribute(SUITE_SKIPPED_ATTRIBUTE, String.valueOf(ignoredCount));
+			writer.addAttribute(SUITE_TESTS_ATTRIBUTE, String.valueOf(runCount));
+			writer.addAttribute(SUITE_FAILURES_ATTRIBUTE, String.valueOf(failuresCount));
+			writer.addAttribute(SUITE_ERRORS_ATTRIBUTE, String.valueOf(errorsCount));
+			writer.addAttribute(SUITE_SKIPPED_ATTRIBUTE, String.valueOf(ignoredCount));
+			addProperties(writer);
+
+			for (Report child : report.getChildren()) {
+				writeReport(writer, child, false);
+			}
+			writer.endElement();
 		} else if (description.isEmpty()) {
-			dom = createTestSuiteElement(dom, report);
+			startTestSuiteElement(writer, report);
+			writer.endElement();
 		} else if (description.isTest()) {
 			switch (report.getType()) {
 			case ERROR:
-				errorsCount++;
-				dom = createTestErrorElement(dom, report);
+				writeTestErrorElement(writer, report);
 				break;
 			case FAILURE:
-				failuresCount++;
-				dom = createTestFailureElement(dom, report);
+				writeTestFailureElement(writer, report);
 				break;
 			case IGNORE:
-				ignoredCount++;
-				dom = createTestIgnoreElement(dom, report);
+				writeTestIgnoreElement(writer, report);
 				break;
 			case SUCCESS:
 				// it's a normal success test
-				dom = createTestSuccessElement(dom, report);
+				writeTestSuccessElement(writer, report);
 				break;
 			}
 		} else if (description.isSuite()) {
 			for (Report child : report.getChildren()) {
-				createDOM(dom, child);
+				writeReport(writer, child, false);
 			}
 		}
-		return dom;
 	}
 
 	/**
-	 * Creates an XML ignored test element.
+	 * Writes an XML ignored test element.
 	 *
-	 * @param parent
-	 *            the DOM parent element
+	 * @param writer
+	 *            the XML writer
 	 * @param report
 	 *            the test report
-	 * @return the XML element describing the given test.
+	 * @throws IOException
+	 *             in case of I/O errors
 	 */
-	private Xpp3Dom createTestIgnoreElement(Xpp3Dom parent, Report report) {
-		final Xpp3Dom element = createTestElement(parent, report);
+	private void writeTestIgnoreElement(XMLStreamingWriter writer, Report report) throws IOException {
+		startTestElement(writer, report);
 
-		Xpp3Dom skipped = createElement(element, TEST_SKIPPED_ELEMENT);
-		writeTestSkipped(skipped, report.getMessage());
+		writer.startElement(TEST_SKIPPED_ELEMENT);
+		writeTestSkipped(writer, report.getMessage());
+		writer.endElement();
 
-		return element;
+		writer.endElement();
 	}
 
 	/**
-	 * Creates an XML success test element.
+	 * Writes an XML success test element.
 	 *
-	 * @param parent
-	 *            the DOM parent element
+	 * @param writer
+	 *            the XML writer
 	 * @param report
 	 *            the test report
-	 * @return the XML element describing the given test.
+	 * @throws IOException
+	 *             in case of I/O errors
 	 */
-	private Xpp3Dom createTestSuccessElement(Xpp3Dom parent, Report report) {
-		final Xpp3Dom element = createTestElement(parent, report);
+	private void writeTestSuccessElement(XMLStreamingWriter writer, Report report) throws IOException {
+		startTestElement(writer, report);
 
 		for (Report run : report.getRuns()) {
 			switch (run.getType()) {
 			case ERROR:
-				writeReruns(element, TEST_FLAKY_ERROR_ELEMENT, run);
+				writeReruns(writer, TEST_FLAKY_ERROR_ELEMENT, run);
 				break;
 			case FAILURE:
-				writeReruns(element, TEST_FLAKY_FAILURE_ELEMENT, run);
+				writeReruns(writer, TEST_FLAKY_FAILURE_ELEMENT, run);
 				break;
 			default:
 				break;
 			}
 		}
 
-		return element;
+		writer.endElement();
 	}
 
 	/**
-	 * Creates an XML failure element.
+	 * Writes an XML failure element.
 	 *
-	 * @param parent
-	 *            the DOM parent element
+	 * @param writer
+	 *            the XML writer
 	 * @param report
 	 *            the test report
-	 * @return the XML element describing the given test.
+	 * @throws IOException
+	 *             in case of I/O errors
 	 */
-	private Xpp3Dom createTestFailureElement(Xpp3Dom parent, Report report) {
-		final Xpp3Dom element = createTestElement(parent, report);
+	private void writeTestFailureElement(XMLStreamingWriter writer, Report report) throws IOException {
+		startTestElement(writer, report);
 
-		addOutputStreamElement(element, report.getOut(), SurefireConstants.TEST_STDOUT_ELEMENT);
-		addOutputStreamElement(element, report.getErr(), SurefireConstants.TEST_STDERR_ELEMENT);
+		addOutputStreamElement(writer, report.getOut(), SurefireConstants.TEST_STDOUT_ELEMENT);
+		addOutputStreamElement(writer, report.getErr(), SurefireConstants.TEST_STDERR_ELEMENT);
 		for (Report run : report.getRuns()) {
-			writeReruns(element, TEST_FAILURE_RERUN_ELEMENT, run);
+			writeReruns(writer, TEST_FAILURE_RERUN_ELEMENT, run);
 		}
-		Xpp3Dom failure = createElement(element, TEST_FAILURE_ELEMENT);
-		writeTestFailure(failure, report.getFailure());
+		writer.startElement(TEST_FAILURE_ELEMENT);
+		writeTestFailure(writer, report.getFailure());
+		writer.endElement();
 
-		return element;
+		writer.endElement();
 	}
 
 	/**
-	 * Creates an XML error element.
+	 * Writes an XML error element.
 	 *
-	 * @param parent
-	 *            the DOM parent element
+	 * @param writer
+	 *            the XML writer
 	 * @param report
 	 *            the test report
-	 * @return the XML element describing the given test.
+	 * @throws IOException
+	 *             in case of I/O errors
 	 */
-	private Xpp3Dom createTestErrorElement(Xpp3Dom parent, Report report) {
-		final Xpp3Dom element = createTestElement(parent, report);
+	private void writeTestErrorElement(XMLStreamingWriter writer, Report report) throws IOException {
+		startTestElement(writer, report);
 
-		addOutputStreamElement(element, report.getOut(), SurefireConstants.TEST_STDOUT_ELEMENT);
-		addOutputStreamElement(element, report.getErr(), SurefireConstants.TEST_STDERR_ELEMENT);
+		addOutputStreamElement(writer, report.getOut(), SurefireConstants.TEST_STDOUT_ELEMENT);
+		addOutputStreamElement(writer, report.getErr(), SurefireConstants.TEST_STDERR_ELEMENT);
 		for (Report run : report.getRuns()) {
-			writeReruns(element, TEST_ERROR_RERUN_ELEMENT, run);
+			writeReruns(writer, TEST_ERROR_RERUN_ELEMENT, run);
 		}
-		Xpp3Dom error = createElement(element, TEST_ERROR_ELEMENT);
-		writeTestError(error, report.getFailure());
+		writer.startElement(TEST_ERROR_ELEMENT);
+		writeTestError(writer, report.getFailure());
+		writer.endElement();
 
-		return element;
+		writer.endElement();
 	}
 
-	private void writeReruns(Xpp3Dom parent, String elementName, Report report) {
-		Xpp3Dom rerunError = createElement(parent, elementName);
-		addOutputStreamElement(rerunError, report.getOut(), SurefireConstants.TEST_STDOUT_ELEMENT);
-		addOutputStreamElement(rerunError, report.getErr(), SurefireConstants.TEST_STDERR_ELEMENT);
-		writeTestError(rerunError, report.getFailure());
+	private void writeReruns(XMLStreamingWriter writer, String elementName, Report report) throws IOException {
+		writer.startElement(elementName);
+		// attributes must be written before children elements
+		Failure failure = report.getFailure();
+		Throwable exception = failure.getException();
+		if (exception != null) {
+			String message = failure.getMessage();
+			if (message != null) {
+				writer.addAttribute(TEST_ERROR_MESSAGE_ATTRIBUTE, message);
+			}
+			writer.addAttribute(TEST_ERROR_TYPE_ATTRIBUTE, exception.getClass().getName());
+		}
+		addOutputStreamElement(writer, report.getOut(), SurefireConstants.TEST_STDOUT_ELEMENT);
+		addOutputStreamElement(writer, report.getErr(), SurefireConstants.TEST_STDERR_ELEMENT);
+		String stackTrace = failure.getTrace();
+		if (stackTrace != null) {
+			writer.writeText(stackTrace);
+		}
+		writer.endElement();
 	}
 
 	/**
-	 * Creates a XML test case element.
+	 * Opens a XML test case element.
 	 *
-	 * @param parent
-	 *            the DOM parent element
+	 * @param writer
+	 *            the XML writer
 	 * @param report
 	 *            the test report
-	 * @return the XML element describing the given test.
+	 * @throws IOException
+	 *             in case of I/O errors
 	 */
-	private Xpp3Dom createTestElement(Xpp3Dom parent, Report report) {
-		Xpp3Dom testCase = createElement(parent, TEST_ELEMENT);
+	private void startTestElement(XMLStreamingWriter writer, Report report) throws IOException {
+		writer.startElement(TEST_ELEMENT);
 
 		final Description description = report.getDescription();
-		testCase.setAttribute(TEST_NAME_ATTRIBUTE, getReportName(description));
-		testCase.setAttribute(TEST_CLASSNAME_ATTRIBUTE, description.getClassName());
-		testCase.setAttribute(TEST_TIME_ATTRIBUTE, formatNumber(report.getElapsedTime()));
-
-		return testCase;
+		writer.addAttribute(TEST_NAME_ATTRIBUTE, getReportName(description));
+		writer.addAttribute(TEST_CLASSNAME_ATTRIBUTE, description.getClassName());
+		writer.addAttribute(TEST_TIME_ATTRIBUTE, formatNumber(report.getElapsedTime()));
 	}
 
 	protected String getReportName(Description description) {
@@ -369,86 +435,64 @@ public class XMLReport {
 	}
 
 	/**
-	 * Creates a XML test suite element.
+	 * Opens a XML test suite element.
 	 *
-	 * @param parent
-	 *            the DOM parent element
+	 * @param writer
+	 *            the XML writer
 	 * @param report
 	 *            the test report
-	 * @return the XML element describing the given test suite.
+	 * @throws IOException
+	 *             in case of I/O errors
 	 */
-	private Xpp3Dom createTestSuiteElement(Xpp3Dom parent, Report report) {
-		Xpp3Dom testSuite = createElement(parent, SUITE_ELEMENT);
-
-		testSuite.setAttribute(SUITE_XSI_ATTRIBUTE, "http://www.w3.org/2001/XMLSchema-instance");
-		testSuite.setAttribute(SUITE_XSD_ATTRIBUTE, "https://maven.apache.org/surefire/maven-surefire-plugin/xsd/surefire-test-report.xsd");
+	private void startTestSuiteElement(XMLStreamingWriter writer, Report report) throws IOException {
+		writer.startElement(SUITE_ELEMENT);
 
-		testSuite.setAttribute(SUITE_NAME_ATTRIBUTE, getReportName(report.getDescription()));
-		testSuite.setAttribute(SUITE_TIME_ATTRIBUTE, formatNumber(report.getElapsedTime()));
+		writer.addAttribute(SUITE_XSI_ATTRIBUTE, "http://www.w3.org/2001/XMLSchema-instance");
+		writer.addAttribute(SUITE_XSD_ATTRIBUTE, "https://maven.apache.org/surefire/maven-surefire-plugin/xsd/surefire-test-report.xsd");
 
-		return testSuite;
-	}
-
-	/**
-	 * Creates an XML element.
-	 *
-	 * @param element
-	 *            the parent element
-	 * @param name
-	 *            the name of the element to create
-	 * @return the resulting XML tree.
-	 */
-	private Xpp3Dom createElement(Xpp3Dom element, String name) {
-		Xpp3Dom component = new Xpp3Dom(name);
-		if (element != null) {
-			element.addChild(component);
-		}
-		return component;
+		writer.addAttribute(SUITE_NAME_ATTRIBUTE, getReportName(report.getDescription()));
+		writer.addAttribute(SUITE_TIME_ATTRIBUTE, formatNumber(report.getElapsedTime()));
 	}
 
 	/**
 	 * Adds system properties to the XML report.
+	 * <p>
+	 * The properties element is serialised once and reused until the system
+	 * properties change, see {@link ReportProperties}.
 	 *
-	 * @param parent
-	 *            element under that adds properties element
+	 * @param writer
+	 *            the XML writer positioned in the element that contains
+	 *            properties
+	 * @throws IOException
+	 *             in case of I/O errors
 	 */
-	private void addProperties(Xpp3Dom parent) {
-		Xpp3Dom properties = createElement(parent, PROPERTIES_ELEMENT);
-
-		Properties systemProperties = System.getProperties();
-
-		if (systemProperties != null) {
-			Enumeration<?> propertyKeys = systemProperties.propertyNames();
-
-			while (propertyKeys.hasMoreElements()) {
-				String key = (String) propertyKeys.nextElement();
-
-				String value = systemProperties.getProperty(key);
-				if (value == null) {
-					value = "null";
-				}
-
-				Xpp3Dom property = createElement(properties, PROPERTY_ELEMENT);
-				property.setAttribute(PROPERTY_NAME_ATTRIBUTE, key);
-				property.setAttribute(PROPERTY_VALUE_ATTRIBUTE, value);
-			}
-		}
+	private void addProperties(XMLStreamingWriter writer) throws IOException {
+		writer.writeFragment(ReportProperties.getBlock(reportsDirectory));
 	}
 
 	/**
-	 * Adds messages written during the test execution in the XML tree.
+	 * Adds messages written during the test execution in the XML report.
 	 *
-	 * @param parent
-	 *            the parent element
-	 * @param stdOut
+	 * @param writer
+	 *            the XML writer
+	 * @param output
 	 *            the messages
 	 * @param name
 	 *            the name of the stream (out, error, log)
+	 * @throws IOException
+	 *             in case of I/O errors
 	 */
-	protected void addOutputStreamElement(Xpp3Dom parent, String stdOut, String name) {
-		if (stdOut != null && stdOut.trim().length() > 0) {
-			createElement(parent, name).setValue("<![CDATA[" + stdOut + "]]>");
+	protected void addOutputStreamElement(XMLStreamingWriter writer, CaptureBuffer output, String name) throws IOException {
+		if (output != null && !output.isBlank()) {
+			writer.startElement(name);
+			Reader reader = output.openReader();
+			try {
+				writer.writeCData(reader);
+			} finally {
+				IOUtil.close(reader);
+			}
+			writer.endElement();
 		}
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal.xml.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A minimal XML writer that emits elements as soon as they are written,
+ * without keeping any tree in memory.
+ * <p>
+ * The output is indented as the {@code PrettyPrintXMLWriter} of plexus-utils
+ * does. Characters not allowed in XML are replaced by {@code ?}.
+ *
+ * @author Nikolas Falco
+ */
+public class XMLStreamingWriter {
+
+	private static final String CDATA_START = "<![CDATA[";
+	private static final String CDATA_END = "]]>";
+	private static final String INDENT = "  ";
+
+	private final Writer writer;
+	private final String lineSeparator;
+	private final int baseDepth;
+	private final Deque<String> elements = new ArrayDeque<String>();
+	private boolean tagOpen;
+	private boolean hasContent;
+	private boolean hasText;
+
+	public XMLStreamingWriter(Writer writer) {
+		this(writer, System.getProperty("line.separator", "\n"));
+	}
+
+	public XMLStreamingWriter(Writer writer, String lineSeparator) {
+		this(writer, lineSeparator, 0);
+	}
+
+	/**
+	 * Creates a writer whose output is a fragment to be included in another
+	 * document with {@link #writeFragment(String)}.
+	 *
+	 * @param writer
+	 *            the underlying writer
+	 * @param lineSeparator
+	 *            the line separator
+	 * @param baseDepth
+	 *            the depth at which the fragment will be included
+	 */
+	public XMLStreamingWriter(Writer writer, String lineSeparator, int baseDepth) {
+		this.writer = writer;
+		this.lineSeparator = lineSeparator;
+		this.baseDepth = baseDepth;
+	}
+
+	/**
+	 * Writes raw text as is, for example the XML declaration.
+	 *
+	 * @param markup
+	 *            the text to write
+	 * @throws IOException
+	 *             in case of I/O errors
+	 */
+	public void writeMarkup(String markup) throws IOException {
+		closeStartTag();
+		writer.write(markup);
+		hasContent = true;
+	}
+
+	/**
+	 * Writes an element already serialised, for example by a writer created
+	 * with the same base depth of the current element children.
+	 *
+	 * @param fragment
+	 *            the serialised element
+	 * @throws IOException
+	 *             in case of I/O errors
+	 */
+	public void writeFragment(String fragment) throws IOException {
+		closeStartTag();
+		if (!elements.isEmpty() || hasContent) {
+			writer.write(lineSeparator);
+		}
+		writer.write(fragment);
+		hasContent = true;
+		hasText = false;
+	}
+
+	/**
+	 * Opens a new element child of the current one.
+	 *
+	 * @param name
+	 *            of the element
+	 * @throws IOException
+	 *             in case of I/O errors
+	 */
+	public void startElement(String name) throws IOException {
+		closeStartTag();
+		if (!elements.isEmpty() || hasContent) {
+			writer.write(lineSeparator);
+		}
+		indent(elements.size());
+		writer.write('<');
+		writer.write(name);
+		elements.push(name);
+		tagOpen = true;
+		hasContent = false;
+		hasText = false;
+	}
+
+	/**
+	 * Adds an attribute to the element just opened.
+	 *
+	 * @param name
+	 *            of the attribute
+	 * @param value
+	 *            of the attribute
+	 * @throws IOException
+	 *             in case of I/O errors
+	 */
+	public void addAttribute(String name, String value) throws IOException {
+		if (!tagOpen) {
+			throw new IllegalStateException("attributes must be added before any element content");
+		}
+		writer.write(' ');
+		writer.write(name);
+		writer.write("=\"");
+		escape(value, true);
+		writer.write('"');
+	}
+
+	/**
+	 * Writes the given text escaping XML special characters.
+	 *
+	 * @param text
+	 *            to write
+	 * @throws IOException
+	 *             in case of I/O errors
+	 */
+	public void writeText(String text) throws IOException {
+		closeStartTag();
+		escape(text, false);
+		hasContent = true;
+		hasText = true;
+	}
+
+	/**
+	 * Writes the whole content of the reader as a CDATA section.
+	 *
+	 * @param reader
+	 *            the content to write
+	 * @throws IOException
+	 *             in case of I/O errors
+	 */
+	public void writeCData(Reader reader) throws IOException {
+		closeStartTag();
+
+		char[] buffer = new char[8192];
+		int brackets = 0;
+		int read;
+
+		writer.write(CDATA_START);
+		while ((read = reader.read(buffer)) != -1) {
+			int start = 0;
+			for (int i = 0; i < read; i++) {
+				char c = buffer[i];
+				if (c == '>' && brackets >= 2) {
+					// split the section to not close it
+					writer.write(buffer, start, i - start);
+					writer.write(CDATA_END);
+					writer.write(CDATA_START);
+					start = i;
+				}
+				brackets = c == ']' ? brackets + 1 : 0;
+				if (isInvalid(c)) {
+					writer.write(buffer, start, i - start);
+					writer.write('?');
+					start = i + 1;
+				}
+			}
+			writer.write(buffer, start, read - start);
+		}
+		writer.write(CDATA_END);
+
+		hasContent = true;
+		hasText = true;
+	}
+
+	/**
+	 * Closes the current element.
+	 *
+	 * @throws IOException
+	 *             in case of I/O errors
+	 */
+	public void endElement() throws IOException {
+		String name = elements.pop();
+		if (tagOpen) {
+			writer.write("/>");
+			tagOpen = false;
+		} else {
+			if (!hasText) {
+				writer.write(lineSeparator);
+				indent(elements.size());
+			}
+			writer.write("</");
+			writer.write(name);
+			writer.write('>');
+		}
+		hasContent = true;
+		hasText = false;
+	}
+
+	/**
+	 * Flushes the underlying writer.
+	 *
+	 * @throws IOException
+	 *             in case of I/O errors
+	 */
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	private void closeStartTag() throws IOException {
+		if (tagOpen) {
+			writer.write('>');
+			tagOpen = false;
+		}
+	}
+
+	private void indent(int depth) throws IOException {
+		for (int i = 0; i < baseDepth + depth; i++) {
+			writer.write(INDENT);
+		}
+	}
+
+	private void escape(String text, boolean attribute) throws IOException {
+		final int length = text.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			String replacement;
+			switch (c) {
+			case '&':
+				replacement = "&amp;";
+				break;
+			case '<':
+				replacement = "&lt;";
+				break;
+			case '>':
+				replacement = "&gt;";
+				break;
+			case '"':
+				replacement = attribute ? "&quot;" : null;
+				break;
+			case '\n':
+				replacement = attribute ? "&#10;" : null;
+				break;
+			case '\r':
+				replacement = attribute ? "&#13;" : null;
+				break;
+			case '\t':
+				replacement = attribute ? "&#9;" : null;
+				break;
+			default:
+				replacement = isInvalid(c) ? "?" : null;
+				break;
+			}
+			if (replacement != null) {
+				writer.write(text, start, i - start);
+				writer.write(replacement);
+				start = i + 1;
+			}
+		}
+		writer.write(text, start, length - start);
+	}
+
+	private static boolean isInvalid(char c) {
+		// surrogate pairs are valid XML characters
+		return XMLChar.isInvalid(c) && !Character.isHighSurrogate(c) && !Character.isLowSurrogate(c);
+	}
+}
@@ -15,6 +15,7 @@
  */
 package com.github.nfalco79.junit4osgi.runner.internal;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -41,4 +42,39 @@ public class AntGlobPatternTest {
         assertTrue("the glob pattern does not matches", p.matches("com.acme.MyConstants"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void test_literal_pattern() {
+        IncludeExcludePattern p = AntGlobPattern.parse("com.acme.MyConstants");
+        assertTrue("the glob pattern does not matches", p.matches("com.acme.MyConstants"));
+        assertFalse("the glob pattern matches", p.matches("com.acme.MyConstants2"));
+        assertFalse("the glob pattern matches", p.matches("com.acme.MyConstant"));
+    }
+
+    @Test
+    public void test_wildcards_in_the_middle() {
+        IncludeExcludePattern p = AntGlobPattern.parse("com.*.My*Test");
+        assertTrue("the glob pattern does not matches", p.matches("com.acme.MyServiceTest"));
+        assertTrue("the glob pattern does not matches", p.matches("com.acme.MyTest"));
+        assertFalse("the glob pattern matches", p.matches("com.acme.MyServiceTests"));
+        assertFalse("the glob pattern matches", p.matches("org.acme.MyServiceTest"));
+        // segments can not overlap
+        assertFalse("the glob pattern matches", AntGlobPattern.parse("ab*ba").matches("aba"));
+    }
+
+    @Test
+    public void test_question_mark_with_wildcards() {
+        IncludeExcludePattern p = AntGlobPattern.parse("*.?y*T?st");
+        assertTrue("the glob pattern does not matches", p.matches("com.acme.MyServiceTest"));
+        assertFalse("the glob pattern matches", p.matches("com.acme.MServiceTest"));
+        assertTrue("the glob pattern does not matches", AntGlobPattern.parse("??*").matches("ab"));
+        assertFalse("the glob pattern matches", AntGlobPattern.parse("??*").matches("a"));
+    }
+
+    @Test
+    public void test_only_wildcards() {
+        assertTrue("the glob pattern does not matches", AntGlobPattern.parse("*").matches(""));
+        assertTrue("the glob pattern does not matches", AntGlobPattern.parse("**").matches("com.acme.MyTest"));
+        assertFalse("the glob pattern matches", AntGlobPattern.parse("").matches("com.acme.MyTest"));
+    }
+
+}
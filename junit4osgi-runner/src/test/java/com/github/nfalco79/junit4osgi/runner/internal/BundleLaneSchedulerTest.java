@@ -0,0 +1,237 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Hashtable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+public class BundleLaneSchedulerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void tests_of_different_bundles_run_in_parallel() throws Exception {
+		Bundle bundleA = mockBundle(null);
+		Bundle bundleB = mockBundle(null);
+		TestBean testA1 = mockTest(bundleA, "a1");
+		TestBean testA2 = mockTest(bundleA, "a2");
+		TestBean testB1 = mockTest(bundleB, "b1");
+
+		BundleLaneScheduler scheduler = new BundleLaneScheduler(queueOf(testA1, testA2, testB1));
+		assertSame(testA1, scheduler.next());
+		// the lane of bundle A is busy
+		assertSame(testB1, scheduler.next());
+	}
+
+	@Test
+	public void tests_of_the_same_bundle_wait_for_their_lane() throws Exception {
+		Bundle bundle = mockBundle(BundleLaneScheduler.CONCURRENCY_SERIAL);
+		TestBean test1 = mockTest(bundle, "t1");
+		final TestBean test2 = mockTest(bundle, "t2");
+
+		final BundleLaneScheduler scheduler = new BundleLaneScheduler(queueOf(test1, test2));
+		assertSame(test1, scheduler.next());
+
+		final AtomicReference<TestBean> next = new AtomicReference<TestBean>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		Thread worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					next.set(scheduler.next());
+					latch.countDown();
+				} catch (InterruptedException e) {
+					// test fails
+				}
+			}
+		});
+		worker.start();
+
+		assertFalse("test has been taken while its lane is busy", latch.await(100, TimeUnit.MILLISECONDS));
+		scheduler.done(test1);
+		assertTrue("lane has not been released", latch.await(5, TimeUnit.SECONDS));
+		assertSame(test2, next.get());
+	}
+
+	@Test
+	public void tests_added_to_the_queue_wake_up_waiting_workers() throws Exception {
+		Bundle bundleA = mockBundle(BundleLaneScheduler.CONCURRENCY_SERIAL);
+		Bundle bundleB = mockBundle(BundleLaneScheduler.CONCURRENCY_SERIAL);
+		TestBean testA1 = mockTest(bundleA, "a1");
+		TestBean testA2 = mockTest(bundleA, "a2");
+		TestBean testB1 = mockTest(bundleB, "b1");
+
+		FilteredTestQueue queue = new FilteredTestQueue(null);
+		queue.add(testA1);
+		queue.add(testA2);
+		final BundleLaneScheduler scheduler = new BundleLaneScheduler(queue);
+		queue.setScheduler(scheduler);
+		assertSame(testA1, scheduler.next());
+
+		final AtomicReference<TestBean> next = new AtomicReference<TestBean>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		Thread worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					next.set(scheduler.next());
+					latch.countDown();
+				} catch (InterruptedException e) {
+					// test fails
+				}
+			}
+		});
+		worker.start();
+
+		assertFalse("test has been taken while its lane is busy", latch.await(100, TimeUnit.MILLISECONDS));
+		// the lane of bundle A is still busy
+		queue.add(testB1);
+		assertTrue("worker has not been woken up", latch.await(5, TimeUnit.SECONDS));
+		assertSame(testB1, next.get());
+	}
+
+	@Test
+	public void stop_releases_waiting_workers() throws Exception {
+		Bundle bundle = mockBundle(BundleLaneScheduler.CONCURRENCY_SERIAL);
+		TestBean test1 = mockTest(bundle, "t1");
+		TestBean test2 = mockTest(bundle, "t2");
+
+		final BundleLaneScheduler scheduler = new BundleLaneScheduler(queueOf(test1, test2));
+		assertSame(test1, scheduler.next());
+
+		final AtomicReference<TestBean> next = new AtomicReference<TestBean>(test1);
+		final CountDownLatch latch = new CountDownLatch(1);
+		Thread worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					next.set(scheduler.next());
+					latch.countDown();
+				} catch (InterruptedException e) {
+					// test fails
+				}
+			}
+		});
+		worker.start();
+
+		assertFalse("test has been taken while its lane is busy", latch.await(100, TimeUnit.MILLISECONDS));
+		scheduler.stop();
+		assertTrue("worker has not been released", latch.await(5, TimeUnit.SECONDS));
+		assertNull(next.get());
+		// the lane is released after the stop
+		scheduler.done(test1);
+		assertNull(scheduler.next());
+	}
+
+	@Test
+	public void bundle_could_opt_out_of_its_lane() throws Exception {
+		Bundle bundle = mockBundle(BundleLaneScheduler.CONCURRENCY_PARALLEL);
+		TestBean test1 = mockTest(bundle, "t1");
+		TestBean test2 = mockTest(bundle, "t2");
+
+		BundleLaneScheduler scheduler = new BundleLaneScheduler(queueOf(test1, test2));
+		assertSame(test1, scheduler.next());
+		assertSame(test2, scheduler.next());
+		assertNull(scheduler.next());
+	}
+
+	@Test
+	public void longest_tests_first() throws Exception {
+		Bundle bundleA = mockBundle(null);
+		Bundle bundleB = mockBundle(BundleLaneScheduler.CONCURRENCY_PARALLEL);
+		TestBean testA1 = mockTest(bundleA, "a1");
+		TestBean testA2 = mockTest(bundleA, "a2");
+		TestBean testB1 = mockTest(bundleB, "b1");
+		TestBean testB2 = mockTest(bundleB, "b2");
+
+		TestHistory history = new TestHistory(folder.newFile("history.properties"), null);
+		history.record("a1", 10, false);
+		history.record("a2", 5000, false);
+		history.record("b1", 100, false);
+
+		BundleLaneScheduler scheduler = new BundleLaneScheduler(queueOf(testA1, testA2, testB1, testB2), history.longestFirst());
+		// never executed tests could be the longest
+		assertSame(testB2, scheduler.next());
+		assertSame(testA2, scheduler.next());
+		// the lane of bundle A is busy
+		assertSame(testB1, scheduler.next());
+		scheduler.done(testA2);
+		assertSame(testA1, scheduler.next());
+	}
+
+	@Test
+	public void tests_queued_after_the_sort_are_handed_out() throws Exception {
+		Bundle bundle = mockBundle(BundleLaneScheduler.CONCURRENCY_PARALLEL);
+		TestBean test1 = mockTest(bundle, "t1");
+		TestBean test2 = mockTest(bundle, "t2");
+		TestBean test3 = mockTest(bundle, "t3");
+
+		TestHistory history = new TestHistory(folder.newFile("history.properties"), null);
+		history.record("t1", 10, false);
+		history.record("t2", 100, false);
+		history.record("t3", 1000, false);
+
+		Queue<TestBean> queue = queueOf(test1, test2);
+		BundleLaneScheduler scheduler = new BundleLaneScheduler(queue, history.longestFirst());
+		assertSame(test2, scheduler.next());
+		queue.add(test3);
+		queue.remove(test1);
+		assertSame(test3, scheduler.next());
+		assertNull(scheduler.next());
+	}
+
+	private Queue<TestBean> queueOf(TestBean... tests) {
+		Queue<TestBean> queue = new ConcurrentLinkedQueue<TestBean>();
+		for (TestBean test : tests) {
+			queue.add(test);
+		}
+		return queue;
+	}
+
+	private Bundle mockBundle(String concurrency) {
+		Hashtable<String, String> headers = new Hashtable<String, String>();
+		if (concurrency != null) {
+			headers.put(BundleLaneScheduler.TEST_CONCURRENCY_HEADER, concurrency);
+		}
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getHeaders()).thenReturn(headers);
+		return bundle;
+	}
+
+	private TestBean mockTest(Bundle bundle, String id) {
+		TestBean test = mock(TestBean.class);
+		when(test.getBundle()).thenReturn(bundle);
+		when(test.getId()).thenReturn(id);
+		when(test.getName()).thenReturn(id);
+		return test;
+	}
+
+}
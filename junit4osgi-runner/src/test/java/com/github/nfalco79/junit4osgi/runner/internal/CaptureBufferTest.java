@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CaptureBufferTest {
+
+	private static final String NL = System.getProperty("line.separator", "\n");
+
+	@Test
+	public void output_over_memory_limit_is_spilled_to_file() throws Exception {
+		CaptureBuffer buffer = new CaptureBuffer(8, 0, 0);
+		try {
+			buffer.write("0123".getBytes());
+			assertFalse(buffer.isSpilled());
+
+			buffer.write("456789".getBytes());
+			assertTrue(buffer.isSpilled());
+			buffer.write("abc".getBytes());
+
+			assertEquals(13, buffer.size());
+			assertEquals("0123456789abc", buffer.toString());
+		} finally {
+			buffer.dispose();
+		}
+		assertFalse(buffer.isSpilled());
+	}
+
+	@Test
+	public void keep_only_head_and_tail() throws Exception {
+		CaptureBuffer buffer = new CaptureBuffer(1024, 4, 3);
+		buffer.write("0123".getBytes());
+		buffer.write("45".getBytes());
+		buffer.write("6789".getBytes());
+		buffer.write("ab".getBytes());
+
+		assertEquals(12, buffer.size());
+		assertEquals(5, buffer.getTruncated());
+		assertEquals("0123" + NL + "[... 5 bytes truncated ...]" + NL + "9ab", buffer.toString());
+	}
+
+	@Test
+	public void keep_only_head() throws Exception {
+		CaptureBuffer buffer = new CaptureBuffer(1024, 4, 0);
+		buffer.write("0123456789".getBytes());
+
+		assertEquals(6, buffer.getTruncated());
+		assertEquals("0123" + NL + "[... 6 bytes truncated ...]" + NL, buffer.toString());
+	}
+
+	@Test
+	public void tail_not_exceeded_is_not_truncated() throws Exception {
+		CaptureBuffer buffer = new CaptureBuffer(1024, 2, 10);
+		buffer.write("012345".getBytes());
+
+		assertEquals(0, buffer.getTruncated());
+		assertEquals("012345", buffer.toString());
+	}
+
+	@Test
+	public void white_spaces_are_blank() throws Exception {
+		CaptureBuffer buffer = new CaptureBuffer();
+		assertTrue(buffer.isBlank());
+
+		buffer.write((" \t" + NL).getBytes());
+		assertTrue(buffer.isBlank());
+
+		buffer.write("text".getBytes());
+		assertFalse(buffer.isBlank());
+	}
+}
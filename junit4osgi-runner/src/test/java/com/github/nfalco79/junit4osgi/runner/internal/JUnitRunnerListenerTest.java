@@ -16,25 +16,34 @@
 package com.github.nfalco79.junit4osgi.runner.internal;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 import java.io.File;
 import java.lang.reflect.Field;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.codehaus.plexus.util.ReflectionUtils;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
 import org.osgi.service.log.LogService;
 
+import com.github.nfalco79.junit4osgi.registry.spi.AbstractTestRegistry;
+import com.github.nfalco79.junit4osgi.registry.spi.BatchTestRegistryChangeListener;
+import com.github.nfalco79.junit4osgi.registry.spi.RegistrySnapshot;
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestBeanFilter;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistry;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryChangeListener;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
@@ -60,7 +69,7 @@ public class JUnitRunnerListenerTest {
 		final List<TestRegistryChangeListener> runnerListener = new ArrayList<TestRegistryChangeListener>(1);
 
 		TestRegistry registry = mock(TestRegistry.class);
-		when(registry.getTests()).thenReturn(Collections.<TestBean>emptySet());
+		when(registry.snapshot(any(TestBeanFilter.class))).thenReturn(new RegistrySnapshot(1, Collections.<TestBean>emptySet()));
 		doAnswer(new Answer<Void>() {
 			@Override
 			public Void answer(InvocationOnMock invocation) throws Throwable {
@@ -70,8 +79,7 @@ public class JUnitRunnerListenerTest {
 		}).when(registry).addTestRegistryListener(any(TestRegistryChangeListener.class));
 
 		JUnitRunner runner = spy(new JUnitRunnerNoJMXServer());
-		when(runner.getRepeatTime()).thenReturn(1l);
-		when(runner.getInfiniteRunnable(any(File.class), any(Queue.class))).thenReturn(mock(Runnable.class));
+		when(runner.getInfiniteRunnable(any(File.class), any(FilteredTestQueue.class))).thenReturn(mock(Runnable.class));
 
 		runner.setLog(logService);
 		runner.setRegistry(registry);
@@ -103,7 +111,8 @@ public class JUnitRunnerListenerTest {
 		final List<TestRegistryChangeListener> runnerListener = new ArrayList<TestRegistryChangeListener>(1);
 
 		TestRegistry registry = mock(TestRegistry.class);
-		when(registry.getTests()).thenReturn(new HashSet<TestBean>(Arrays.asList(registryTests)));
+		RegistrySnapshot snapshot = new RegistrySnapshot(1, new HashSet<TestBean>(Arrays.asList(registryTests)));
+		when(registry.snapshot(any(TestBeanFilter.class))).thenReturn(snapshot);
 		doAnswer(new Answer<Void>() {
 			@Override
 			public Void answer(InvocationOnMock invocation) throws Throwable {
@@ -113,8 +122,7 @@ public class JUnitRunnerListenerTest {
 		}).when(registry).addTestRegistryListener(any(TestRegistryChangeListener.class));
 
 		JUnitRunner runner = spy(new JUnitRunnerNoJMXServer());
-		when(runner.getRepeatTime()).thenReturn(1l);
-		when(runner.getInfiniteRunnable(any(File.class), any(Queue.class))).thenReturn(mock(Runnable.class));
+		when(runner.getInfiniteRunnable(any(File.class), any(FilteredTestQueue.class))).thenReturn(mock(Runnable.class));
 
 		runner.setLog(logService);
 		runner.setRegistry(registry);
@@ -137,6 +145,110 @@ public class JUnitRunnerListenerTest {
 		verify(testQueue).remove(registryTests[1]);
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void resync_the_queue_when_events_are_lost() throws Exception {
+		LogService logService = mock(LogService.class);
+
+		TestBean[] registryTests = getMockTests();
+		TestBean test3 = mock(TestBean.class);
+		when(test3.getId()).thenReturn("id3");
+		when(test3.getName()).thenReturn("net.id3");
+		final List<TestRegistryChangeListener> runnerListener = new ArrayList<TestRegistryChangeListener>(1);
+
+		TestRegistry registry = mock(TestRegistry.class);
+		RegistrySnapshot startSnapshot = new RegistrySnapshot(1, Collections.singleton(registryTests[0]));
+		when(registry.snapshot(any(TestBeanFilter.class))).thenReturn(startSnapshot);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				runnerListener.add((TestRegistryChangeListener) invocation.getArgument(0));
+				return null;
+			}
+		}).when(registry).addTestRegistryListener(any(TestRegistryChangeListener.class));
+
+		JUnitRunner runner = spy(new JUnitRunnerNoJMXServer());
+		when(runner.getInfiniteRunnable(any(File.class), any(FilteredTestQueue.class))).thenReturn(mock(Runnable.class));
+
+		runner.setLog(logService);
+		runner.setRegistry(registry);
+		runner.start();
+
+		BatchTestRegistryChangeListener listener = (BatchTestRegistryChangeListener) runnerListener.get(0);
+
+		Field field = ReflectionUtils.getFieldByNameIncludingSuperclasses("tests", listener.getClass());
+		field.setAccessible(true);
+		Queue<TestBean> testQueue = (Queue<TestBean>) field.get(listener);
+
+		listener.registryBatchChanged(TestRegistryEvent.batch(TestRegistryEventType.ADD, Arrays.asList(registryTests[1])));
+		// the first test runs
+		Assert.assertSame(registryTests[0], testQueue.poll());
+
+		// the events that remove the second test and add the third are lost
+		RegistrySnapshot snapshot = new RegistrySnapshot(2, new HashSet<TestBean>(Arrays.asList(registryTests[0], test3)));
+		when(registry.snapshot(any(TestBeanFilter.class))).thenReturn(snapshot);
+		listener.registryBatchChanged(new TestRegistryEvent(TestRegistryEventType.RESYNC, (TestBean) null));
+
+		runner.stop();
+
+		Assert.assertEquals(Arrays.asList(test3), new ArrayList<TestBean>(testQueue));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void lazy_registry_verifies_only_the_tests_of_the_runner() throws Exception {
+		final List<String> verified = new CopyOnWriteArrayList<String>();
+		AbstractTestRegistry registry;
+		System.setProperty(AbstractTestRegistry.LAZY, "true");
+		try {
+			registry = new AbstractTestRegistry() {
+				@Override
+				protected Collection<TestBean> scanTests(Bundle contributor) {
+					return Arrays.asList(new TestBean(contributor, "org.example.FooTest"), new TestBean(contributor, "org.example.BarTest"));
+				}
+
+				@Override
+				protected boolean verifyCandidate(TestBean candidate) {
+					verified.add(candidate.getId());
+					return true;
+				}
+			};
+		} finally {
+			System.clearProperty(AbstractTestRegistry.LAZY);
+		}
+		registry.setLog(mock(LogService.class));
+		registry.registerTests(getMockBundle("acme"));
+
+		JUnitRunner runner;
+		System.setProperty(JUnitRunner.PATH_INCLUDES, "org.example.FooTest");
+		try {
+			runner = spy(new JUnitRunnerNoJMXServer());
+		} finally {
+			System.clearProperty(JUnitRunner.PATH_INCLUDES);
+		}
+		when(runner.getInfiniteRunnable(any(File.class), any(FilteredTestQueue.class))).thenReturn(mock(Runnable.class));
+
+		runner.setLog(mock(LogService.class));
+		runner.setRegistry(registry);
+		runner.start();
+
+		// a bundle installed while the runner is listening
+		registry.registerTests(getMockBundle("acme2"));
+
+		Object listener = ReflectionUtils.getValueIncludingSuperclasses("testListener", runner);
+		Queue<TestBean> testQueue = (Queue<TestBean>) ReflectionUtils.getValueIncludingSuperclasses("tests", listener);
+		List<String> queued = new ArrayList<String>();
+		for (TestBean test : testQueue) {
+			queued.add(test.getId());
+		}
+
+		runner.stop();
+		registry.dispose();
+
+		Assert.assertEquals(Arrays.asList("acme@org.example.FooTest", "acme2@org.example.FooTest"), verified);
+		Assert.assertEquals(verified, queued);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test(expected = IllegalArgumentException.class)
 	public void test_event_with_invalid_argument() throws Exception {
@@ -145,7 +257,7 @@ public class JUnitRunnerListenerTest {
 		final List<TestRegistryChangeListener> runnerListener = new ArrayList<TestRegistryChangeListener>(1);
 
 		TestRegistry registry = mock(TestRegistry.class);
-		when(registry.getTests()).thenReturn(Collections.<TestBean>emptySet());
+		when(registry.snapshot(any(TestBeanFilter.class))).thenReturn(new RegistrySnapshot(1, Collections.<TestBean>emptySet()));
 		doAnswer(new Answer<Void>() {
 			@Override
 			public Void answer(InvocationOnMock invocation) throws Throwable {
@@ -155,8 +267,7 @@ public class JUnitRunnerListenerTest {
 		}).when(registry).addTestRegistryListener(any(TestRegistryChangeListener.class));
 
 		JUnitRunner runner = spy(new JUnitRunnerNoJMXServer());
-		when(runner.getRepeatTime()).thenReturn(1l);
-		when(runner.getInfiniteRunnable(any(File.class), any(Queue.class))).thenReturn(mock(Runnable.class));
+		when(runner.getInfiniteRunnable(any(File.class), any(FilteredTestQueue.class))).thenReturn(mock(Runnable.class));
 
 		runner.setLog(logService);
 		runner.setRegistry(registry);
@@ -167,6 +278,13 @@ public class JUnitRunnerListenerTest {
 		listener.registryChanged(new TestRegistryEvent(TestRegistryEventType.ADD, null));
 	}
 
+	private Bundle getMockBundle(String symbolicName) throws Exception {
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getSymbolicName()).thenReturn(symbolicName);
+		when(bundle.getEntry(anyString())).thenReturn(new URL("file:/" + symbolicName));
+		return bundle;
+	}
+
 	private TestBean[] getMockTests() {
 		TestBean test1 = mock(TestBean.class);
 		when(test1.getId()).thenReturn("id1");
@@ -21,6 +21,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Queue;
@@ -28,8 +29,10 @@ import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.example.AbstractTest;
+import org.example.AfterBeforeTest;
 import org.example.ErrorTest;
 import org.example.ExceptionOnClassMethodsTest;
 import org.example.FlakyJUnit4Test;
@@ -52,9 +55,13 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.osgi.service.log.LogService;
 
+import com.github.nfalco79.junit4osgi.registry.spi.RegistrySnapshot;
 import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+import com.github.nfalco79.junit4osgi.registry.spi.TestBeanFilter;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistry;
 import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryChangeListener;
+import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent;
+import com.github.nfalco79.junit4osgi.registry.spi.TestRegistryEvent.TestRegistryEventType;
 import com.github.nfalco79.junit4osgi.runner.spi.TestRunnerNotifier;
 
 public class JUnitRunnerTest {
@@ -69,13 +76,13 @@ public class JUnitRunnerTest {
 
 		final Set<TestBean> registryTests = getMockTests();
 		TestRegistry registry = mock(TestRegistry.class);
-		when(registry.getTests()).thenReturn(registryTests);
+		RegistrySnapshot snapshot = new RegistrySnapshot(1, registryTests);
+		when(registry.snapshot(any(TestBeanFilter.class))).thenReturn(snapshot);
 
-		final CountDownLatch latch = new CountDownLatch(2);
+		final CountDownLatch latch = new CountDownLatch(1);
 
 		JUnitRunner runner = spy(new JUnitRunnerNoJMXServer());
-		when(runner.getRepeatTime()).thenReturn(1l);
-		when(runner.getInfiniteRunnable(any(File.class), any(Queue.class))).thenAnswer(new Answer<Runnable>() {
+		when(runner.getInfiniteRunnable(any(File.class), any(FilteredTestQueue.class))).thenAnswer(new Answer<Runnable>() {
 			@Override
 			public Runnable answer(InvocationOnMock invocation) throws Throwable {
 				Queue<TestBean> tests = (Queue<TestBean>) invocation.getArgument(1);
@@ -93,18 +100,60 @@ public class JUnitRunnerTest {
 		runner.setRegistry(registry);
 		runner.start();
 		assertThat(runner.isStopped(), CoreMatchers.is(false));
-		try {
-			latch.await(runner.getRepeatTime() * 4, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			fail("The runnable seems not be scheduled continuosly");
-		}
+		assertTrue("The runnable has not been scheduled", latch.await(1, TimeUnit.SECONDS));
 		runner.stop();
 
-		verify(registry, atLeastOnce()).getTests();
+		verify(registry, atLeastOnce()).snapshot(any(TestBeanFilter.class));
 		verify(registry).addTestRegistryListener(any(TestRegistryChangeListener.class));
 		verify(registry).removeTestRegistryListener(any(TestRegistryChangeListener.class));
 	}
 
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void autostart_runs_tests_as_soon_as_they_are_registered() throws Exception {
+		File tmpFolder = folder.newFolder();
+
+		TestBean testToRun = mock(TestBean.class);
+		when(testToRun.getId()).thenReturn("id1");
+		when(testToRun.getName()).thenReturn(SimpleTestCase.class.getName());
+		when(testToRun.getTestClass()).thenReturn((Class) SimpleTestCase.class);
+
+		final AtomicReference<TestRegistryChangeListener> registryListener = new AtomicReference<TestRegistryChangeListener>();
+		TestRegistry registry = mock(TestRegistry.class);
+		when(registry.snapshot(any(TestBeanFilter.class))).thenReturn(new RegistrySnapshot(1, Collections.<TestBean> emptySet()));
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				registryListener.set((TestRegistryChangeListener) invocation.getArgument(0));
+				return null;
+			}
+		}).when(registry).addTestRegistryListener(any(TestRegistryChangeListener.class));
+
+		String reportsPath = System.setProperty(JUnitRunner.REPORT_PATH, tmpFolder.getAbsolutePath());
+		JUnitRunner runner = new JUnitRunnerNoJMXServer();
+		try {
+			runner.setLog(mock(LogService.class));
+			runner.setRegistry(registry);
+			runner.start();
+
+			registryListener.get().registryChanged(new TestRegistryEvent(TestRegistryEventType.ADD, testToRun));
+
+			File reportFile = new File(tmpFolder, "TEST-" + SimpleTestCase.class.getName() + ".xml");
+			long timeout = System.currentTimeMillis() + 3000l;
+			while (!reportFile.isFile() && System.currentTimeMillis() < timeout) {
+				Thread.sleep(10l);
+			}
+			assertTrue("Test has not run after registration", reportFile.isFile());
+		} finally {
+			runner.stop();
+			if (reportsPath != null) {
+				System.setProperty(JUnitRunner.REPORT_PATH, reportsPath);
+			} else {
+				System.clearProperty(JUnitRunner.REPORT_PATH);
+			}
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void run_a_test() throws Exception {
@@ -161,6 +210,179 @@ public class JUnitRunnerTest {
 		assertTrue("Test has not run", reportFile.isFile());
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void single_run_stops_the_report_writer() throws Exception {
+		final TestBean testToRun = mock(TestBean.class);
+		when(testToRun.getId()).thenReturn("id1");
+		when(testToRun.getTestClass()).thenReturn((Class) SimpleTestCase.class);
+
+		TestRegistry registry = mock(TestRegistry.class);
+		when(registry.getTests(any(String[].class))).thenReturn(asSet(testToRun));
+
+		Set<Thread> writers = getReportWriters();
+
+		StartAndStopJUnitRunner runner = new StartAndStopJUnitRunner();
+		runner.setLog(mock(LogService.class));
+		runner.setRegistry(registry);
+		runner.start(new String[] { "id1" }, folder.newFolder().toString(), null);
+		// wait the end of the run without stop the runner
+		runner.waitExecution();
+
+		for (Thread writer : getReportWriters()) {
+			if (!writers.contains(writer)) {
+				writer.join(TimeUnit.SECONDS.toMillis(5));
+				assertFalse("The report writer is still running", writer.isAlive());
+			}
+		}
+		runner.stop();
+	}
+
+	private Set<Thread> getReportWriters() {
+		Set<Thread> writers = new HashSet<Thread>();
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if ("JUnitRunner-report-writer".equals(thread.getName())) {
+				writers.add(thread);
+			}
+		}
+		return writers;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void metrics_of_executed_tests() throws Exception {
+		final TestBean testToRun = mock(TestBean.class);
+		when(testToRun.getId()).thenReturn("id1");
+		when(testToRun.getTestClass()).thenReturn((Class) SimpleTestCase.class);
+
+		JUnitRunner runner = new StartAndStopJUnitRunner();
+		runTest(runner, folder.newFolder(), testToRun);
+
+		assertEquals(3, runner.getExecutedTestCount());
+		assertTrue(runner.getThroughput() > 0);
+		assertThat(runner.getMethodLatency(), CoreMatchers.startsWith("count=3 "));
+		assertThat(runner.getClassLatency(), CoreMatchers.startsWith("count=1 "));
+		assertThat(runner.getReportWriteLatency(), CoreMatchers.startsWith("count=1 "));
+		assertThat(runner.getSlowestClasses()[0], CoreMatchers.startsWith(SimpleTestCase.class.getName() + " "));
+		// test_time sleeps for 500ms
+		assertThat(runner.getSlowestMethods()[0], CoreMatchers.startsWith(SimpleTestCase.class.getName() + "#test_time "));
+		assertEquals(1, runner.getQueueDepth().length);
+
+		runner.resetMetrics();
+		assertEquals(0, runner.getExecutedTestCount());
+		assertEquals(0, runner.getSlowestClasses().length);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void failed_tests_run_first_and_stop_the_run() throws Exception {
+		final TestBean passingTest = mock(TestBean.class);
+		when(passingTest.getId()).thenReturn("id1");
+		when(passingTest.getTestClass()).thenReturn((Class) SimpleTestCase.class);
+		final TestBean failingTest = mock(TestBean.class);
+		when(failingTest.getId()).thenReturn("id2");
+		when(failingTest.getTestClass()).thenReturn((Class) ErrorTest.class);
+
+		System.setProperty(JUnitRunner.SCHEDULE, JUnitRunner.SCHEDULE_FAILED_FIRST);
+		System.setProperty(JUnitRunner.HISTORY_FILE, new File(folder.getRoot(), "history.properties").getPath());
+		try {
+			// the first run records the failure
+			runTest(new StartAndStopJUnitRunner(), folder.newFolder(), passingTest, failingTest);
+
+			JUnitRunner runner = new StartAndStopJUnitRunner();
+			runner.setFailFast(true);
+			File reportsDirectory = folder.newFolder();
+			runTest(runner, reportsDirectory, passingTest, failingTest);
+
+			assertTrue("Failed test has not run", new File(reportsDirectory, "TEST-" + ErrorTest.class.getName() + ".xml").isFile());
+			assertFalse("Run has not been stopped at the first failure", new File(reportsDirectory, "TEST-" + SimpleTestCase.class.getName() + ".xml").exists());
+		} finally {
+			System.clearProperty(JUnitRunner.SCHEDULE);
+			System.clearProperty(JUnitRunner.HISTORY_FILE);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void shards_run_each_test_once() throws Exception {
+		Class<?>[] testClasses = { SimpleTestCase.class, ErrorTest.class, JUnit3Test.class, AfterBeforeTest.class };
+		TestBean[] testsToRun = new TestBean[testClasses.length];
+		for (int i = 0; i < testClasses.length; i++) {
+			testsToRun[i] = mock(TestBean.class);
+			when(testsToRun[i].getId()).thenReturn("bundle@" + testClasses[i].getName());
+			when(testsToRun[i].getTestClass()).thenReturn((Class) testClasses[i]);
+		}
+
+		File reportsDirectory = folder.newFolder();
+		System.setProperty(JUnitRunner.SHARD_COUNT, "2");
+		try {
+			for (int shard = 0; shard < 2; shard++) {
+				System.setProperty(JUnitRunner.SHARD_INDEX, String.valueOf(shard));
+				runTest(new StartAndStopJUnitRunner(), reportsDirectory, testsToRun);
+			}
+		} finally {
+			System.clearProperty(JUnitRunner.SHARD_COUNT);
+			System.clearProperty(JUnitRunner.SHARD_INDEX);
+		}
+
+		for (Class<?> testClass : testClasses) {
+			boolean shard0 = new File(reportsDirectory, "TEST-" + testClass.getName() + "-shard0.xml").isFile();
+			boolean shard1 = new File(reportsDirectory, "TEST-" + testClass.getName() + "-shard1.xml").isFile();
+			assertTrue("Test " + testClass.getName() + " must run in one shard", shard0 ^ shard1);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void shards_by_duration_run_each_test_once_on_every_run() throws Exception {
+		Class<?>[] testClasses = { SimpleTestCase.class, ErrorTest.class, JUnit3Test.class, AfterBeforeTest.class };
+		TestBean[] testsToRun = new TestBean[testClasses.length];
+		for (int i = 0; i < testClasses.length; i++) {
+			testsToRun[i] = mock(TestBean.class);
+			when(testsToRun[i].getId()).thenReturn("bundle@" + testClasses[i].getName());
+			when(testsToRun[i].getTestClass()).thenReturn((Class) testClasses[i]);
+		}
+
+		// the starting history shared by all containers
+		File durations = new File(folder.getRoot(), "durations.properties");
+		TestHistory sharedHistory = new TestHistory(durations, null);
+		for (int i = 0; i < testsToRun.length; i++) {
+			sharedHistory.record(testsToRun[i].getId(), (i + 1) * 100, false);
+		}
+		sharedHistory.save();
+		long lastModified = durations.lastModified();
+
+		System.setProperty(JUnitRunner.SHARD_COUNT, "2");
+		System.setProperty(JUnitRunner.SHARD_MODE, JUnitRunner.SHARD_DURATION);
+		System.setProperty(JUnitRunner.SHARD_DURATIONS, durations.getPath());
+		// containers record the run history in the same file
+		System.setProperty(JUnitRunner.SCHEDULE, JUnitRunner.SCHEDULE_LONGEST_FIRST);
+		System.setProperty(JUnitRunner.HISTORY_FILE, new File(folder.getRoot(), "history.properties").getPath());
+		try {
+			for (int run = 0; run < 2; run++) {
+				File reportsDirectory = folder.newFolder();
+				for (int shard = 0; shard < 2; shard++) {
+					System.setProperty(JUnitRunner.SHARD_INDEX, String.valueOf(shard));
+					runTest(new StartAndStopJUnitRunner(), reportsDirectory, testsToRun);
+				}
+
+				for (Class<?> testClass : testClasses) {
+					boolean shard0 = new File(reportsDirectory, "TEST-" + testClass.getName() + "-shard0.xml").isFile();
+					boolean shard1 = new File(reportsDirectory, "TEST-" + testClass.getName() + "-shard1.xml").isFile();
+					assertTrue("Test " + testClass.getName() + " must run in one shard at run " + run, shard0 ^ shard1);
+				}
+			}
+		} finally {
+			System.clearProperty(JUnitRunner.SHARD_COUNT);
+			System.clearProperty(JUnitRunner.SHARD_INDEX);
+			System.clearProperty(JUnitRunner.SHARD_MODE);
+			System.clearProperty(JUnitRunner.SHARD_DURATIONS);
+			System.clearProperty(JUnitRunner.SCHEDULE);
+			System.clearProperty(JUnitRunner.HISTORY_FILE);
+		}
+		assertEquals("shard durations must not be written", lastModified, durations.lastModified());
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Test
 	public void run_a_flaky_tests() throws Exception {
@@ -180,6 +402,28 @@ public class JUnitRunnerTest {
 		verify(listener, times(5)).testFailure(any(Failure.class));
 	}
 
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void tests_passing_on_rerun_do_not_stop_the_run() throws Exception {
+		FlakyJUnit4Test.reset();
+
+		final TestBean flakyTest = mock(TestBean.class);
+		when(flakyTest.getId()).thenReturn("id1");
+		when(flakyTest.getTestClass()).thenReturn((Class) FlakyJUnit4Test.class);
+		final TestBean passingTest = mock(TestBean.class);
+		when(passingTest.getId()).thenReturn("id2");
+		when(passingTest.getTestClass()).thenReturn((Class) SimpleTestCase.class);
+
+		JUnitRunner runner = new StartAndStopJUnitRunner();
+		runner.setFailFast(true);
+		// test1 fails four times
+		runner.setRerunFailingTests(4);
+		File reportsDirectory = folder.newFolder();
+		runTest(runner, reportsDirectory, flakyTest, passingTest);
+
+		assertTrue("Run has been stopped by a flaky test", new File(reportsDirectory, "TEST-" + SimpleTestCase.class.getName() + ".xml").isFile());
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Test
 	public void verify_that_runner_does_not_start_without_a_log_service() throws Exception {
@@ -195,7 +439,7 @@ public class JUnitRunnerTest {
 		runner.setRegistry(registry);
 		runner.start();
 		verify(runner, never()).isRunning();
-		verify(runner, never()).getInfiniteRunnable(any(File.class), any(Queue.class));
+		verify(runner, never()).getInfiniteRunnable(any(File.class), any(FilteredTestQueue.class));
 		runner.stop();
 	}
 
@@ -222,6 +466,32 @@ public class JUnitRunnerTest {
 		assertThat("Tests has run", tmpFolder.list(), Matchers.arrayWithSize(1));
 	}
 
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void run_test_classes_in_parallel() throws Exception {
+		Class<?>[] testClasses = new Class<?>[] { SimpleTestCase.class, ErrorTest.class, JUnit3Test.class, FlakyJUnit4Test.class };
+		FlakyJUnit4Test.reset();
+
+		TestBean[] testsToRun = new TestBean[testClasses.length];
+		for (int i = 0; i < testClasses.length; i++) {
+			testsToRun[i] = mock(TestBean.class);
+			when(testsToRun[i].getId()).thenReturn("id" + i);
+			when(testsToRun[i].getTestClass()).thenReturn((Class) testClasses[i]);
+		}
+
+		JUnitRunner runner = new StartAndStopJUnitRunner();
+		runner.setThreads(2);
+
+		File tmpFolder = folder.newFolder();
+		final RunListener listener = runTest(runner, tmpFolder, testsToRun);
+
+		for (Class<?> testClass : testClasses) {
+			File reportFile = new File(tmpFolder, "TEST-" + testClass.getName() + ".xml");
+			assertTrue("Test " + testClass.getName() + " has not run", reportFile.isFile());
+		}
+		verify(listener, times(testClasses.length)).testRunStarted(any(Description.class));
+	}
+
 	private <T> Set<T> asSet(final T... testsToRun) {
 		return new LinkedHashSet<T>(asList(testsToRun));
 	}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void percentiles_are_approximated_within_the_bucket_precision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 1; value <= 1000; value++) {
+			histogram.record(value * 1000);
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(500500, histogram.getMean());
+		assertPrecision(500000, histogram.getValueAtPercentile(50));
+		assertPrecision(990000, histogram.getValueAtPercentile(99));
+		assertEquals(1000000, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void bucket_boundaries() {
+		for (long value = 0; value < 100000; value++) {
+			int bucket = LatencyHistogram.bucketOf(value);
+			assertTrue("value " + value + " over its bucket", value <= LatencyHistogram.highestValueOf(bucket));
+			assertTrue("value " + value + " under its bucket", bucket == 0 || value > LatencyHistogram.highestValueOf(bucket - 1));
+		}
+		assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(LatencyHistogram.MAX_VALUE)));
+	}
+
+	@Test
+	public void values_out_of_range_are_clamped() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-1);
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(2, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMax());
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+
+	private void assertPrecision(long expected, long actual) {
+		assertTrue("expected " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / LatencyHistogram.SUB_BUCKETS);
+	}
+}
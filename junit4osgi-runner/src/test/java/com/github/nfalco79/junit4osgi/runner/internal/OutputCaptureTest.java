@@ -0,0 +1,129 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.github.nfalco79.junit4osgi.runner.internal.OutputCapture.Capture;
+
+public class OutputCaptureTest {
+
+	@Test
+	public void streams_are_restored_when_last_capture_stops() {
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+
+		Capture capture = OutputCapture.start();
+		assertNotSame(out, System.out);
+		assertNotSame(err, System.err);
+		capture.stop();
+
+		assertSame(out, System.out);
+		assertSame(err, System.err);
+	}
+
+	@Test
+	public void silent_test_captures_nothing() {
+		Capture capture = OutputCapture.start();
+		try {
+			assertEquals("", capture.getOut());
+			assertEquals("", capture.getErr());
+		} finally {
+			capture.stop();
+		}
+	}
+
+	@Test
+	public void output_is_routed_to_the_capture_of_the_writing_thread() throws Exception {
+		OutputCapture.install();
+		try {
+			final CountDownLatch started = new CountDownLatch(2);
+			final CountDownLatch written = new CountDownLatch(2);
+			final AtomicReference<String> output1 = new AtomicReference<String>();
+			final AtomicReference<String> output2 = new AtomicReference<String>();
+
+			Thread t1 = new Thread(new CapturingJob("test1", started, written, output1));
+			Thread t2 = new Thread(new CapturingJob("test2", started, written, output2));
+			t1.start();
+			t2.start();
+			t1.join(5000);
+			t2.join(5000);
+
+			assertEquals("test1" + System.getProperty("line.separator"), output1.get());
+			assertEquals("test2" + System.getProperty("line.separator"), output2.get());
+		} finally {
+			OutputCapture.uninstall();
+		}
+	}
+
+	@Test
+	public void child_threads_inherit_the_capture() throws Exception {
+		Capture capture = OutputCapture.start();
+		try {
+			Thread child = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					System.err.print("from child");
+				}
+			});
+			child.start();
+			child.join(5000);
+
+			assertEquals("from child", capture.getErr());
+			assertEquals("", capture.getOut());
+		} finally {
+			capture.stop();
+		}
+	}
+
+	private static class CapturingJob implements Runnable {
+		private final String message;
+		private final CountDownLatch started;
+		private final CountDownLatch written;
+		private final AtomicReference<String> output;
+
+		public CapturingJob(String message, CountDownLatch started, CountDownLatch written, AtomicReference<String> output) {
+			this.message = message;
+			this.started = started;
+			this.written = written;
+			this.output = output;
+		}
+
+		@Override
+		public void run() {
+			Capture capture = OutputCapture.start();
+			try {
+				// ensure both captures are active at the same time
+				started.countDown();
+				started.await();
+				System.out.println(message);
+				written.countDown();
+				written.await();
+				output.set(capture.getOut());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				capture.stop();
+			}
+		}
+	}
+}
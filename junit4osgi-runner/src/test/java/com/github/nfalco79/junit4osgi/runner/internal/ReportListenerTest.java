@@ -1,5 +1,6 @@
 package com.github.nfalco79.junit4osgi.runner.internal;
 
+import org.example.AfterBeforeTest;
 import org.example.SimpleTestCase;
 import org.junit.Assert;
 import org.junit.Test;
@@ -17,4 +18,25 @@ public class ReportListenerTest {
 		Assert.assertEquals(3, listener.getReport().getChildren().size());
 		Assert.assertEquals(3, listener.getReport().getChildren().size());
 	}
+
+	@Test
+	public void output_of_a_test_that_fails_more_times_is_kept() {
+		JUnitCore core = new JUnitCore();
+		ReportListener listener = new ReportListener();
+		core.addListener(listener);
+		OutputCapture.install();
+		try {
+			core.run(AfterBeforeTest.class);
+		} finally {
+			OutputCapture.uninstall();
+		}
+
+		// the test fails in @Before and in @After
+		Report test = listener.getReport().getChildren().get(0);
+		Assert.assertNotNull(test.getFailure());
+		String lineSeparator = System.getProperty("line.separator");
+		Assert.assertEquals("log to system out" + lineSeparator + "log to system out" + lineSeparator, test.getOut().toString());
+		Assert.assertEquals("log to system err" + lineSeparator + "log to system err" + lineSeparator, test.getErr().toString());
+		listener.dispose();
+	}
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportPropertiesTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void cleanup() {
+		System.clearProperty(ReportProperties.MODE);
+		System.clearProperty(ReportProperties.INCLUDES);
+		System.clearProperty("report.test.property");
+	}
+
+	@Test
+	public void block_is_reused_until_properties_change() throws Exception {
+		File reportsDirectory = folder.newFolder();
+
+		String block = ReportProperties.getBlock(reportsDirectory);
+		assertSame(block, ReportProperties.getBlock(reportsDirectory));
+		assertThat(block, not(containsString("report.test.property")));
+
+		System.setProperty("report.test.property", "value");
+		String newBlock = ReportProperties.getBlock(reportsDirectory);
+		assertNotSame(block, newBlock);
+		assertThat(newBlock, containsString("<property name=\"report.test.property\" value=\"value\"/>"));
+	}
+
+	@Test
+	public void only_whitelisted_properties() throws Exception {
+		System.setProperty("report.test.property", "value");
+		System.setProperty(ReportProperties.INCLUDES, "report.test.*,java.version");
+
+		String block = ReportProperties.getBlock(folder.newFolder());
+		assertThat(block, containsString("name=\"report.test.property\""));
+		assertThat(block, containsString("name=\"java.version\""));
+		assertThat(block, not(containsString("name=\"user.dir\"")));
+	}
+
+	@Test
+	public void properties_in_shared_file() throws Exception {
+		System.setProperty("report.test.property", "value");
+		System.setProperty(ReportProperties.MODE, ReportProperties.MODE_FILE);
+		File reportsDirectory = folder.newFolder();
+
+		String block = ReportProperties.getBlock(reportsDirectory);
+		assertThat(block, containsString("name=\"" + ReportProperties.SHARED_FILE_PROPERTY + "\""));
+		assertThat(block, not(containsString("report.test.property")));
+
+		File sharedFile = new File(reportsDirectory, ReportProperties.SHARED_FILE_NAME);
+		assertTrue("Shared properties file not written", sharedFile.isFile());
+		assertThat(FileUtils.fileRead(sharedFile, "UTF-8"), containsString("name=\"report.test.property\""));
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+
+import org.example.ErrorTest;
+import org.example.JUnit3Test;
+import org.example.SimpleTestCase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.osgi.service.log.LogService;
+
+public class ReportWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void flush_waits_all_submitted_reports() throws Exception {
+		File reportsDirectory = folder.newFolder();
+		LogService logger = mock(LogService.class);
+
+		ReportWriter writer = new ReportWriter(1);
+		try {
+			writer.submit(reportsDirectory, runTest(SimpleTestCase.class), logger);
+			writer.submit(reportsDirectory, runTest(ErrorTest.class), logger);
+			writer.submit(reportsDirectory, runTest(JUnit3Test.class), logger);
+			writer.flush();
+
+			assertReport(reportsDirectory, SimpleTestCase.class);
+			assertReport(reportsDirectory, ErrorTest.class);
+			assertReport(reportsDirectory, JUnit3Test.class);
+		} finally {
+			writer.close();
+		}
+		verifyNoInteractions(logger);
+	}
+
+	@Test
+	public void reports_submitted_after_close_are_written() throws Exception {
+		File reportsDirectory = folder.newFolder();
+
+		ReportWriter writer = new ReportWriter(4);
+		writer.close();
+		writer.submit(reportsDirectory, runTest(SimpleTestCase.class), mock(LogService.class));
+
+		assertReport(reportsDirectory, SimpleTestCase.class);
+	}
+
+	private ReportListener runTest(Class<?> testClass) {
+		JUnitCore core = new JUnitCore();
+		ReportListener listener = new ReportListener();
+		core.addListener(listener);
+		core.run(testClass);
+		return listener;
+	}
+
+	private void assertReport(File reportsDirectory, Class<?> testClass) {
+		File report = new File(reportsDirectory, "TEST-" + testClass.getName() + ".xml");
+		assertTrue("Report of " + testClass.getName() + " not written", report.isFile());
+	}
+}
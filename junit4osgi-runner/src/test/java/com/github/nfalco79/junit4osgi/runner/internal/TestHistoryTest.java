@@ -0,0 +1,109 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.service.log.LogService;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+public class TestHistoryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void history_survives_restart() throws Exception {
+		File file = new File(folder.newFolder(), "reports/history.properties");
+		LogService log = mock(LogService.class);
+
+		TestHistory history = new TestHistory(file, log);
+		assertEquals(TestHistory.UNKNOWN, history.getDuration("bundle@org.example.Test"));
+		history.record("bundle@org.example.Test", 1000, true);
+		history.save();
+
+		history = new TestHistory(file, log);
+		assertEquals(1000, history.getDuration("bundle@org.example.Test"));
+		assertNotEquals(0, history.getFailures("bundle@org.example.Test"));
+		// a new run is averaged with the stored duration
+		history.record("bundle@org.example.Test", 3000, false);
+		assertEquals(2000, history.getDuration("bundle@org.example.Test"));
+
+		verifyNoInteractions(log);
+	}
+
+	@Test
+	public void file_is_not_written_without_changes() throws Exception {
+		File file = new File(folder.getRoot(), "history.properties");
+
+		new TestHistory(file, null).save();
+
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void failures_are_forgotten_after_some_runs() throws Exception {
+		TestHistory history = new TestHistory(new File(folder.getRoot(), "history.properties"), null);
+
+		history.record("t1", 10, true);
+		for (int i = 1; i < TestHistory.FAILURE_RUNS; i++) {
+			history.record("t1", 10, false);
+		}
+		assertNotEquals(0, history.getFailures("t1"));
+
+		history.record("t1", 10, false);
+		assertEquals(0, history.getFailures("t1"));
+	}
+
+	@Test
+	public void recently_failed_tests_first() throws Exception {
+		TestHistory history = new TestHistory(new File(folder.getRoot(), "history.properties"), null);
+		history.record("failedLongAgo", 10, true);
+		history.record("failedLongAgo", 10, false);
+		history.record("failedLongAgo", 10, false);
+		history.record("failedLastRun", 10, false);
+		history.record("failedLastRun", 10, true);
+		history.record("flaky", 10, true);
+		history.record("flaky", 10, false);
+		history.record("passedLong", 5000, false);
+		history.record("passedShort", 10, false);
+
+		List<TestBean> tests = new ArrayList<TestBean>();
+		for (String id : Arrays.asList("passedShort", "failedLongAgo", "passedLong", "flaky", "failedLastRun")) {
+			TestBean test = mock(TestBean.class);
+			when(test.getId()).thenReturn(id);
+			tests.add(test);
+		}
+		Collections.sort(tests, history.recentlyFailedFirst());
+
+		List<String> ids = new ArrayList<String>();
+		for (TestBean test : tests) {
+			ids.add(test.getId());
+		}
+		assertEquals(Arrays.asList("failedLastRun", "flaky", "failedLongAgo", "passedLong", "passedShort"), ids);
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Nikolas Falco
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.nfalco79.junit4osgi.runner.internal;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.nfalco79.junit4osgi.registry.spi.TestBean;
+
+public class TestShardTest {
+
+	@Test
+	public void each_test_belongs_to_exactly_one_shard() {
+		TestShard[] shards = { new TestShard(0, 3), new TestShard(1, 3), new TestShard(2, 3) };
+
+		int[] sizes = new int[shards.length];
+		for (int i = 0; i < 300; i++) {
+			TestBean test = mockTest("bundle@org.example.Test" + i);
+			int owners = 0;
+			for (int s = 0; s < shards.length; s++) {
+				if (shards[s].accept(test)) {
+					owners++;
+					sizes[s]++;
+				}
+			}
+			assertEquals("test " + i + " owners", 1, owners);
+		}
+		for (int size : sizes) {
+			assertTrue("unbalanced shards", size > 50);
+		}
+	}
+
+	@Test
+	public void durations_are_balanced_between_shards() {
+		Map<String, Long> durations = new HashMap<String, Long>();
+		durations.put("t1", 600L);
+		durations.put("t2", 500L);
+		durations.put("t3", 400L);
+		durations.put("t4", 300L);
+		durations.put("t5", 200L);
+
+		TestShard shard0 = new TestShard(0, 2);
+		shard0.balance(durations);
+		TestShard shard1 = new TestShard(1, 2);
+		shard1.balance(durations);
+
+		// t1 + t4 + t5 = 1100, t2 + t3 = 900
+		assertTrue(shard0.accept(mockTest("t1")));
+		assertTrue(shard0.accept(mockTest("t4")));
+		assertTrue(shard0.accept(mockTest("t5")));
+		assertTrue(shard1.accept(mockTest("t2")));
+		assertTrue(shard1.accept(mockTest("t3")));
+		assertFalse(shard1.accept(mockTest("t1")));
+
+		// tests without a duration are assigned by hash
+		TestBean newTest = mockTest("t6");
+		assertTrue(shard0.accept(newTest) ^ shard1.accept(newTest));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void index_out_of_range() {
+		new TestShard(2, 2);
+	}
+
+	private TestBean mockTest(String id) {
+		TestBean test = mock(TestBean.class);
+		when(test.getId()).thenReturn(id);
+		return test;
+	}
+}